@@ -0,0 +1,145 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.plugin.api.PluginProperties;
+import org.killbill.billing.plugin.ingenico.api.IngenicoPaymentPluginApi;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
+
+import com.google.common.collect.ImmutableMap;
+
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_ADDRESS1;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_CC_EXPIRATION_MONTH;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_CC_EXPIRATION_YEAR;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_CC_FIRST_NAME;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_CC_LAST_NAME;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_CC_NUMBER;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_CC_TYPE;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_CC_VERIFICATION_VALUE;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_CITY;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_COUNTRY;
+import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PROPERTY_ZIP;
+
+/**
+ * Representative inputs for a card payment, built once per benchmark trial.
+ */
+public abstract class BenchmarkFixtures {
+
+    public static List<PluginProperty> cardProperties() {
+        return PluginProperties.buildPluginProperties(ImmutableMap.<String, String>builder()
+                                                              .put(PROPERTY_CC_NUMBER, "4567350000427977")
+                                                              .put(PROPERTY_CC_FIRST_NAME, "Wile")
+                                                              .put(PROPERTY_CC_LAST_NAME, "Coyote")
+                                                              .put(PROPERTY_CC_EXPIRATION_MONTH, "12")
+                                                              .put(PROPERTY_CC_EXPIRATION_YEAR, "2030")
+                                                              .put(PROPERTY_CC_VERIFICATION_VALUE, "123")
+                                                              .put(PROPERTY_CC_TYPE, "visa")
+                                                              .put(PROPERTY_ADDRESS1, "1 Desert Road")
+                                                              .put(PROPERTY_CITY, "Phoenix")
+                                                              .put(PROPERTY_ZIP, "85001")
+                                                              .put(PROPERTY_COUNTRY, "US")
+                                                              .put(IngenicoPaymentPluginApi.PROPERTY_IP, "127.0.0.1")
+                                                              .build());
+    }
+
+    /**
+     * Account stub answering the getters used by the mapping services.
+     */
+    public static Account account() {
+        final Map<String, Object> values = ImmutableMap.<String, Object>builder()
+                                                       .put("getId", UUID.randomUUID())
+                                                       .put("getExternalKey", "wile-e-coyote")
+                                                       .put("getName", "Wile Coyote")
+                                                       .put("getFirstNameLength", 4)
+                                                       .put("getEmail", "wile@acme.com")
+                                                       .put("getLocale", "en_US")
+                                                       .put("getCurrency", Currency.USD)
+                                                       .put("getCountry", "US")
+                                                       .build();
+        return (Account) Proxy.newProxyInstance(Account.class.getClassLoader(),
+                                                new Class[]{Account.class},
+                                                new InvocationHandler() {
+                                                    @Override
+                                                    public Object invoke(final Object proxy, final Method method, final Object[] args) {
+                                                        return values.get(method.getName());
+                                                    }
+                                                });
+    }
+
+    public static IngenicoResponsesRecord authorizationResponse() {
+        final IngenicoResponsesRecord record = new IngenicoResponsesRecord();
+        record.setKbAccountId(UUID.randomUUID().toString());
+        record.setKbPaymentId(UUID.randomUUID().toString());
+        record.setKbPaymentTransactionId(UUID.randomUUID().toString());
+        record.setTransactionType(TransactionType.AUTHORIZE.toString());
+        record.setAmount(new BigDecimal("12.34"));
+        record.setCurrency(Currency.USD.toString());
+        record.setIngenicoPaymentId("000000123410000012340000100001");
+        record.setIngenicoStatus("PENDING_APPROVAL");
+        record.setIngenicoResult("AUTHORISED");
+        record.setIngenicoAuthorizationCode("726747");
+        record.setFraudAvsResult("0");
+        record.setFraudCvvResult("M");
+        record.setFraudService("accepted");
+        record.setAdditionalData("{\"paymentTransactionExternalKey\":\"e8b2b1ab-0a3f-4c4b-9b0b-7b6e0a8e1f2c\",\"ingenicoCallErrorStatus\":null}");
+        record.setCreatedDate(new Timestamp(System.currentTimeMillis()));
+        record.setKbTenantId(UUID.randomUUID().toString());
+        return record;
+    }
+
+    // The error and the status of a call which never reached Ingenico are only in additional_data
+    public static IngenicoResponsesRecord failedCallResponse() {
+        final IngenicoResponsesRecord record = new IngenicoResponsesRecord();
+        record.setKbAccountId(UUID.randomUUID().toString());
+        record.setKbPaymentId(UUID.randomUUID().toString());
+        record.setKbPaymentTransactionId(UUID.randomUUID().toString());
+        record.setTransactionType(TransactionType.AUTHORIZE.toString());
+        record.setAmount(new BigDecimal("12.34"));
+        record.setCurrency(Currency.USD.toString());
+        record.setAdditionalData("{\"paymentTransactionExternalKey\":\"e8b2b1ab-0a3f-4c4b-9b0b-7b6e0a8e1f2c\",\"ingenicoCallErrorStatus\":\"RESPONSE_NOT_RECEIVED\"," +
+                                 "\"exceptionClass\":\"java.net.SocketTimeoutException\",\"exceptionMessage\":\"Read timed out\"}");
+        record.setCreatedDate(new Timestamp(System.currentTimeMillis()));
+        record.setKbTenantId(UUID.randomUUID().toString());
+        return record;
+    }
+
+    // Body of an authorized card payment creation, as returned by Ingenico
+    public static String createPaymentResponseJson() {
+        return "{\"creationOutput\":{\"additionalReference\":\"00000012341000001234\",\"externalReference\":\"000000123410000012340000100001\"}," +
+               "\"payment\":{\"id\":\"000000123410000012340000100001\",\"paymentOutput\":{\"amountOfMoney\":{\"amount\":1234,\"currencyCode\":\"USD\"}," +
+               "\"references\":{\"merchantReference\":\"e8b2b1ab-0a3f-4c4b-9b0b-7b6e0a8e1f2c\",\"paymentReference\":\"0\"},\"paymentMethod\":\"card\"," +
+               "\"cardPaymentMethodSpecificOutput\":{\"paymentProductId\":1,\"authorisationCode\":\"726747\"," +
+               "\"fraudResults\":{\"avsResult\":\"0\",\"cvvResult\":\"M\",\"fraudServiceResult\":\"no-advice\"}," +
+               "\"card\":{\"cardNumber\":\"************7977\",\"expiryDate\":\"1230\"}}}," +
+               "\"status\":\"PENDING_APPROVAL\",\"statusOutput\":{\"isCancellable\":true,\"statusCategory\":\"PENDING_MERCHANT\"," +
+               "\"statusCode\":600,\"statusCodeChangeDateTime\":\"20170101120000\",\"isAuthorized\":true,\"isRefundable\":false}}}";
+    }
+}
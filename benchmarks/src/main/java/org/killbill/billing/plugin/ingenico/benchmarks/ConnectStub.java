@@ -0,0 +1,314 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.plugin.ingenico.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * In-process HTTP stub of the Connect endpoints used by the plugin, to load test it without the Ingenico sandbox
+ * (point {@code endpoint.scheme}, {@code endpoint.host} and {@code endpoint.port} at it).
+ * <p>
+ * Each request is answered after {@code latencyMillis} plus a uniform random jitter. Payment creations get a status
+ * drawn from the status mix ({@code REJECTED} ones are declined with a 402, like Ingenico does), and a share of all
+ * requests fail: with a 500, by never answering within {@code timeoutMillis}, or by closing the connection. Creations
+ * sent again with the same idempotence key get the original response back.
+ */
+public class ConnectStub {
+
+    static final String PROPERTY_PREFIX = "ingenico.load.";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String IDEMPOTENCE_KEY_HEADER = "X-GCS-Idempotence-Key";
+    private static final String IDEMPOTENCE_TIMESTAMP_HEADER = "X-GCS-Idempotence-Request-Timestamp";
+    private static final String REJECTED = "REJECTED";
+
+    private static final Pattern CREATE_PAYMENT = Pattern.compile("/v1/[^/]+/payments/?");
+    private static final Pattern PAYMENT = Pattern.compile("/v1/[^/]+/payments/([^/]+)/?");
+    private static final Pattern PAYMENT_ACTION = Pattern.compile("/v1/[^/]+/payments/([^/]+)/(approve|cancel|refund)/?");
+    private static final Pattern CREATE_TOKEN = Pattern.compile("/v1/[^/]+/tokens/?");
+
+    private final int port;
+    private final long latencyMillis;
+    private final long latencyJitterMillis;
+    private final Map<String, Integer> statusMix;
+    private final int statusMixTotal;
+    private final double errorRate;
+    private final double timeoutRate;
+    private final double dropRate;
+    private final long timeoutMillis;
+
+    private final Random random = new Random();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong faults = new AtomicLong();
+    // Responses to the payment creations, by idempotence key
+    private final Cache<String, String> idempotentResponses = CacheBuilder.newBuilder()
+                                                                         .maximumSize(100000)
+                                                                         .build();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * @param port                0 for any free port
+     * @param latencyMillis       minimum response time
+     * @param latencyJitterMillis maximum random delay added to it
+     * @param statusMix           weights of the payment creation statuses, e.g. {@code PENDING_APPROVAL=90,REJECTED=10}
+     * @param errorRate           share of the requests answered with a 500
+     * @param timeoutRate         share of the requests answered after {@code timeoutMillis}
+     * @param dropRate            share of the requests whose connection is closed without an answer
+     * @param timeoutMillis       delay of the timed out requests (set it above the plugin socketTimeout)
+     */
+    public ConnectStub(final int port,
+                       final long latencyMillis,
+                       final long latencyJitterMillis,
+                       final String statusMix,
+                       final double errorRate,
+                       final double timeoutRate,
+                       final double dropRate,
+                       final long timeoutMillis) {
+        this.port = port;
+        this.latencyMillis = latencyMillis;
+        this.latencyJitterMillis = latencyJitterMillis;
+        this.errorRate = errorRate;
+        this.timeoutRate = timeoutRate;
+        this.dropRate = dropRate;
+        this.timeoutMillis = timeoutMillis;
+
+        final ImmutableMap.Builder<String, Integer> statusMixBuilder = ImmutableMap.builder();
+        int total = 0;
+        for (final Map.Entry<String, String> entry : Splitter.on(',').trimResults().omitEmptyStrings().withKeyValueSeparator('=').split(statusMix).entrySet()) {
+            final int weight = Integer.valueOf(entry.getValue().trim());
+            statusMixBuilder.put(entry.getKey().trim(), weight);
+            total += weight;
+        }
+        this.statusMix = statusMixBuilder.build();
+        this.statusMixTotal = total;
+        if (statusMixTotal <= 0) {
+            throw new IllegalArgumentException("Invalid status mix: " + statusMix);
+        }
+    }
+
+    /**
+     * Runs the stub until killed, e.g. to load test a running Kill Bill through it:
+     * {@code java -cp target/benchmarks.jar -Dingenico.load.port=8089 org.killbill.billing.plugin.ingenico.benchmarks.ConnectStub}
+     */
+    public static void main(final String[] args) throws Exception {
+        final ConnectStub stub = fromSystemProperties();
+        stub.start();
+        System.out.println("Connect stub listening on 127.0.0.1:" + stub.getPort());
+        Thread.currentThread().join();
+    }
+
+    public static ConnectStub fromSystemProperties() {
+        return new ConnectStub(Integer.valueOf(System.getProperty(PROPERTY_PREFIX + "port", "0")),
+                               Long.valueOf(System.getProperty(PROPERTY_PREFIX + "latency", "100")),
+                               Long.valueOf(System.getProperty(PROPERTY_PREFIX + "latencyJitter", "50")),
+                               System.getProperty(PROPERTY_PREFIX + "statusMix", "PENDING_APPROVAL=90,PENDING_FRAUD_APPROVAL=5,REJECTED=5"),
+                               Double.valueOf(System.getProperty(PROPERTY_PREFIX + "errorRate", "0.01")),
+                               Double.valueOf(System.getProperty(PROPERTY_PREFIX + "timeoutRate", "0.001")),
+                               Double.valueOf(System.getProperty(PROPERTY_PREFIX + "dropRate", "0.001")),
+                               Long.valueOf(System.getProperty(PROPERTY_PREFIX + "timeout", "65000")));
+    }
+
+    public void start() throws IOException {
+        // Requests sleep for their latency: one thread each
+        executor = Executors.newCachedThreadPool(new ThreadFactoryBuilder().setNameFormat("connect-stub-%d")
+                                                                           .setDaemon(true)
+                                                                           .build());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        server.setExecutor(executor);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(final HttpExchange exchange) throws IOException {
+                try {
+                    handleRequest(exchange);
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    exchange.close();
+                }
+            }
+        });
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    // Requests answered with an error, late or not at all
+    public long getFaults() {
+        return faults.get();
+    }
+
+    private void handleRequest(final HttpExchange exchange) throws IOException, InterruptedException {
+        requests.incrementAndGet();
+        drain(exchange.getRequestBody());
+
+        final double fault = nextDouble();
+        if (fault < dropRate) {
+            faults.incrementAndGet();
+            // Closed by the caller, before any response header was sent
+            return;
+        }
+        if (fault < dropRate + timeoutRate) {
+            faults.incrementAndGet();
+            TimeUnit.MILLISECONDS.sleep(timeoutMillis);
+            respond(exchange, 500, error("9999", 500, "TIMEOUT"));
+            return;
+        }
+
+        TimeUnit.MILLISECONDS.sleep(latencyMillis + (latencyJitterMillis > 0 ? (long) (nextDouble() * latencyJitterMillis) : 0));
+        if (fault < dropRate + timeoutRate + errorRate) {
+            faults.incrementAndGet();
+            respond(exchange, 500, error("9999", 500, "UNKNOWN_SERVER_ERROR"));
+            return;
+        }
+
+        final String path = exchange.getRequestURI().getPath();
+        final String method = exchange.getRequestMethod();
+        Matcher matcher;
+        if ("POST".equals(method) && CREATE_PAYMENT.matcher(path).matches()) {
+            createPayment(exchange);
+        } else if ("POST".equals(method) && (matcher = PAYMENT_ACTION.matcher(path)).matches()) {
+            final String paymentId = matcher.group(1);
+            final String action = matcher.group(2);
+            if ("refund".equals(action)) {
+                respond(exchange, 201, "{\"id\":\"" + String.format("%020d%010d", sequence.incrementAndGet(), 300001) + "\",\"status\":\"REFUND_REQUESTED\"}");
+            } else {
+                respond(exchange, 200, "{\"payment\":" + payment(paymentId, "approve".equals(action) ? "CAPTURE_REQUESTED" : "CANCELLED") + "}");
+            }
+        } else if ("GET".equals(method) && (matcher = PAYMENT.matcher(path)).matches()) {
+            respond(exchange, 200, payment(matcher.group(1), "CAPTURED"));
+        } else if ("POST".equals(method) && CREATE_TOKEN.matcher(path).matches()) {
+            respond(exchange, 201, "{\"token\":\"" + UUID.randomUUID() + "\",\"isNewToken\":true}");
+        } else {
+            respond(exchange, 404, error("1002", 404, "UNKNOWN_RESOURCE"));
+        }
+    }
+
+    private void createPayment(final HttpExchange exchange) throws IOException {
+        final String idempotenceKey = exchange.getRequestHeaders().getFirst(IDEMPOTENCE_KEY_HEADER);
+        if (idempotenceKey != null) {
+            final String previousResponse = idempotentResponses.getIfPresent(idempotenceKey);
+            if (previousResponse != null) {
+                exchange.getResponseHeaders().set(IDEMPOTENCE_TIMESTAMP_HEADER, String.valueOf(System.currentTimeMillis()));
+                respond(exchange, previousResponse.startsWith("{\"errorId\"") ? 402 : 201, previousResponse);
+                return;
+            }
+        }
+
+        final String paymentId = String.format("%020d%010d", sequence.incrementAndGet(), 100001);
+        final String status = nextStatus();
+        final String body;
+        final int statusCode;
+        if (REJECTED.equals(status)) {
+            statusCode = 402;
+            body = "{\"errorId\":\"" + UUID.randomUUID() + "\",\"errors\":[{\"code\":\"430330\",\"httpStatusCode\":402,\"message\":\"Not authorised\"}]," +
+                   "\"paymentResult\":{\"payment\":" + payment(paymentId, status) + "}}";
+        } else {
+            statusCode = 201;
+            body = "{\"creationOutput\":{\"additionalReference\":\"" + paymentId.substring(0, 20) + "\",\"externalReference\":\"" + paymentId + "\"}," +
+                   "\"payment\":" + payment(paymentId, status) + "}";
+        }
+        if (idempotenceKey != null) {
+            idempotentResponses.put(idempotenceKey, body);
+        }
+        respond(exchange, statusCode, body);
+    }
+
+    private static String payment(final String paymentId, final String status) {
+        return "{\"id\":\"" + paymentId + "\",\"paymentOutput\":{\"amountOfMoney\":{\"amount\":1234,\"currencyCode\":\"USD\"}," +
+               "\"references\":{\"paymentReference\":\"0\"},\"paymentMethod\":\"card\"," +
+               "\"cardPaymentMethodSpecificOutput\":{\"paymentProductId\":1,\"authorisationCode\":\"726747\"," +
+               "\"fraudResults\":{\"avsResult\":\"0\",\"cvvResult\":\"M\",\"fraudServiceResult\":\"no-advice\"}}}," +
+               "\"status\":\"" + status + "\",\"statusOutput\":{\"isCancellable\":true,\"statusCode\":600,\"isAuthorized\":true,\"isRefundable\":false}}";
+    }
+
+    private static String error(final String code, final int httpStatusCode, final String message) {
+        return "{\"errorId\":\"" + UUID.randomUUID() + "\",\"errors\":[{\"code\":\"" + code + "\",\"httpStatusCode\":" + httpStatusCode + ",\"message\":\"" + message + "\"}]}";
+    }
+
+    private static void respond(final HttpExchange exchange, final int statusCode, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(statusCode, bytes.length);
+        final OutputStream outputStream = exchange.getResponseBody();
+        outputStream.write(bytes);
+        outputStream.flush();
+    }
+
+    private static void drain(final InputStream inputStream) throws IOException {
+        ByteStreams.copy(inputStream, ByteStreams.nullOutputStream());
+    }
+
+    private String nextStatus() {
+        int remaining = (int) (nextDouble() * statusMixTotal);
+        for (final Map.Entry<String, Integer> entry : statusMix.entrySet()) {
+            remaining -= entry.getValue();
+            if (remaining < 0) {
+                return entry.getKey();
+            }
+        }
+        return statusMix.keySet().iterator().next();
+    }
+
+    private double nextDouble() {
+        synchronized (random) {
+            return random.nextDouble();
+        }
+    }
+}
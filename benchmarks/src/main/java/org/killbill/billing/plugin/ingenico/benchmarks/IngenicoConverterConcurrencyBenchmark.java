@@ -0,0 +1,94 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.plugin.ingenico.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.killbill.billing.plugin.ingenico.client.model.paymentinfo.Card;
+import org.killbill.billing.plugin.ingenico.client.payment.converter.impl.PaymentInfoConverterService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ingenico.connect.gateway.sdk.java.domain.payment.CreatePaymentRequest;
+
+/**
+ * Converts payment infos from many threads through a single converter service, as the plugin does for a tenant,
+ * and fails the run as soon as a request carries another thread's data.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(16)
+public class IngenicoConverterConcurrencyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class SharedState {
+
+        private final AtomicInteger threads = new AtomicInteger();
+        private PaymentInfoConverterService paymentInfoConverterService;
+
+        @Setup
+        public void setUp() {
+            paymentInfoConverterService = new PaymentInfoConverterService();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+
+        private Card card;
+
+        @Setup
+        public void setUp(final SharedState sharedState) {
+            final int thread = sharedState.threads.incrementAndGet();
+            card = new Card();
+            card.setNumber(String.format("45673500%08d", thread));
+            card.setHolderName("Wile Coyote " + thread);
+            card.setStreet(thread + " Desert Road");
+            card.setCity("Phoenix " + thread);
+            card.setPostalCode("85001");
+            card.setCountry("US");
+        }
+    }
+
+    @Benchmark
+    public CreatePaymentRequest convertPaymentInfo(final SharedState sharedState, final ThreadState threadState) {
+        final CreatePaymentRequest request = sharedState.paymentInfoConverterService.convertPaymentInfoToPaymentRequest(threadState.card);
+
+        final String number = request.getCardPaymentMethodSpecificInput().getCard().getCardNumber();
+        final String city = request.getOrder().getCustomer().getBillingAddress().getCity();
+        final String street = request.getOrder().getCustomer().getBillingAddress().getStreet();
+        if (!threadState.card.getNumber().equals(number) || !threadState.card.getCity().equals(city) || !threadState.card.getStreet().equals(street)) {
+            throw new IllegalStateException("Request built for " + threadState.card.getNumber() + " carries card " + number + ", city " + city + " and street " + street);
+        }
+        return request;
+    }
+}
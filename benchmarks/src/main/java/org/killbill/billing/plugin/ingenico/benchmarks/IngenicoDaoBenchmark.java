@@ -0,0 +1,177 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.benchmarks;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentModificationResponse;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentServiceProviderResult;
+import org.killbill.billing.plugin.ingenico.dao.IngenicoDao;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableList;
+import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
+
+/**
+ * Database cost of a payment status refresh ({@link IngenicoDao#updateResponse}).
+ * <p>
+ * Needs a MySQL database with the plugin schema (src/main/resources/ddl.sql):
+ * {@code java -jar target/benchmarks.jar IngenicoDaoBenchmark -jvmArgs "-Ddb.url=jdbc:mysql://127.0.0.1:3306/killbill -Ddb.user=root -Ddb.password=root"}.
+ * The {@code statements} counter is reported in the same unit as the throughput: their ratio is the number of
+ * statements sent per refresh.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class IngenicoDaoBenchmark {
+
+    private static final AtomicLong STATEMENTS = new AtomicLong();
+
+    private final List<PluginProperty> properties = ImmutableList.<PluginProperty>of(new PluginProperty("paymentTransactionExternalKey", "e8b2b1ab-0a3f-4c4b-9b0b-7b6e0a8e1f2c", false));
+
+    private MysqlDataSource dataSource;
+    private IngenicoDao dao;
+    private UUID kbTenantId;
+    private UUID kbPaymentTransactionId;
+    private IngenicoResponsesRecord response;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+
+        public long statements;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+            STATEMENTS.set(0);
+        }
+
+        void record() {
+            statements += STATEMENTS.getAndSet(0);
+        }
+    }
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = new MysqlDataSource() {
+            @Override
+            public Connection getConnection() throws SQLException {
+                return countingStatements(super.getConnection());
+            }
+        };
+        dataSource.setURL(System.getProperty("db.url", "jdbc:mysql://127.0.0.1:3306/killbill"));
+        dataSource.setUser(System.getProperty("db.user", "root"));
+        dataSource.setPassword(System.getProperty("db.password", "root"));
+        dao = new IngenicoDao(dataSource);
+
+        kbTenantId = UUID.randomUUID();
+        kbPaymentTransactionId = UUID.randomUUID();
+        final UUID kbPaymentId = UUID.randomUUID();
+        dao.addResponse(UUID.randomUUID(),
+                        kbPaymentId,
+                        kbPaymentTransactionId,
+                        TransactionType.AUTHORIZE,
+                        new BigDecimal("12.34"),
+                        Currency.USD,
+                        new PaymentModificationResponse(PaymentServiceProviderResult.AUTHORISED, "PENDING_APPROVAL", "000000123410000012340000100001"),
+                        new DateTime(DateTimeZone.UTC),
+                        kbTenantId);
+        response = dao.getResponse(kbPaymentId, kbTenantId);
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        try {
+            final PreparedStatement statement = connection.prepareStatement("delete from ingenico_responses where kb_tenant_id = ?");
+            statement.setString(1, kbTenantId.toString());
+            statement.executeUpdate();
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+
+    @Benchmark
+    public IngenicoResponsesRecord updateResponseByTransactionId(final Counters counters) throws SQLException {
+        final IngenicoResponsesRecord updated = dao.updateResponse(kbPaymentTransactionId, "PENDING_APPROVAL", PaymentServiceProviderResult.AUTHORISED, properties, kbTenantId);
+        counters.record();
+        return updated;
+    }
+
+    @Benchmark
+    public IngenicoResponsesRecord updateLoadedResponse(final Counters counters) throws SQLException {
+        // The row is updated in place, so it stays at the latest version
+        response = dao.updateResponse(response, "PENDING_APPROVAL", PaymentServiceProviderResult.AUTHORISED, properties);
+        counters.record();
+        return response;
+    }
+
+    private static Connection countingStatements(final Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                   new Class[]{Connection.class},
+                                                   new InvocationHandler() {
+                                                       @Override
+                                                       public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+                                                           if (method.getName().startsWith("prepare") || method.getName().equals("createStatement")) {
+                                                               STATEMENTS.incrementAndGet();
+                                                           }
+                                                           try {
+                                                               return method.invoke(connection, args);
+                                                           } catch (final InvocationTargetException e) {
+                                                               throw e.getCause();
+                                                           }
+                                                       }
+                                                   });
+    }
+}
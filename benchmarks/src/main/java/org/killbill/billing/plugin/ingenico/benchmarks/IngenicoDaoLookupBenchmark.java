@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.benchmarks;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentModificationResponse;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentServiceProviderResult;
+import org.killbill.billing.plugin.ingenico.dao.IngenicoDao;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.collect.ImmutableMap;
+import com.mysql.jdbc.jdbc2.optional.MysqlDataSource;
+
+/**
+ * Latency of the per-payment lookups against large tables.
+ * <p>
+ * The setup loads {@code rows} synthetic rows (1,000,000 by default) in each table, spread over random tenants,
+ * then fails if MySQL doesn't plan the lookups on the tenant-aware indexes of src/main/resources/ddl.sql:
+ * {@code java -jar target/benchmarks.jar IngenicoDaoLookupBenchmark -jvmArgs "-Ddb.url=jdbc:mysql://127.0.0.1:3306/killbill -Ddb.user=root -Ddb.password=root -Drows=1000000"}.
+ * The synthetic rows are deleted on teardown.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngenicoDaoLookupBenchmark {
+
+    // Marks the synthetic rows, for the cleanup
+    private static final String SYNTHETIC_ACCOUNT_ID = "00000000-0000-0000-0000-00000000beef";
+
+    private MysqlDataSource dataSource;
+    private IngenicoDao dao;
+    private UUID kbTenantId;
+    private UUID kbAccountId;
+    private UUID kbPaymentId;
+    private UUID kbPaymentTransactionId;
+    private String ingenicoPaymentId;
+
+    @Setup
+    public void setUp() throws SQLException {
+        dataSource = new MysqlDataSource();
+        dataSource.setURL(System.getProperty("db.url", "jdbc:mysql://127.0.0.1:3306/killbill"));
+        dataSource.setUser(System.getProperty("db.user", "root"));
+        dataSource.setPassword(System.getProperty("db.password", "root"));
+        dao = new IngenicoDao(dataSource);
+
+        final long rows = Long.valueOf(System.getProperty("rows", "1000000"));
+        loadSyntheticRows(rows);
+
+        kbTenantId = UUID.randomUUID();
+        kbAccountId = UUID.randomUUID();
+        kbPaymentId = UUID.randomUUID();
+        kbPaymentTransactionId = UUID.randomUUID();
+        ingenicoPaymentId = String.valueOf(System.nanoTime());
+        final DateTime now = new DateTime(DateTimeZone.UTC);
+        dao.addResponse(kbAccountId,
+                        kbPaymentId,
+                        kbPaymentTransactionId,
+                        TransactionType.AUTHORIZE,
+                        new BigDecimal("12.34"),
+                        Currency.USD,
+                        new PaymentModificationResponse(PaymentServiceProviderResult.AUTHORISED, "PENDING_APPROVAL", ingenicoPaymentId),
+                        now,
+                        kbTenantId);
+        dao.addPaymentMethod(kbAccountId, UUID.randomUUID(), true, ImmutableMap.<String, String>of(), now, kbTenantId);
+
+        checkPlan("select * from ingenico_responses where kb_payment_id = ? and kb_tenant_id = ? order by record_id desc limit 1",
+                  "ingenico_responses_kb_payment_id", kbPaymentId.toString());
+        checkPlan("select * from ingenico_responses where kb_payment_transaction_id = ? and kb_tenant_id = ? order by record_id desc limit 1",
+                  "ingenico_responses_kb_payment_transaction_id", kbPaymentTransactionId.toString());
+        checkPlan("select * from ingenico_responses where ingenico_payment_id = ? and kb_tenant_id = ? order by record_id desc limit 1",
+                  "ingenico_responses_ingenico_payment_id", ingenicoPaymentId);
+        checkPlan("select * from ingenico_payment_methods where kb_account_id = ? and kb_tenant_id = ? and is_deleted = 0",
+                  "ingenico_payment_methods_kb_account_id", kbAccountId.toString());
+    }
+
+    @TearDown
+    public void tearDown() throws SQLException {
+        executeUpdate("delete from ingenico_responses where kb_account_id in (?, ?)", SYNTHETIC_ACCOUNT_ID, kbAccountId.toString());
+        executeUpdate("delete from ingenico_payment_methods where kb_account_id in (?, ?)", SYNTHETIC_ACCOUNT_ID, kbAccountId.toString());
+    }
+
+    @Benchmark
+    public IngenicoResponsesRecord getResponse() throws SQLException {
+        return dao.getResponse(kbPaymentId, kbTenantId);
+    }
+
+    @Benchmark
+    public IngenicoResponsesRecord getSuccessfulAuthorizationResponse() throws SQLException {
+        return dao.getSuccessfulAuthorizationResponse(kbPaymentId, kbTenantId);
+    }
+
+    @Benchmark
+    public IngenicoResponsesRecord getResponseByIngenicoPaymentId() throws SQLException {
+        return dao.getResponseByIngenicoPaymentId(ingenicoPaymentId, kbTenantId);
+    }
+
+    @Benchmark
+    public List<IngenicoPaymentMethodsRecord> getPaymentMethods() throws SQLException {
+        return dao.getPaymentMethods(kbAccountId, kbTenantId);
+    }
+
+    private void loadSyntheticRows(final long rows) throws SQLException {
+        executeUpdate("insert into ingenico_responses (kb_account_id, kb_payment_id, kb_payment_transaction_id, transaction_type, ingenico_payment_id, ingenico_status, created_date, kb_tenant_id) " +
+                      "values (?, uuid(), uuid(), 'AUTHORIZE', uuid(), 'CAPTURED', utc_timestamp(), uuid())", SYNTHETIC_ACCOUNT_ID);
+        executeUpdate("insert into ingenico_payment_methods (kb_account_id, kb_payment_method_id, created_date, updated_date, kb_tenant_id) " +
+                      "values (?, uuid(), utc_timestamp(), utc_timestamp(), uuid())", SYNTHETIC_ACCOUNT_ID);
+
+        // Double the synthetic rows until there are enough of them
+        for (long loaded = 1; loaded < rows; loaded *= 2) {
+            executeUpdate("insert into ingenico_responses (kb_account_id, kb_payment_id, kb_payment_transaction_id, transaction_type, ingenico_payment_id, ingenico_status, created_date, kb_tenant_id) " +
+                          "select kb_account_id, uuid(), uuid(), transaction_type, uuid(), ingenico_status, created_date, uuid() from ingenico_responses where kb_account_id = ?", SYNTHETIC_ACCOUNT_ID);
+            executeUpdate("insert into ingenico_payment_methods (kb_account_id, kb_payment_method_id, created_date, updated_date, kb_tenant_id) " +
+                          "select kb_account_id, uuid(), created_date, updated_date, uuid() from ingenico_payment_methods where kb_account_id = ?", SYNTHETIC_ACCOUNT_ID);
+        }
+        executeUpdate("analyze table ingenico_responses, ingenico_payment_methods");
+    }
+
+    private void checkPlan(final String query, final String expectedIndex, final String id) throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        try {
+            final PreparedStatement statement = connection.prepareStatement("explain " + query);
+            statement.setString(1, id);
+            statement.setString(2, kbTenantId.toString());
+            final ResultSet resultSet = statement.executeQuery();
+            final String index = resultSet.next() ? resultSet.getString("key") : null;
+            resultSet.close();
+            statement.close();
+            if (!expectedIndex.equals(index)) {
+                throw new IllegalStateException("Expected " + expectedIndex + " to be used by [" + query + "] but the plan uses " + index);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    private void executeUpdate(final String sql, final String... parameters) throws SQLException {
+        final Connection connection = dataSource.getConnection();
+        try {
+            final PreparedStatement statement = connection.prepareStatement(sql);
+            for (int i = 0; i < parameters.length; i++) {
+                statement.setString(i + 1, parameters[i]);
+            }
+            statement.execute();
+            statement.close();
+        } finally {
+            connection.close();
+        }
+    }
+}
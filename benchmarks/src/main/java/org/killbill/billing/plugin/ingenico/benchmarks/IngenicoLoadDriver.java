@@ -0,0 +1,272 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.plugin.ingenico.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.plugin.ingenico.api.mapping.PaymentInfoMappingService;
+import org.killbill.billing.plugin.ingenico.api.mapping.UserDataMappingService;
+import org.killbill.billing.plugin.ingenico.client.IngenicoClient;
+import org.killbill.billing.plugin.ingenico.client.IngenicoClientRegistry;
+import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
+import org.killbill.billing.plugin.ingenico.client.IngenicoPaymentStatusCache;
+import org.killbill.billing.plugin.ingenico.client.IngenicoWebhooksHelper;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentData;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentModificationResponse;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentServiceProviderResult;
+import org.killbill.billing.plugin.ingenico.client.model.PurchaseResult;
+import org.killbill.billing.plugin.ingenico.client.model.UserData;
+import org.killbill.billing.plugin.ingenico.client.model.paymentinfo.Card;
+import org.killbill.billing.plugin.ingenico.client.payment.builder.IngenicoRequestFactory;
+import org.killbill.billing.plugin.ingenico.client.payment.converter.impl.PaymentInfoConverterService;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallMetrics;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCircuitBreaker;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCircuitBreakers;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoExceptionClassifier;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoLatencyHistogram;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoPaymentRequestSender;
+import org.killbill.clock.Clock;
+import org.killbill.clock.DefaultClock;
+
+import com.google.common.base.Optional;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Open-loop load driver: authorizes (then captures) card payments through the plugin client at a fixed rate, against
+ * an in-process {@link ConnectStub}, and reports the achieved rate, the latencies and the outcomes.
+ * <p>
+ * Requests are started on schedule whether or not the previous ones completed, so that a slow or failing gateway shows
+ * up as latency and errors instead of a lower request rate. Requests which can't even be started (all driver threads
+ * busy) are counted as dropped. Run with e.g.:
+ * <pre>
+ * java -cp target/benchmarks.jar -Dingenico.load.rps=200 -Dingenico.load.latency=150 -Dingenico.load.errorRate=0.02 \
+ *      org.killbill.billing.plugin.ingenico.benchmarks.IngenicoLoadDriver
+ * </pre>
+ * Any {@code org.killbill.billing.plugin.ingenico.*} system property is passed on to the plugin configuration.
+ */
+public class IngenicoLoadDriver {
+
+    private static final String PREFIX = ConnectStub.PROPERTY_PREFIX;
+    private static final String PLUGIN_PROPERTY_PREFIX = "org.killbill.billing.plugin.ingenico.";
+    private static final String AUTHORIZE_AND_CAPTURE = "authorize+capture";
+
+    private final double rps;
+    private final long durationSeconds;
+    private final int threads;
+    private final ConnectStub stub;
+    private final Properties pluginProperties;
+
+    private final IngenicoCallMetrics callMetrics = new IngenicoCallMetrics();
+    private final IngenicoCircuitBreakers circuitBreakers = new IngenicoCircuitBreakers();
+    private final IngenicoLatencyHistogram flowLatencies = new IngenicoLatencyHistogram(IngenicoCallMetrics.ALL_TENANTS, AUTHORIZE_AND_CAPTURE);
+    private final ConcurrentMap<String, AtomicLong> outcomes = new ConcurrentHashMap<String, AtomicLong>();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    public IngenicoLoadDriver(final double rps, final long durationSeconds, final int threads, final ConnectStub stub, final Properties pluginProperties) {
+        this.rps = rps;
+        this.durationSeconds = durationSeconds;
+        this.threads = threads;
+        this.stub = stub;
+        this.pluginProperties = pluginProperties;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final ConnectStub stub = ConnectStub.fromSystemProperties();
+
+        final Properties pluginProperties = new Properties();
+        for (final String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith(PLUGIN_PROPERTY_PREFIX)) {
+                pluginProperties.setProperty(name, System.getProperty(name));
+            }
+        }
+
+        final IngenicoLoadDriver driver = new IngenicoLoadDriver(Double.valueOf(System.getProperty(PREFIX + "rps", "50")),
+                                                                 Long.valueOf(System.getProperty(PREFIX + "duration", "60")),
+                                                                 Integer.valueOf(System.getProperty(PREFIX + "threads", "200")),
+                                                                 stub,
+                                                                 pluginProperties);
+        stub.start();
+        try {
+            driver.run();
+        } finally {
+            stub.stop();
+        }
+        driver.report();
+    }
+
+    public void run() throws Exception {
+        final IngenicoClient ingenicoClient = createClient();
+        final Clock clock = new DefaultClock();
+        final Account account = BenchmarkFixtures.account();
+        final UserData userData = UserDataMappingService.toUserData(account, BenchmarkFixtures.cardProperties());
+        final Card card = (Card) PaymentInfoMappingService.toPaymentInfo(clock, account, BenchmarkFixtures.cardProperties());
+        final UUID kbTenantId = UUID.randomUUID();
+
+        final ThreadPoolExecutor workers = new ThreadPoolExecutor(threads,
+                                                                  threads,
+                                                                  0L,
+                                                                  TimeUnit.MILLISECONDS,
+                                                                  new ArrayBlockingQueue<Runnable>(threads),
+                                                                  new ThreadFactoryBuilder().setNameFormat("ingenico-load-%d")
+                                                                                            .setDaemon(true)
+                                                                                            .build());
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        final Runnable flow = new Runnable() {
+            @Override
+            public void run() {
+                authorizeAndCapture(ingenicoClient, new PaymentData<Card>(new BigDecimal("12.34"), Currency.USD, UUID.randomUUID().toString(), UUID.randomUUID(), card), userData, kbTenantId);
+            }
+        };
+
+        final long startNanos = System.nanoTime();
+        scheduler.scheduleAtFixedRate(new Runnable() {
+                                          @Override
+                                          public void run() {
+                                              started.incrementAndGet();
+                                              try {
+                                                  workers.execute(flow);
+                                              } catch (final RejectedExecutionException e) {
+                                                  dropped.incrementAndGet();
+                                              }
+                                          }
+                                      },
+                                      0,
+                                      Math.max(1, (long) (TimeUnit.SECONDS.toMicros(1) / rps)),
+                                      TimeUnit.MICROSECONDS);
+
+        TimeUnit.SECONDS.sleep(durationSeconds);
+        scheduler.shutdownNow();
+        workers.shutdown();
+        workers.awaitTermination(2, TimeUnit.MINUTES);
+        final double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+
+        System.out.println(String.format("Target %.1f req/s, started %d flows (%.1f/s), dropped %d, stub served %d requests (%d faults) in %.1f s",
+                                         rps, started.get(), started.get() / elapsedSeconds, dropped.get(), stub.getRequests(), stub.getFaults(), elapsedSeconds));
+        ingenicoClient.close();
+    }
+
+    private void authorizeAndCapture(final IngenicoClient ingenicoClient, final PaymentData<Card> paymentData, final UserData userData, final UUID kbTenantId) {
+        final long startMillis = System.currentTimeMillis();
+        final PurchaseResult purchaseResult = ingenicoClient.create(TransactionType.AUTHORIZE, paymentData, userData, null, kbTenantId);
+        String outcome = toOutcome("authorize", purchaseResult.getResult(), purchaseResult.getIngenicoCallErrorStatus());
+        IngenicoCallErrorStatus errorStatus = purchaseResult.getIngenicoCallErrorStatus().orNull();
+
+        if (purchaseResult.getResult().orNull() == PaymentServiceProviderResult.AUTHORISED) {
+            final PaymentModificationResponse captureResponse = ingenicoClient.capture(paymentData, purchaseResult.getPaymentId(), null, kbTenantId);
+            @SuppressWarnings("unchecked")
+            final Optional<PaymentServiceProviderResult> captureResult = captureResponse.getResult();
+            @SuppressWarnings("unchecked")
+            final Optional<IngenicoCallErrorStatus> captureErrorStatus = captureResponse.getIngenicoCallErrorStatus();
+            outcome = toOutcome("capture", captureResult, captureErrorStatus);
+            errorStatus = captureErrorStatus.orNull();
+        }
+
+        flowLatencies.record(System.currentTimeMillis() - startMillis, errorStatus);
+        increment(outcome);
+    }
+
+    private static String toOutcome(final String operation, final Optional<PaymentServiceProviderResult> result, final Optional<IngenicoCallErrorStatus> errorStatus) {
+        if (errorStatus.isPresent()) {
+            return operation + " " + errorStatus.get();
+        }
+        return operation + " " + (result.isPresent() ? result.get().name() : "no result");
+    }
+
+    private void increment(final String outcome) {
+        AtomicLong counter = outcomes.get(outcome);
+        if (counter == null) {
+            final AtomicLong newCounter = new AtomicLong();
+            counter = outcomes.putIfAbsent(outcome, newCounter);
+            if (counter == null) {
+                counter = newCounter;
+            }
+        }
+        counter.incrementAndGet();
+    }
+
+    private IngenicoClient createClient() {
+        final Properties properties = new Properties();
+        properties.setProperty(PLUGIN_PROPERTY_PREFIX + "merchantId", "1234");
+        properties.setProperty(PLUGIN_PROPERTY_PREFIX + "endpoint.scheme", "http");
+        properties.setProperty(PLUGIN_PROPERTY_PREFIX + "endpoint.host", "127.0.0.1");
+        properties.setProperty(PLUGIN_PROPERTY_PREFIX + "endpoint.port", String.valueOf(stub.getPort()));
+        properties.setProperty(PLUGIN_PROPERTY_PREFIX + "maxConnections", String.valueOf(threads));
+        properties.putAll(pluginProperties);
+
+        final IngenicoConfigProperties config = new IngenicoConfigProperties(properties);
+        final IngenicoRequestFactory ingenicoRequestFactory = new IngenicoRequestFactory(new PaymentInfoConverterService(), config);
+        final IngenicoPaymentRequestSender ingenicoPaymentRequestSender = new IngenicoPaymentRequestSender(new IngenicoClientRegistry(config), config, circuitBreakers, callMetrics, new IngenicoExceptionClassifier());
+        final IngenicoPaymentStatusCache paymentStatusCache = new IngenicoPaymentStatusCache(config.getPaymentStatusCacheTtl(), config.getPaymentStatusCacheTerminalTtl(), config.getPaymentStatusCacheMaxSize());
+        return new IngenicoClient(ingenicoRequestFactory, ingenicoPaymentRequestSender, paymentStatusCache, new IngenicoWebhooksHelper(null, null));
+    }
+
+    public void report() {
+        System.out.println();
+        System.out.println("Outcomes:");
+        for (final Map.Entry<String, AtomicLong> outcome : outcomes.entrySet()) {
+            System.out.println(String.format("  %-40s %d", outcome.getKey(), outcome.getValue().get()));
+        }
+
+        System.out.println();
+        System.out.println(String.format("  %-20s %8s %8s %8s %8s %8s %8s", "operation", "count", "errors", "p50", "p99", "p99.9", "max"));
+        printLatencies(flowLatencies);
+        for (final IngenicoLatencyHistogram histogram : callMetrics.getHistograms()) {
+            if (IngenicoCallMetrics.ALL_TENANTS.equals(histogram.getKbTenantId())) {
+                printLatencies(histogram);
+            }
+        }
+
+        System.out.println();
+        for (final IngenicoCircuitBreaker circuitBreaker : circuitBreakers.getCircuitBreakers()) {
+            System.out.println("Circuit breaker " + circuitBreaker);
+        }
+    }
+
+    private static void printLatencies(final IngenicoLatencyHistogram histogram) {
+        long errors = 0;
+        for (final IngenicoCallErrorStatus errorStatus : IngenicoCallErrorStatus.values()) {
+            errors += histogram.getErrors(errorStatus);
+        }
+        System.out.println(String.format("  %-20s %8d %8d %6dms %6dms %6dms %6dms",
+                                         histogram.getOperation(),
+                                         histogram.getCount(),
+                                         errors,
+                                         histogram.getPercentile(50),
+                                         histogram.getPercentile(99),
+                                         histogram.getPercentile(99.9),
+                                         histogram.getMax()));
+    }
+}
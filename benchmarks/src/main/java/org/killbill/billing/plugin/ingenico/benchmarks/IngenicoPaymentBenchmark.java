@@ -0,0 +1,211 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.benchmarks;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.account.api.Account;
+import org.killbill.billing.catalog.api.Currency;
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.plugin.ingenico.api.IngenicoPaymentTransactionInfoPlugin;
+import org.killbill.billing.plugin.ingenico.api.mapping.IndexedPluginProperties;
+import org.killbill.billing.plugin.ingenico.api.mapping.PaymentInfoMappingService;
+import org.killbill.billing.plugin.ingenico.api.mapping.UserDataMappingService;
+import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
+import org.killbill.billing.plugin.ingenico.client.IngenicoCreatePaymentResponseDecoder;
+import org.killbill.billing.plugin.ingenico.client.IngenicoStreamingMarshaller;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentData;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentInfo;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentServiceProviderResult;
+import org.killbill.billing.plugin.ingenico.client.model.UserData;
+import org.killbill.billing.plugin.ingenico.client.payment.builder.IngenicoRequestFactory;
+import org.killbill.billing.plugin.ingenico.client.payment.builder.PaymentRequestBuilder;
+import org.killbill.billing.plugin.ingenico.client.payment.builder.PaymentRequestTemplate;
+import org.killbill.billing.plugin.ingenico.client.payment.converter.impl.PaymentInfoConverterService;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
+import org.killbill.clock.Clock;
+import org.killbill.clock.DefaultClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.common.base.Joiner;
+import com.ingenico.connect.gateway.sdk.java.defaultimpl.DefaultMarshaller;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.CreatePaymentRequest;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.CreatePaymentResponse;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.CardPaymentMethodSpecificOutput;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.Payment;
+
+/**
+ * CPU cost of the per-payment work done by the plugin, outside of the gateway call.
+ * <p>
+ * Run with {@code java -jar target/benchmarks.jar -prof gc} to also get the allocation rate
+ * ({@code gc.alloc.rate.norm} is the number of bytes allocated per operation).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class IngenicoPaymentBenchmark {
+
+    private Clock clock;
+    private Account account;
+    private List<PluginProperty> properties;
+    private PaymentInfo paymentInfo;
+    private UserData userData;
+    private PaymentData<PaymentInfo> paymentData;
+    private PaymentInfoConverterService paymentInfoConverterService;
+    private IngenicoRequestFactory ingenicoRequestFactory;
+    private CreatePaymentRequest paymentRequest;
+    private IngenicoStreamingMarshaller streamingMarshaller;
+    private String createPaymentResponseJson;
+    private IngenicoCreatePaymentResponseDecoder createPaymentResponseDecoder;
+    private IngenicoResponsesRecord responsesRecord;
+    private IngenicoResponsesRecord failedCallRecord;
+
+    @Setup
+    public void setUp() {
+        clock = new DefaultClock();
+        account = BenchmarkFixtures.account();
+        properties = BenchmarkFixtures.cardProperties();
+        paymentInfo = PaymentInfoMappingService.toPaymentInfo(clock, account, properties);
+        userData = UserDataMappingService.toUserData(account, properties);
+        paymentData = new PaymentData<PaymentInfo>(new BigDecimal("12.34"), Currency.USD, UUID.randomUUID().toString(), paymentInfo);
+        paymentInfoConverterService = new PaymentInfoConverterService();
+        ingenicoRequestFactory = new IngenicoRequestFactory(paymentInfoConverterService, new IngenicoConfigProperties(new Properties()));
+        paymentRequest = ingenicoRequestFactory.createPaymentRequest(paymentData, userData, null);
+        streamingMarshaller = new IngenicoStreamingMarshaller(DefaultMarshaller.INSTANCE);
+        if (!streamingMarshaller.isEquivalent(paymentRequest)) {
+            throw new IllegalStateException("Streaming marshaller output differs from the SDK one: " + streamingMarshaller.marshal(paymentRequest) + " vs " + DefaultMarshaller.INSTANCE.marshal(paymentRequest));
+        }
+        createPaymentResponseJson = BenchmarkFixtures.createPaymentResponseJson();
+        createPaymentResponseDecoder = new IngenicoCreatePaymentResponseDecoder(DefaultMarshaller.INSTANCE);
+        final String decoded = purchaseFields(createPaymentResponseDecoder.decode(createPaymentResponseJson));
+        final String fullyDecoded = purchaseFields(DefaultMarshaller.INSTANCE.unmarshal(createPaymentResponseJson, CreatePaymentResponse.class));
+        if (!decoded.equals(fullyDecoded)) {
+            throw new IllegalStateException("Selective decoding differs from the SDK one: " + decoded + " vs " + fullyDecoded);
+        }
+        responsesRecord = BenchmarkFixtures.authorizationResponse();
+        failedCallRecord = BenchmarkFixtures.failedCallResponse();
+    }
+
+    @Benchmark
+    public CreatePaymentRequest createPaymentRequest() {
+        return ingenicoRequestFactory.createPaymentRequest(paymentData, userData, null);
+    }
+
+    // Baseline for createPaymentRequest: the invariant parts of the request are rebuilt for each payment
+    @Benchmark
+    public CreatePaymentRequest createPaymentRequestWithoutTemplate() {
+        return new PaymentRequestBuilder(paymentData, userData, null, paymentInfoConverterService, new PaymentRequestTemplate()).build();
+    }
+
+    @Benchmark
+    public CreatePaymentRequest convertPaymentInfo() {
+        return paymentInfoConverterService.convertPaymentInfoToPaymentRequest(paymentInfo);
+    }
+
+    @Benchmark
+    public String marshalPaymentRequest() {
+        return streamingMarshaller.marshal(paymentRequest);
+    }
+
+    // Baseline for marshalPaymentRequest
+    @Benchmark
+    public String marshalPaymentRequestWithSdkMarshaller() {
+        return DefaultMarshaller.INSTANCE.marshal(paymentRequest);
+    }
+
+    @Benchmark
+    public CreatePaymentResponse decodeCreatePaymentResponse() {
+        return createPaymentResponseDecoder.unmarshal(createPaymentResponseJson, CreatePaymentResponse.class);
+    }
+
+    // Baseline for decodeCreatePaymentResponse
+    @Benchmark
+    public CreatePaymentResponse decodeCreatePaymentResponseWithSdkMarshaller() {
+        return DefaultMarshaller.INSTANCE.unmarshal(createPaymentResponseJson, CreatePaymentResponse.class);
+    }
+
+    @Benchmark
+    public PaymentInfo toPaymentInfo() {
+        return PaymentInfoMappingService.toPaymentInfo(clock, account, properties);
+    }
+
+    @Benchmark
+    public UserData toUserData() {
+        return UserDataMappingService.toUserData(account, properties);
+    }
+
+    // Mapping work of an authorization: the properties indexed once, and shared by the mapping services
+    @Benchmark
+    public UserData mapAuthorization() {
+        final IndexedPluginProperties indexedProperties = IndexedPluginProperties.of(properties);
+        PaymentInfoMappingService.toPaymentInfo(clock, account, indexedProperties);
+        return UserDataMappingService.toUserData(account, indexedProperties);
+    }
+
+    // Same, with each mapping service indexing the properties itself
+    @Benchmark
+    public UserData mapAuthorizationWithoutSharedIndex() {
+        PaymentInfoMappingService.toPaymentInfo(clock, account, properties);
+        return UserDataMappingService.toUserData(account, properties);
+    }
+
+    @Benchmark
+    public IngenicoPaymentTransactionInfoPlugin transactionInfoFromRecord() {
+        return new IngenicoPaymentTransactionInfoPlugin(responsesRecord);
+    }
+
+    @Benchmark
+    public IngenicoPaymentTransactionInfoPlugin transactionInfoFromFailedCallRecord() {
+        return new IngenicoPaymentTransactionInfoPlugin(failedCallRecord);
+    }
+
+    @Benchmark
+    public PaymentServiceProviderResult paymentResultForId() {
+        return PaymentServiceProviderResult.getPaymentResultForId("PENDING_APPROVAL", TransactionType.AUTHORIZE);
+    }
+
+    // The fields read to build a PurchaseResult
+    private static String purchaseFields(final CreatePaymentResponse response) {
+        final Payment payment = response.getPayment();
+        final CardPaymentMethodSpecificOutput cardOutput = payment.getPaymentOutput().getCardPaymentMethodSpecificOutput();
+        return Joiner.on('|').useForNull("null").join(payment.getId(),
+                                                      payment.getStatus(),
+                                                      payment.getPaymentOutput().getReferences().getPaymentReference(),
+                                                      cardOutput.getAuthorisationCode(),
+                                                      cardOutput.getFraudResults().getAvsResult(),
+                                                      cardOutput.getFraudResults().getCvvResult(),
+                                                      cardOutput.getFraudResults().getFraudServiceResult());
+    }
+}
@@ -19,11 +19,15 @@ package org.killbill.billing.plugin.ingenico.api;
 
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Optional;
-import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.killbill.billing.account.api.Account;
 import org.killbill.billing.account.api.AccountData;
 import org.killbill.billing.catalog.api.Currency;
@@ -33,10 +37,13 @@ import org.killbill.billing.osgi.libs.killbill.OSGIKillbillLogService;
 import org.killbill.billing.payment.api.*;
 import org.killbill.billing.payment.plugin.api.*;
 import org.killbill.billing.plugin.api.PluginProperties;
+import org.killbill.billing.plugin.api.payment.PluginGatewayNotification;
 import org.killbill.billing.plugin.api.payment.PluginPaymentMethodPlugin;
 import org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi;
+import org.killbill.billing.plugin.ingenico.api.mapping.IndexedPluginProperties;
 import org.killbill.billing.plugin.ingenico.api.mapping.PaymentInfoMappingService;
 import org.killbill.billing.plugin.ingenico.client.IngenicoClient;
+import org.killbill.billing.plugin.ingenico.client.IngenicoWebhooksHelper;
 import org.killbill.billing.plugin.ingenico.client.model.*;
 import org.killbill.billing.plugin.ingenico.core.IngenicoConfigurationHandler;
 import org.killbill.billing.plugin.ingenico.core.IngenicoTransactionStateHandler;
@@ -57,6 +64,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.killbill.billing.plugin.ingenico.api.mapping.UserDataMappingService.toUserData;
 
@@ -80,26 +92,167 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
 
     private final IngenicoDao dao;
     private final IngenicoTransactionStateHandler ingenicoTransactionStateHandler;
+    private final boolean refreshOnRead;
+    // Refreshes in progress, by tenant and payment
+    private final ConcurrentMap<String, SettableFuture<List<PaymentTransactionInfoPlugin>>> inFlightRefreshes = new ConcurrentHashMap<String, SettableFuture<List<PaymentTransactionInfoPlugin>>>();
 
     public IngenicoPaymentPluginApi(final IngenicoConfigurationHandler ingenicoConfigurationHandler,
                                     final OSGIKillbillAPI killbillAPI,
                                     final OSGIConfigPropertiesService osgiConfigPropertiesService,
                                     final OSGIKillbillLogService logService,
                                     final Clock clock,
-                                    final IngenicoDao dao) {
+                                    final IngenicoDao dao,
+                                    final boolean refreshOnRead) {
         super(killbillAPI, osgiConfigPropertiesService, logService, clock, dao);
         this.ingenicoConfigurationHandler = ingenicoConfigurationHandler;
         this.logService = logService;
         this.dao = dao;
         this.ingenicoTransactionStateHandler = new IngenicoTransactionStateHandler(killbillAPI, dao, clock);
+        this.refreshOnRead = refreshOnRead;
     }
 
     @Override
     public List<PaymentTransactionInfoPlugin> getPaymentInfo(final UUID kbAccountId, final UUID kbPaymentId, final Iterable<PluginProperty> properties, final TenantContext context) throws PaymentPluginApiException {
-        List<PaymentTransactionInfoPlugin> paymentTransactions = super.getPaymentInfo(kbAccountId, kbPaymentId, properties, context);
+        final List<PaymentTransactionInfoPlugin> paymentTransactions = super.getPaymentInfo(kbAccountId, kbPaymentId, properties, context);
+
+        // Otherwise, pending payments are refreshed by the reconciliation poller
+        if (refreshOnRead) {
+            return refreshPaymentInfo(kbAccountId, kbPaymentId, paymentTransactions, context);
+        }
+        return paymentTransactions;
+    }
+
+    /**
+     * Refresh the state of the payment against Ingenico, outside of any Kill Bill call (see IngenicoReconciliationPoller).
+     * The Ingenico call doesn't hold any thread of {@code executor}, which only runs the database and Kill Bill work
+     * before and after it. Joins the refresh in progress for that payment, if any.
+     *
+     * @return the transactions of the payment, as of after the refresh
+     */
+    public ListenableFuture<List<PaymentTransactionInfoPlugin>> reconcilePaymentAsync(final UUID kbAccountId, final UUID kbPaymentId, final UUID kbTenantId, final Executor executor) {
+        final TenantContext context = new IngenicoCallContext(clock.getUTCNow(), kbTenantId);
+        final String key = kbTenantId + "/" + kbPaymentId;
+        final SettableFuture<List<PaymentTransactionInfoPlugin>> refresh = SettableFuture.create();
+        final SettableFuture<List<PaymentTransactionInfoPlugin>> inFlightRefresh = inFlightRefreshes.putIfAbsent(key, refresh);
+        if (inFlightRefresh != null) {
+            return inFlightRefresh;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        final List<PaymentTransactionInfoPlugin> paymentTransactions = IngenicoPaymentPluginApi.super.getPaymentInfo(kbAccountId, kbPaymentId, ImmutableList.<PluginProperty>of(), context);
+                        final IngenicoResponsesRecord ingenicoResponseRecord = getRefreshableResponse(kbPaymentId, context);
+                        if (ingenicoResponseRecord == null) {
+                            completeRefresh(key, refresh, paymentTransactions);
+                            return;
+                        }
+
+                        final IngenicoClient ingenicoClient = ingenicoConfigurationHandler.getConfigurable(kbTenantId);
+                        final TransactionType transactionType = TransactionType.valueOf(ingenicoResponseRecord.getTransactionType());
+                        final ListenableFuture<PaymentModificationResponse> response = ingenicoClient.getPaymentInfoAsync(ingenicoResponseRecord.getIngenicoPaymentId(), transactionType, kbTenantId);
+                        Futures.addCallback(response,
+                                            new FutureCallback<PaymentModificationResponse>() {
+                                                @Override
+                                                public void onSuccess(final PaymentModificationResponse result) {
+                                                    // Back on the executor, the async pool of the client only runs the calls to Ingenico
+                                                    try {
+                                                        executor.execute(new Runnable() {
+                                                            @Override
+                                                            public void run() {
+                                                                try {
+                                                                    completeRefresh(key, refresh, applyPaymentInfo(kbAccountId, kbPaymentId, paymentTransactions, transactionType, ingenicoResponseRecord, result, context));
+                                                                } catch (final RuntimeException e) {
+                                                                    failRefresh(key, refresh, e);
+                                                                }
+                                                            }
+                                                        });
+                                                    } catch (final RejectedExecutionException e) {
+                                                        failRefresh(key, refresh, e);
+                                                    }
+                                                }
+
+                                                @Override
+                                                public void onFailure(final Throwable t) {
+                                                    failRefresh(key, refresh, t);
+                                                }
+                                            },
+                                            MoreExecutors.directExecutor());
+                    } catch (final Exception e) {
+                        failRefresh(key, refresh, e);
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            failRefresh(key, refresh, e);
+        }
+        return refresh;
+    }
+
+    private void completeRefresh(final String key, final SettableFuture<List<PaymentTransactionInfoPlugin>> refresh, final List<PaymentTransactionInfoPlugin> paymentTransactions) {
+        inFlightRefreshes.remove(key, refresh);
+        refresh.set(paymentTransactions);
+    }
+
+    private void failRefresh(final String key, final SettableFuture<List<PaymentTransactionInfoPlugin>> refresh, final Throwable t) {
+        inFlightRefreshes.remove(key, refresh);
+        refresh.setException(t);
+    }
+
+    /**
+     * Only one refresh runs at a time per payment: concurrent callers wait for the one in progress instead of
+     * querying Ingenico and fixing the transaction state again, and get its result.
+     *
+     * @return the transactions of the payment, as of after the refresh
+     */
+    private List<PaymentTransactionInfoPlugin> refreshPaymentInfo(final UUID kbAccountId, final UUID kbPaymentId, final List<PaymentTransactionInfoPlugin> paymentTransactions, final TenantContext context) {
+        final String key = context.getTenantId() + "/" + kbPaymentId;
+        final SettableFuture<List<PaymentTransactionInfoPlugin>> refresh = SettableFuture.create();
+        final SettableFuture<List<PaymentTransactionInfoPlugin>> inFlightRefresh = inFlightRefreshes.putIfAbsent(key, refresh);
+        if (inFlightRefresh != null) {
+            try {
+                return inFlightRefresh.get();
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException e) {
+                logService.log(LogService.LOG_WARNING, "Failed to refresh payment " + kbPaymentId, e.getCause());
+            }
+            return paymentTransactions;
+        }
+
+        List<PaymentTransactionInfoPlugin> refreshedPaymentTransactions = paymentTransactions;
+        try {
+            refreshedPaymentTransactions = doRefreshPaymentInfo(kbAccountId, kbPaymentId, paymentTransactions, context);
+        } catch (final RuntimeException e) {
+            refresh.setException(e);
+            throw e;
+        } finally {
+            inFlightRefreshes.remove(key, refresh);
+            refresh.set(refreshedPaymentTransactions);
+        }
+        return refreshedPaymentTransactions;
+    }
+
+    private List<PaymentTransactionInfoPlugin> doRefreshPaymentInfo(final UUID kbAccountId, final UUID kbPaymentId, final List<PaymentTransactionInfoPlugin> paymentTransactions, final TenantContext context) {
+        final IngenicoResponsesRecord ingenicoResponseRecord = getRefreshableResponse(kbPaymentId, context);
+        if (ingenicoResponseRecord == null) {
+            return paymentTransactions;
+        }
 
         final IngenicoClient ingenicoClient = ingenicoConfigurationHandler.getConfigurable(context.getTenantId());
+        TransactionType transactionType = TransactionType.valueOf(ingenicoResponseRecord.getTransactionType());
+        PaymentModificationResponse response = ingenicoClient.getPaymentInfo(ingenicoResponseRecord.getIngenicoPaymentId(), transactionType, context.getTenantId());
 
+        return applyPaymentInfo(kbAccountId, kbPaymentId, paymentTransactions, transactionType, ingenicoResponseRecord, response, context);
+    }
+
+    /**
+     * @return the latest response of the payment, null if there is none or it has no Ingenico payment to refresh
+     */
+    @Nullable
+    private IngenicoResponsesRecord getRefreshableResponse(final UUID kbPaymentId, final TenantContext context) {
         IngenicoResponsesRecord ingenicoResponseRecord = null;
         try {
             ingenicoResponseRecord = dao.getResponse(kbPaymentId, context.getTenantId());
@@ -108,18 +261,29 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
             logService.log(LogService.LOG_WARNING, "Failed to retrieve payment response from payment " + kbPaymentId, e);
         }
 
-        if (null != ingenicoResponseRecord && null != ingenicoResponseRecord.getIngenicoPaymentId()) {
-            TransactionType transactionType = TransactionType.valueOf(ingenicoResponseRecord.getTransactionType());
-            PaymentModificationResponse response = ingenicoClient.getPaymentInfo(ingenicoResponseRecord.getIngenicoPaymentId(), transactionType);
+        if (null == ingenicoResponseRecord || null == ingenicoResponseRecord.getIngenicoPaymentId()) {
+            return null;
+        }
+        return ingenicoResponseRecord;
+    }
 
-            try {
-                this.ingenicoTransactionStateHandler.updatePaymentInfo(kbAccountId, kbPaymentId, paymentTransactions, transactionType, ingenicoResponseRecord, response, context);
-            } catch (SQLException e) {
-                logService.log(LogService.LOG_WARNING, "Failed to save new response from gateway");
+    private List<PaymentTransactionInfoPlugin> applyPaymentInfo(final UUID kbAccountId, final UUID kbPaymentId, final List<PaymentTransactionInfoPlugin> paymentTransactions, final TransactionType transactionType, final IngenicoResponsesRecord ingenicoResponseRecord, final PaymentModificationResponse response, final TenantContext context) {
+        try {
+            if (!this.ingenicoTransactionStateHandler.updatePaymentInfo(kbAccountId, kbPaymentId, paymentTransactions, transactionType, ingenicoResponseRecord, response, context)) {
+                return paymentTransactions;
             }
+        } catch (SQLException e) {
+            logService.log(LogService.LOG_WARNING, "Failed to save new response from gateway");
+            return paymentTransactions;
+        }
+
+        // The response was updated, or the state of the transactions fixed
+        try {
+            return super.getPaymentInfo(kbAccountId, kbPaymentId, ImmutableList.<PluginProperty>of(), context);
+        } catch (final PaymentPluginApiException e) {
+            logService.log(LogService.LOG_WARNING, "Failed to reload payment " + kbPaymentId, e);
+            return paymentTransactions;
         }
-        
-        return paymentTransactions;
     }
 
 
@@ -136,7 +300,7 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
                                               @Override
                                               public PaymentModificationResponse execute(final PaymentData paymentData, final String paymentId, final SplitSettlementData splitSettlementData) {
                                                   final IngenicoClient ingenicoClient = ingenicoConfigurationHandler.getConfigurable(context.getTenantId());
-                                                  return ingenicoClient.capture(paymentData, paymentId, splitSettlementData);
+                                                  return ingenicoClient.capture(paymentData, paymentId, splitSettlementData, context.getTenantId());
                                               }
                                           },
                                           kbAccountId,
@@ -175,7 +339,7 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
                                               @Override
                                               public PaymentModificationResponse execute(final PaymentData paymentData, final String paymentId, final SplitSettlementData splitSettlementData) {
                                                   final IngenicoClient ingenicoClient = ingenicoConfigurationHandler.getConfigurable(context.getTenantId());
-                                                  return ingenicoClient.cancel(paymentId, splitSettlementData);
+                                                  return ingenicoClient.cancel(paymentId, splitSettlementData, context.getTenantId());
                                               }
                                           },
                                           kbAccountId,
@@ -200,7 +364,7 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
                                               @Override
                                               public PaymentModificationResponse execute(final PaymentData paymentData, final String paymentId, final SplitSettlementData splitSettlementData) {
                                                   final IngenicoClient ingenicoClient = ingenicoConfigurationHandler.getConfigurable(context.getTenantId());
-                                                  return ingenicoClient.refund(paymentData, paymentId, splitSettlementData);
+                                                  return ingenicoClient.refund(paymentData, paymentId, splitSettlementData, context.getTenantId());
                                               }
                                           },
                                           kbAccountId,
@@ -242,7 +406,7 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
         final PaymentInfo paymentInfo = buildPaymentInfo(account, paymentMethodProps.getProperties(), context);
 
         final UserData userData = toUserData(account, properties);
-        final String token = client.tokenizeCreditCard(paymentInfo, userData);
+        final String token = client.tokenizeCreditCard(paymentInfo, userData, context.getTenantId());
         if (token == null) {
             throw new PaymentPluginApiException("Token not created", "Unable to create token");
         }
@@ -265,7 +429,101 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
 
     @Override
     public GatewayNotification processNotification(final String notification, final Iterable<PluginProperty> properties, final CallContext context) throws PaymentPluginApiException {
-        throw new PaymentPluginApiException(null, "PROCESS NOTIFICATION: unsupported operation");
+        final IngenicoClient ingenicoClient = ingenicoConfigurationHandler.getConfigurable(context.getTenantId());
+
+        final IngenicoWebhookEvent event;
+        try {
+            event = ingenicoClient.unmarshalWebhookEvent(notification,
+                                                         PluginProperties.findPluginPropertyValue(IngenicoWebhooksHelper.KEY_ID_HEADER, properties),
+                                                         PluginProperties.findPluginPropertyValue(IngenicoWebhooksHelper.SIGNATURE_HEADER, properties));
+        } catch (final IllegalArgumentException e) {
+            throw new PaymentPluginApiException("Rejected webhook event", e.getMessage());
+        }
+
+        // Only enqueue the event here, it is applied by the IngenicoNotificationProcessor
+        try {
+            String ingenicoPaymentId = event.getObjectId();
+            String ingenicoRefundId = null;
+            if (IngenicoWebhookEvent.isRefundEvent(event.getType()) && event.getObjectId() != null) {
+                // Keyed by the refunded payment, so that refund events are ordered with the events of the payment
+                ingenicoRefundId = event.getObjectId();
+                final IngenicoResponsesRecord refundResponse = dao.getResponseByIngenicoRefundId(ingenicoRefundId, context.getTenantId());
+                ingenicoPaymentId = refundResponse == null ? null : refundResponse.getIngenicoPaymentId();
+            }
+
+            final boolean added = dao.addNotification(event.getId(),
+                                                      event.getType(),
+                                                      ingenicoPaymentId,
+                                                      ingenicoRefundId,
+                                                      event.getStatus(),
+                                                      event.getCreationDate(),
+                                                      notification,
+                                                      clock.getUTCNow(),
+                                                      context.getTenantId());
+            if (!added) {
+                logService.log(LogService.LOG_INFO, "Ignoring duplicate webhook event " + event.getId());
+            }
+        } catch (final SQLException e) {
+            throw new PaymentPluginApiException("Unable to store webhook event " + event.getId(), e);
+        }
+
+        return new PluginGatewayNotification("");
+    }
+
+    /**
+     * Apply a payment (or refund) status pushed by Ingenico (see IngenicoNotificationProcessor).
+     * <p>
+     * Webhook deliveries aren't ordered: an event raised before the last one applied to the payment (or refund) is dropped.
+     *
+     * @param ingenicoPaymentId Ingenico id of the payment (null for refund events about an unknown refund)
+     * @param ingenicoRefundId  Ingenico id of the refund, for refund events
+     * @param eventDate         when Ingenico raised the event, null if unknown
+     * @return false if no payment matches the Ingenico id
+     */
+    public boolean processPaymentStatusNotification(final String eventType,
+                                                    @Nullable final String ingenicoPaymentId,
+                                                    @Nullable final String ingenicoRefundId,
+                                                    final String status,
+                                                    @Nullable final DateTime eventDate,
+                                                    final UUID kbTenantId) throws PaymentPluginApiException, SQLException {
+        final boolean refundEvent = IngenicoWebhookEvent.isRefundEvent(eventType);
+        final IngenicoResponsesRecord ingenicoResponseRecord = refundEvent ? dao.getResponseByIngenicoRefundId(ingenicoRefundId, kbTenantId) : dao.getResponseByIngenicoPaymentId(ingenicoPaymentId, kbTenantId);
+        if (ingenicoResponseRecord == null) {
+            return false;
+        }
+
+        if (eventDate != null) {
+            final DateTime lastEventDate;
+            if (refundEvent) {
+                lastEventDate = ingenicoResponseRecord.getLastEventDate() == null ? null : new DateTime(ingenicoResponseRecord.getLastEventDate().getTime(), DateTimeZone.UTC);
+            } else {
+                lastEventDate = dao.getLastEventDate(ingenicoPaymentId, kbTenantId);
+            }
+            if (lastEventDate != null && eventDate.isBefore(lastEventDate)) {
+                logService.log(LogService.LOG_INFO, "Dropping out of order webhook event for " + (refundEvent ? ingenicoRefundId : ingenicoPaymentId) + ": raised at " + eventDate + ", before the last applied one at " + lastEventDate);
+                return true;
+            }
+        }
+
+        final UUID kbAccountId = UUID.fromString(ingenicoResponseRecord.getKbAccountId());
+        final UUID kbPaymentId = UUID.fromString(ingenicoResponseRecord.getKbPaymentId());
+        final TenantContext context = new IngenicoCallContext(clock.getUTCNow(), kbTenantId);
+        final List<PaymentTransactionInfoPlugin> paymentTransactions = super.getPaymentInfo(kbAccountId, kbPaymentId, ImmutableList.<PluginProperty>of(), context);
+
+        final TransactionType transactionType = TransactionType.valueOf(ingenicoResponseRecord.getTransactionType());
+        final IngenicoClient ingenicoClient = ingenicoConfigurationHandler.getConfigurable(kbTenantId);
+        final PaymentModificationResponse response;
+        if (refundEvent) {
+            response = ingenicoClient.getNotifiedRefundInfo(ingenicoResponseRecord.getIngenicoPaymentId(), ingenicoRefundId, status, kbTenantId);
+        } else {
+            response = ingenicoClient.getNotifiedPaymentInfo(ingenicoPaymentId, status, transactionType, kbTenantId);
+        }
+
+        ingenicoTransactionStateHandler.updatePaymentInfo(kbAccountId, kbPaymentId, paymentTransactions, transactionType, ingenicoResponseRecord, response, context);
+        if (eventDate != null) {
+            dao.updateLastEventDate(ingenicoResponseRecord.getRecordId(), eventDate);
+        }
+        return true;
     }
 
     private abstract static class TransactionExecutor<T> {
@@ -294,7 +552,7 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
                                              public PurchaseResult execute(final PaymentData paymentData, final UserData userData, final SplitSettlementData splitSettlementData) {
                                                  final IngenicoClient ingenicoClient = ingenicoConfigurationHandler.getConfigurable(context.getTenantId());
 
-                                                 return ingenicoClient.create(transactionType, paymentData, userData, splitSettlementData);
+                                                 return ingenicoClient.create(transactionType, paymentData, userData, splitSettlementData, context.getTenantId());
                                              }
                                          },
                                          kbAccountId,
@@ -322,9 +580,10 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
         final IngenicoPaymentMethodsRecord nonNullPaymentMethodsRecord = getIngenicoPaymentMethodsRecord(kbPaymentMethodId, context);
         // Pull extra properties from the payment method (such as the customerId)
         final Iterable<PluginProperty> additionalPropertiesFromRecord = buildPaymentMethodPlugin(nonNullPaymentMethodsRecord).getProperties();
+        // Indexed once, for all the mapping services
         //noinspection unchecked
-        final Iterable<PluginProperty> mergedProperties = PluginProperties.merge(additionalPropertiesFromRecord, properties);
-        final PaymentData paymentData = buildPaymentData(account, kbPaymentId, kbTransactionId, nonNullPaymentMethodsRecord, amount, currency, mergedProperties, context);
+        final IndexedPluginProperties mergedProperties = IndexedPluginProperties.of(PluginProperties.merge(additionalPropertiesFromRecord, properties));
+        final PaymentData paymentData = buildPaymentData(account, new PaymentTransactionLookup(kbPaymentId, kbTransactionId, mergedProperties, context), nonNullPaymentMethodsRecord, amount, currency, mergedProperties, context);
         final UserData userData = toUserData(account, mergedProperties);
         final SplitSettlementData splitSettlementData = null;
         final DateTime utcNow = clock.getUTCNow();
@@ -368,7 +627,7 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
         }
 
         final IngenicoPaymentMethodsRecord nonNullPaymentMethodsRecord = getIngenicoPaymentMethodsRecord(kbPaymentMethodId, context);
-        final PaymentData paymentData = buildPaymentData(account, kbPaymentId, kbTransactionId, nonNullPaymentMethodsRecord, amount, currency, properties, context);
+        final PaymentData paymentData = buildPaymentData(account, new PaymentTransactionLookup(kbPaymentId, kbTransactionId, properties, context), nonNullPaymentMethodsRecord, amount, currency, properties, context);
         final SplitSettlementData splitSettlementData = null;
         final DateTime utcNow = clock.getUTCNow();
 
@@ -396,25 +655,56 @@ public class IngenicoPaymentPluginApi extends PluginPaymentPluginApi<IngenicoRes
         return record;
     }
 
-    private PaymentData<PaymentInfo> buildPaymentData(final AccountData account, final UUID kbPaymentId, final UUID kbTransactionId, final IngenicoPaymentMethodsRecord paymentMethodsRecord, final BigDecimal amount, final Currency currency, final Iterable<PluginProperty> properties, final TenantContext context) throws PaymentPluginApiException {
-        final Payment payment;
-        try {
-            payment = killbillAPI.getPaymentApi().getPayment(kbPaymentId, false, false, properties, context);
-        } catch (final PaymentApiException e) {
-            throw new PaymentPluginApiException(String.format("Unable to retrieve kbPaymentId='%s'", kbPaymentId), e);
+    private PaymentData<PaymentInfo> buildPaymentData(final AccountData account, final PaymentTransactionLookup paymentTransactionLookup, final IngenicoPaymentMethodsRecord paymentMethodsRecord, final BigDecimal amount, final Currency currency, final Iterable<PluginProperty> properties, final TenantContext context) throws PaymentPluginApiException {
+        final String paymentTransactionExternalKey = paymentTransactionLookup.get().getExternalKey();
+        final PaymentInfo paymentInfo = buildPaymentInfo(account, paymentMethodsRecord, properties, context);
+
+        return new PaymentData<PaymentInfo>(amount, currency, paymentTransactionExternalKey, paymentTransactionLookup.kbTransactionId, paymentInfo);
+    }
+
+    /**
+     * Kill Bill transaction processed by the current plugin call, looked up by its id (at most once per call).
+     */
+    private final class PaymentTransactionLookup {
+
+        private final UUID kbPaymentId;
+        private final UUID kbTransactionId;
+        private final Iterable<PluginProperty> properties;
+        private final TenantContext context;
+
+        private PaymentTransaction paymentTransaction;
+
+        private PaymentTransactionLookup(final UUID kbPaymentId, final UUID kbTransactionId, final Iterable<PluginProperty> properties, final TenantContext context) {
+            this.kbPaymentId = kbPaymentId;
+            this.kbTransactionId = kbTransactionId;
+            this.properties = properties;
+            this.context = context;
         }
 
-        final PaymentTransaction paymentTransaction = Iterables.<PaymentTransaction>find(payment.getTransactions(),
-                                                                                         new Predicate<PaymentTransaction>() {
-                                                                                             @Override
-                                                                                             public boolean apply(final PaymentTransaction input) {
-                                                                                                 return kbTransactionId.equals(input.getId());
-                                                                                             }
-                                                                                         });
+        public PaymentTransaction get() throws PaymentPluginApiException {
+            if (paymentTransaction == null) {
+                paymentTransaction = lookup();
+            }
+            return paymentTransaction;
+        }
 
-        final PaymentInfo paymentInfo = buildPaymentInfo(account, paymentMethodsRecord, properties, context);
+        private PaymentTransaction lookup() throws PaymentPluginApiException {
+            final Payment payment;
+            try {
+                payment = killbillAPI.getPaymentApi().getPaymentByTransactionId(kbTransactionId, false, false, properties, context);
+            } catch (final PaymentApiException e) {
+                throw new PaymentPluginApiException(String.format("Unable to retrieve kbTransactionId='%s'", kbTransactionId), e);
+            }
 
-        return new PaymentData<PaymentInfo>(amount, currency, paymentTransaction.getExternalKey(), paymentInfo);
+            // The current transaction is usually the latest one
+            final List<PaymentTransaction> transactions = payment.getTransactions();
+            for (int i = transactions.size() - 1; i >= 0; i--) {
+                if (kbTransactionId.equals(transactions.get(i).getId())) {
+                    return transactions.get(i);
+                }
+            }
+            throw new PaymentPluginApiException(null, String.format("Unable to find kbTransactionId='%s' in kbPaymentId='%s'", kbTransactionId, kbPaymentId));
+        }
     }
 
     private PaymentInfo buildPaymentInfo(AccountData account, IngenicoPaymentMethodsRecord paymentMethodsRecord, Iterable<PluginProperty> properties, TenantContext context) {
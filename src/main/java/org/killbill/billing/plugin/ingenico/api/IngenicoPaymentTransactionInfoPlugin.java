@@ -30,7 +30,7 @@ import org.killbill.billing.plugin.ingenico.client.model.PaymentModificationResp
 import org.killbill.billing.plugin.ingenico.client.model.PaymentServiceProviderResult;
 import org.killbill.billing.plugin.ingenico.client.model.PurchaseResult;
 import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus;
-import org.killbill.billing.plugin.ingenico.dao.IngenicoDao;
+import org.killbill.billing.plugin.ingenico.dao.IngenicoDecodedResponse;
 import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
 
 import javax.annotation.Nullable;
@@ -90,19 +90,24 @@ public class IngenicoPaymentTransactionInfoPlugin extends PluginPaymentTransacti
     }
 
     public IngenicoPaymentTransactionInfoPlugin(final IngenicoResponsesRecord record) {
+        // The additional data is decoded once, and shared by the status, the error and the properties
+        this(record, new IngenicoDecodedResponse(record));
+    }
+
+    private IngenicoPaymentTransactionInfoPlugin(final IngenicoResponsesRecord record, final IngenicoDecodedResponse response) {
         super(UUID.fromString(record.getKbPaymentId()),
               UUID.fromString(record.getKbPaymentTransactionId()),
               TransactionType.valueOf(record.getTransactionType()),
               record.getAmount(),
               Strings.isNullOrEmpty(record.getCurrency()) ? null : Currency.valueOf(record.getCurrency()),
-              getPaymentPluginStatus(record),
-              getGatewayError(record),
-              truncate(getGatewayErrorCode(record)),
+              getPaymentPluginStatus(response),
+              getGatewayError(response),
+              truncate(getGatewayErrorCode(response)),
               record.getIngenicoPaymentId(),
               record.getIngenicoAuthorizationCode(),
               new DateTime(record.getCreatedDate(), DateTimeZone.UTC),
               new DateTime(record.getCreatedDate(), DateTimeZone.UTC),
-              IngenicoModelPluginBase.buildPluginProperties(record.getAdditionalData()));
+              PluginProperties.buildPluginProperties(response.getAdditionalDataOrEmpty()));
     }
 
     private static String getGatewayError(final PurchaseResult purchaseResult) {
@@ -113,8 +118,9 @@ public class IngenicoPaymentTransactionInfoPlugin extends PluginPaymentTransacti
         return toString(paymentModificationResponse.getAdditionalData().get(PurchaseResult.EXCEPTION_MESSAGE));
     }
 
-    private static String getGatewayError(final IngenicoResponsesRecord record) {
-        return record.getIngenicoErrorMessage() != null ? record.getIngenicoErrorMessage() : toString(IngenicoDao.fromAdditionalData(record.getAdditionalData()).get(PurchaseResult.EXCEPTION_MESSAGE));
+    private static String getGatewayError(final IngenicoDecodedResponse response) {
+        final IngenicoResponsesRecord record = response.getRecord();
+        return record.getIngenicoErrorMessage() != null ? record.getIngenicoErrorMessage() : toString(response.getAdditionalData().get(PurchaseResult.EXCEPTION_MESSAGE));
     }
 
     private static String getGatewayErrorCode(final PurchaseResult purchaseResult) {
@@ -125,14 +131,15 @@ public class IngenicoPaymentTransactionInfoPlugin extends PluginPaymentTransacti
         return paymentModificationResponse.getStatus() != null ? paymentModificationResponse.getStatus() : getExceptionClass(paymentModificationResponse.getAdditionalData());
     }
 
-    private static String getGatewayErrorCode(final IngenicoResponsesRecord record) {
+    private static String getGatewayErrorCode(final IngenicoDecodedResponse response) {
+        final IngenicoResponsesRecord record = response.getRecord();
         if (record.getIngenicoErrorCode() != null) {
             return record.getIngenicoErrorCode();
         } else if (record.getIngenicoStatus() != null) {
             // PaymentModificationResponse
             return record.getIngenicoStatus();
         } else {
-            return getExceptionClass(IngenicoDao.fromAdditionalData(record.getAdditionalData()));
+            return getExceptionClass(response.getAdditionalData());
         }
     }
 
@@ -149,9 +156,10 @@ public class IngenicoPaymentTransactionInfoPlugin extends PluginPaymentTransacti
         return (result.isPresent()) ? resultToPaymentPluginStatus(result.get()) : ingenicoCallErrorStatusToPaymentPluginStatus(IngenicoCallErrorStatus.UNKNOWN_FAILURE);
     }
 
-    private static PaymentPluginStatus getPaymentPluginStatus(final IngenicoResponsesRecord record) {
+    private static PaymentPluginStatus getPaymentPluginStatus(final IngenicoDecodedResponse response) {
+        final IngenicoResponsesRecord record = response.getRecord();
         if (Strings.isNullOrEmpty(record.getIngenicoPaymentId())) {
-            final String ingenicoCallErrorStatusString = toString(IngenicoDao.fromAdditionalData(record.getAdditionalData()).get(PurchaseResult.INGENICO_CALL_ERROR_STATUS));
+            final String ingenicoCallErrorStatusString = toString(response.getAdditionalData().get(PurchaseResult.INGENICO_CALL_ERROR_STATUS));
             final IngenicoCallErrorStatus ingenicoCallErrorStatus;
             if (Strings.isNullOrEmpty(ingenicoCallErrorStatusString)) {
                 ingenicoCallErrorStatus = IngenicoCallErrorStatus.UNKNOWN_FAILURE;
@@ -177,6 +185,8 @@ public class IngenicoPaymentTransactionInfoPlugin extends PluginPaymentTransacti
                 return PaymentPluginStatus.UNDEFINED;
             case RESPONSE_INVALID:
                 return PaymentPluginStatus.UNDEFINED;
+            case CIRCUIT_OPEN:
+                return PaymentPluginStatus.CANCELED;
             case UNKNOWN_FAILURE:
                 return PaymentPluginStatus.UNDEFINED;
             default:
@@ -20,7 +20,6 @@ package org.killbill.billing.plugin.ingenico.api.mapping;
 import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.plugin.ingenico.client.model.paymentinfo.Card;
 import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord;
-import org.killbill.billing.plugin.api.PluginProperties;
 
 import static org.killbill.billing.plugin.ingenico.api.IngenicoPaymentPluginApi.PROPERTY_CC_ISSUER_COUNTRY;
 import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.*;
@@ -28,33 +27,34 @@ import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.*;
 // By convention, support the same keys as the Ruby plugins (https://github.com/killbill/killbill-plugin-framework-ruby/blob/master/lib/killbill/helpers/active_merchant/payment_plugin.rb)
 public abstract class CardMappingService {
 
-    public static Card toPaymentInfo(final IngenicoPaymentMethodsRecord paymentMethodsRecord, final Iterable<PluginProperty> properties) {
+    public static Card toPaymentInfo(final IngenicoPaymentMethodsRecord paymentMethodsRecord, final Iterable<PluginProperty> pluginProperties) {
+        final IndexedPluginProperties properties = IndexedPluginProperties.of(pluginProperties);
         final Card card = new Card();
 
-        final String ccNumber = PluginProperties.getValue(PROPERTY_CC_NUMBER,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcNumber(), properties);
+        final String ccNumber = properties.getValue(PROPERTY_CC_NUMBER,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcNumber());
         card.setNumber(ccNumber);
 
-        final String ccFirstName = PluginProperties.getValue(PROPERTY_CC_FIRST_NAME,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcFirstName(), properties);
-        final String ccLastName = PluginProperties.getValue(PROPERTY_CC_LAST_NAME,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcLastName(), properties);
+        final String ccFirstName = properties.getValue(PROPERTY_CC_FIRST_NAME,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcFirstName());
+        final String ccLastName = properties.getValue(PROPERTY_CC_LAST_NAME,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcLastName());
         card.setHolderName(holderName(ccFirstName, ccLastName));
 
-        final String ccExpirationMonth = PluginProperties.getValue(PROPERTY_CC_EXPIRATION_MONTH,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcExpMonth(), properties);
+        final String ccExpirationMonth = properties.getValue(PROPERTY_CC_EXPIRATION_MONTH,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcExpMonth());
         if (ccExpirationMonth != null) {
             card.setExpiryMonth(Integer.valueOf(ccExpirationMonth));
         }
 
-        final String ccExpirationYear = PluginProperties.getValue(PROPERTY_CC_EXPIRATION_YEAR,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcExpYear(), properties);
+        final String ccExpirationYear = properties.getValue(PROPERTY_CC_EXPIRATION_YEAR,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcExpYear());
         if (ccExpirationYear != null) {
             card.setExpiryYear(Integer.valueOf(ccExpirationYear));
         }
 
-        final String ccVerificationValue = PluginProperties.getValue(PROPERTY_CC_VERIFICATION_VALUE,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcVerificationValue(), properties);
+        final String ccVerificationValue = properties.getValue(PROPERTY_CC_VERIFICATION_VALUE,  paymentMethodsRecord == null ? null : paymentMethodsRecord.getCcVerificationValue());
         card.setCvc(ccVerificationValue);
 
-        final String issuerCountry = PluginProperties.findPluginPropertyValue(PROPERTY_CC_ISSUER_COUNTRY, properties);
+        final String issuerCountry = properties.getValue(PROPERTY_CC_ISSUER_COUNTRY);
         card.setIssuerCountry(issuerCountry);
 
-        final String token = PluginProperties.findPluginPropertyValue(PROPERTY_TOKEN, properties);
+        final String token = properties.getValue(PROPERTY_TOKEN);
         card.setToken(token);
 
         return card;
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.api.mapping;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.payment.api.PluginProperty;
+import org.killbill.billing.plugin.api.PluginProperties;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Plugin properties indexed by key, so that looking up a property doesn't scan all of them.
+ * <p>
+ * Lookups behave like {@link PluginProperties#findPluginPropertyValue(String, Iterable)}: the first property with
+ * the key wins, and null or empty values are returned as null. Build it once per call, and pass it to all the mapping
+ * services (they index plain properties themselves otherwise).
+ */
+public class IndexedPluginProperties implements Iterable<PluginProperty> {
+
+    private final Iterable<PluginProperty> properties;
+    private final Map<String, String> values;
+
+    private IndexedPluginProperties(final Iterable<PluginProperty> properties) {
+        this.properties = properties;
+        this.values = new HashMap<String, String>();
+        for (final PluginProperty property : properties) {
+            if (!values.containsKey(property.getKey())) {
+                final String value = property.getValue() == null ? null : String.valueOf(property.getValue());
+                values.put(property.getKey(), Strings.emptyToNull(value));
+            }
+        }
+    }
+
+    public static IndexedPluginProperties of(@Nullable final Iterable<PluginProperty> properties) {
+        if (properties instanceof IndexedPluginProperties) {
+            return (IndexedPluginProperties) properties;
+        }
+        return new IndexedPluginProperties(properties == null ? ImmutableList.<PluginProperty>of() : properties);
+    }
+
+    @Nullable
+    public String getValue(final String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Same as {@link PluginProperties#getValue(String, String, Iterable)}.
+     */
+    @Nullable
+    public String getValue(final String key, @Nullable final String defaultValue) {
+        final String value = values.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    @Override
+    public Iterator<PluginProperty> iterator() {
+        return properties.iterator();
+    }
+}
@@ -19,7 +19,6 @@ package org.killbill.billing.plugin.ingenico.api.mapping;
 
 import org.killbill.billing.account.api.AccountData;
 import org.killbill.billing.payment.api.PluginProperty;
-import org.killbill.billing.plugin.api.PluginProperties;
 import org.killbill.billing.plugin.ingenico.client.model.PaymentInfo;
 import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord;
 import org.killbill.clock.Clock;
@@ -36,7 +35,8 @@ public abstract class PaymentInfoMappingService {
         return toPaymentInfo(clock, account, null, properties);
     }
 
-    public static PaymentInfo toPaymentInfo(final Clock clock, @Nullable final AccountData account, @Nullable final IngenicoPaymentMethodsRecord paymentMethodsRecord, final Iterable<PluginProperty> properties) {
+    public static PaymentInfo toPaymentInfo(final Clock clock, @Nullable final AccountData account, @Nullable final IngenicoPaymentMethodsRecord paymentMethodsRecord, final Iterable<PluginProperty> pluginProperties) {
+        final IndexedPluginProperties properties = IndexedPluginProperties.of(pluginProperties);
         final PaymentInfo paymentInfo;
 
 
@@ -52,46 +52,46 @@ public abstract class PaymentInfoMappingService {
         return paymentInfo;
     }
 
-    private static void setBillingAddress(@Nullable final AccountData account, final PaymentInfo paymentInfo, @Nullable final IngenicoPaymentMethodsRecord paymentMethodsRecord, final Iterable<PluginProperty> properties) {
-        String street = PluginProperties.getValue(PROPERTY_ADDRESS1, paymentMethodsRecord == null ? null : paymentMethodsRecord.getAddress1(), properties);
+    private static void setBillingAddress(@Nullable final AccountData account, final PaymentInfo paymentInfo, @Nullable final IngenicoPaymentMethodsRecord paymentMethodsRecord, final IndexedPluginProperties properties) {
+        String street = properties.getValue(PROPERTY_ADDRESS1, paymentMethodsRecord == null ? null : paymentMethodsRecord.getAddress1());
         if (street == null && account != null) {
             street = account.getAddress1();
         }
         paymentInfo.setStreet(street);
 
-        String houseNumberOrName = PluginProperties.getValue(PROPERTY_ADDRESS2, paymentMethodsRecord == null ? null : paymentMethodsRecord.getAddress2(), properties);
+        String houseNumberOrName = properties.getValue(PROPERTY_ADDRESS2, paymentMethodsRecord == null ? null : paymentMethodsRecord.getAddress2());
         if (houseNumberOrName == null && account != null) {
             houseNumberOrName = account.getAddress2();
         }
         paymentInfo.setHouseNumberOrName(houseNumberOrName);
 
-        String city = PluginProperties.getValue(PROPERTY_CITY, paymentMethodsRecord == null ? null : paymentMethodsRecord.getCity(), properties);
+        String city = properties.getValue(PROPERTY_CITY, paymentMethodsRecord == null ? null : paymentMethodsRecord.getCity());
         if (city == null && account != null) {
             city = account.getCity();
         }
         paymentInfo.setCity(city);
 
-        String postalCode = PluginProperties.getValue(PROPERTY_ZIP, paymentMethodsRecord == null ? null : paymentMethodsRecord.getZip(), properties);
+        String postalCode = properties.getValue(PROPERTY_ZIP, paymentMethodsRecord == null ? null : paymentMethodsRecord.getZip());
         if (postalCode == null && account != null) {
             postalCode = account.getPostalCode();
         }
         paymentInfo.setPostalCode(postalCode);
 
-        String stateOrProvince = PluginProperties.getValue(PROPERTY_STATE, paymentMethodsRecord == null ? null : paymentMethodsRecord.getState(), properties);
+        String stateOrProvince = properties.getValue(PROPERTY_STATE, paymentMethodsRecord == null ? null : paymentMethodsRecord.getState());
         if (stateOrProvince == null && account != null) {
             stateOrProvince = account.getStateOrProvince();
         }
         paymentInfo.setStateOrProvince(stateOrProvince);
 
-        String country = PluginProperties.getValue(PROPERTY_COUNTRY, paymentMethodsRecord == null ? null : paymentMethodsRecord.getCountry(), properties);
+        String country = properties.getValue(PROPERTY_COUNTRY, paymentMethodsRecord == null ? null : paymentMethodsRecord.getCountry());
         if (country == null && account != null) {
             country = account.getCountry();
         }
         paymentInfo.setCountry(country);
     }
 
-    private static void setSelectedBrand(final PaymentInfo paymentInfo, final Iterable<PluginProperty> properties) {
-        final String brand = PluginProperties.findPluginPropertyValue(PROPERTY_CC_TYPE, properties);
+    private static void setSelectedBrand(final PaymentInfo paymentInfo, final IndexedPluginProperties properties) {
+        final String brand = properties.getValue(PROPERTY_CC_TYPE);
         final Integer paymentProductId = PaymentProductMappingService.toPaymentProductId(brand);
         paymentInfo.setPaymentProductId(paymentProductId);
     }
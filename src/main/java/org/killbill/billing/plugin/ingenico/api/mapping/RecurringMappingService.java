@@ -18,7 +18,6 @@
 package org.killbill.billing.plugin.ingenico.api.mapping;
 
 import org.killbill.billing.payment.api.PluginProperty;
-import org.killbill.billing.plugin.api.PluginProperties;
 import org.killbill.billing.plugin.ingenico.client.model.paymentinfo.Recurring;
 import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord;
 
@@ -26,12 +25,13 @@ import static org.killbill.billing.plugin.api.payment.PluginPaymentPluginApi.PRO
 
 public abstract class RecurringMappingService {
 
-    public static Recurring toPaymentInfo(final IngenicoPaymentMethodsRecord paymentMethodsRecord, final Iterable<PluginProperty> properties) {
+    public static Recurring toPaymentInfo(final IngenicoPaymentMethodsRecord paymentMethodsRecord, final Iterable<PluginProperty> pluginProperties) {
+        final IndexedPluginProperties properties = IndexedPluginProperties.of(pluginProperties);
         final Recurring recurring = new Recurring();
 
         recurring.setRecurringDetailReference(paymentMethodsRecord.getToken());
 
-        final String ccVerificationValue = PluginProperties.getValue(PROPERTY_CC_VERIFICATION_VALUE, paymentMethodsRecord.getCcVerificationValue(), properties);
+        final String ccVerificationValue = properties.getValue(PROPERTY_CC_VERIFICATION_VALUE, paymentMethodsRecord.getCcVerificationValue());
         recurring.setCvc(ccVerificationValue);
 
         return recurring;
@@ -24,14 +24,14 @@ import org.killbill.billing.account.api.Account;
 import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.plugin.ingenico.api.IngenicoPaymentPluginApi;
 import org.killbill.billing.plugin.ingenico.client.model.UserData;
-import org.killbill.billing.plugin.api.PluginProperties;
 
 import javax.annotation.Nullable;
 import java.util.Locale;
 
 public abstract class UserDataMappingService {
 
-    public static UserData toUserData(@Nullable final Account account, final Iterable<PluginProperty> properties) {
+    public static UserData toUserData(@Nullable final Account account, final Iterable<PluginProperty> pluginProperties) {
+        final IndexedPluginProperties properties = IndexedPluginProperties.of(pluginProperties);
         final UserData userData = new UserData();
 
         // determine the customer id
@@ -39,31 +39,31 @@ public abstract class UserDataMappingService {
         userData.setShopperReference(customerId);
 
         // determine the customer locale
-        final String propertyLocaleString = PluginProperties.findPluginPropertyValue(IngenicoPaymentPluginApi.PROPERTY_CUSTOMER_LOCALE, properties);
+        final String propertyLocaleString = properties.getValue(IngenicoPaymentPluginApi.PROPERTY_CUSTOMER_LOCALE);
         final Optional<Locale> customerLocaleOptional = toCustomerLocale(propertyLocaleString, account);
         final Locale customerLocale = customerLocaleOptional.isPresent() ? customerLocaleOptional.get() : null;
         userData.setShopperLocale(customerLocale);
 
         // determine the email
-        final String propertyEmail = PluginProperties.findPluginPropertyValue(IngenicoPaymentPluginApi.PROPERTY_EMAIL, properties);
+        final String propertyEmail = properties.getValue(IngenicoPaymentPluginApi.PROPERTY_EMAIL);
         final Optional<String> optionalEmail = toCustomerEmail(propertyEmail, account);
         final String email = optionalEmail.isPresent() ? optionalEmail.get() : null;
         userData.setShopperEmail(email);
 
         // determine first Name
-        final String propertyFirstName = PluginProperties.findPluginPropertyValue(IngenicoPaymentPluginApi.PROPERTY_FIRST_NAME, properties);
+        final String propertyFirstName = properties.getValue(IngenicoPaymentPluginApi.PROPERTY_FIRST_NAME);
         final Optional<String> optionalFirstName = toFirstName(propertyFirstName, account);
         final String firstName = optionalFirstName.isPresent() ? optionalFirstName.get() : null;
         userData.setFirstName(firstName);
 
         // determine last Name
-        final String propertyLastName = PluginProperties.findPluginPropertyValue(IngenicoPaymentPluginApi.PROPERTY_LAST_NAME, properties);
+        final String propertyLastName = properties.getValue(IngenicoPaymentPluginApi.PROPERTY_LAST_NAME);
         final Optional<String> optionalLastName = toLastName(propertyLastName, account);
         final String lastName = optionalLastName.isPresent() ? optionalLastName.get() : null;
         userData.setLastName(lastName);
 
         // set ip
-        userData.setShopperIP(PluginProperties.findPluginPropertyValue(IngenicoPaymentPluginApi.PROPERTY_IP, properties));
+        userData.setShopperIP(properties.getValue(IngenicoPaymentPluginApi.PROPERTY_IP));
 
         return userData;
     }
@@ -4,8 +4,12 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
 
 import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.plugin.ingenico.client.model.IngenicoWebhookEvent;
 import org.killbill.billing.plugin.ingenico.client.model.PaymentData;
 import org.killbill.billing.plugin.ingenico.client.model.PaymentInfo;
 import org.killbill.billing.plugin.ingenico.client.model.PaymentModificationResponse;
@@ -20,8 +24,11 @@ import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallE
 import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallResult;
 import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoPaymentRequestSender;
 
+import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.ApprovePaymentRequest;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.CancelPaymentResponse;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.CreatePaymentRequest;
@@ -48,10 +55,14 @@ public class IngenicoClient extends BaseIngenicoPaymentServiceProviderPort imple
     private static final java.lang.String HMAC_ALGORITHM = "";
     private IngenicoRequestFactory ingenicoRequestFactory;
     private IngenicoPaymentRequestSender ingenicoPaymentRequestSender;
+    private final IngenicoPaymentStatusCache paymentStatusCache;
+    private final IngenicoWebhooksHelper webhooksHelper;
 
-    public IngenicoClient(final IngenicoRequestFactory ingenicoRequestFactory, IngenicoPaymentRequestSender ingenicoPaymentRequestSender) {
+    public IngenicoClient(final IngenicoRequestFactory ingenicoRequestFactory, IngenicoPaymentRequestSender ingenicoPaymentRequestSender, final IngenicoPaymentStatusCache paymentStatusCache, final IngenicoWebhooksHelper webhooksHelper) {
         this.ingenicoRequestFactory = ingenicoRequestFactory;
         this.ingenicoPaymentRequestSender = ingenicoPaymentRequestSender;
+        this.paymentStatusCache = paymentStatusCache;
+        this.webhooksHelper = webhooksHelper;
     }
 
     @Override
@@ -59,13 +70,24 @@ public class IngenicoClient extends BaseIngenicoPaymentServiceProviderPort imple
         ingenicoPaymentRequestSender.close();
     }
 
-    public PurchaseResult create(TransactionType transactionType, PaymentData<Card> paymentData, UserData userData, final SplitSettlementData splitSettlementData) {
-        return authorisePurchaseOrCredit(transactionType, paymentData, userData, splitSettlementData);
+    public PurchaseResult create(TransactionType transactionType, PaymentData<Card> paymentData, UserData userData, final SplitSettlementData splitSettlementData, final UUID kbTenantId) {
+        return authorisePurchaseOrCredit(transactionType, paymentData, userData, splitSettlementData, kbTenantId);
+    }
+
+    private PurchaseResult authorisePurchaseOrCredit(TransactionType transactionType, final PaymentData<Card> paymentData, final UserData userData, final SplitSettlementData splitSettlementData, final UUID kbTenantId) {CreatePaymentRequest body = ingenicoRequestFactory.createPaymentRequest(paymentData, userData, splitSettlementData);
+        final IngenicoCallResult<CreatePaymentResponse> ingenicoCallResult = ingenicoPaymentRequestSender.create(body, toIdempotenceKey(paymentData), kbTenantId);
+        return toPurchaseResult(transactionType, paymentData, userData, ingenicoCallResult);
     }
 
-    private PurchaseResult authorisePurchaseOrCredit(TransactionType transactionType, final PaymentData<Card> paymentData, final UserData userData, final SplitSettlementData splitSettlementData) {CreatePaymentRequest body = ingenicoRequestFactory.createPaymentRequest(paymentData, userData, splitSettlementData);
-        final IngenicoCallResult<CreatePaymentResponse> ingenicoCallResult = ingenicoPaymentRequestSender.create(body);
+    /**
+     * Kill Bill reuses the transaction external key when a failed transaction is retried (as a new transaction):
+     * the transaction id is what identifies a single attempt to create the payment.
+     */
+    private String toIdempotenceKey(final PaymentData paymentData) {
+        return paymentData.getKbTransactionId() == null ? null : paymentData.getKbTransactionId().toString();
+    }
 
+    private PurchaseResult toPurchaseResult(final TransactionType transactionType, final PaymentData<Card> paymentData, final UserData userData, final IngenicoCallResult<CreatePaymentResponse> ingenicoCallResult) {
         if (!ingenicoCallResult.receivedWellFormedResponse()) {
             return handleTechnicalFailureAtPurchase(transactionType.toString(), userData, paymentData, ingenicoCallResult);
         }
@@ -97,10 +119,14 @@ public class IngenicoClient extends BaseIngenicoPaymentServiceProviderPort imple
         return new PurchaseResult(paymentData.getPaymentTransactionExternalKey(), ingenicoCall);
     }
 
-    public PaymentModificationResponse capture(final PaymentData paymentData, final String paymentId, final SplitSettlementData splitSettlementData) {
+    public PaymentModificationResponse capture(final PaymentData paymentData, final String paymentId, final SplitSettlementData splitSettlementData, final UUID kbTenantId) {
         ApprovePaymentRequest body = ingenicoRequestFactory.approvePaymentRequest(paymentData, paymentId, splitSettlementData);
-        final IngenicoCallResult<PaymentApprovalResponse> ingenicoCallResult = ingenicoPaymentRequestSender.approve(paymentId, body);
+        paymentStatusCache.invalidate(kbTenantId, paymentId);
+        final IngenicoCallResult<PaymentApprovalResponse> ingenicoCallResult = ingenicoPaymentRequestSender.approve(paymentId, body, kbTenantId);
+        return toCaptureResponse(paymentData, paymentId, ingenicoCallResult);
+    }
 
+    private PaymentModificationResponse toCaptureResponse(final PaymentData paymentData, final String paymentId, final IngenicoCallResult<PaymentApprovalResponse> ingenicoCallResult) {
         if (!ingenicoCallResult.receivedWellFormedResponse()) {
             return handleTechnicalFailureAtApprove(paymentId, paymentData, ingenicoCallResult);
         }
@@ -118,8 +144,9 @@ public class IngenicoClient extends BaseIngenicoPaymentServiceProviderPort imple
         return new PaymentModificationResponse(paymentId, ingenicoCall, getModificationAdditionalErrorData(ingenicoCall));
     }
 
-    public PaymentModificationResponse cancel(final String paymentId, final SplitSettlementData splitSettlementData) {
-        final IngenicoCallResult<CancelPaymentResponse> ingenicoCallResult = ingenicoPaymentRequestSender.cancel(paymentId);
+    public PaymentModificationResponse cancel(final String paymentId, final SplitSettlementData splitSettlementData, final UUID kbTenantId) {
+        paymentStatusCache.invalidate(kbTenantId, paymentId);
+        final IngenicoCallResult<CancelPaymentResponse> ingenicoCallResult = ingenicoPaymentRequestSender.cancel(paymentId, kbTenantId);
         if (!ingenicoCallResult.receivedWellFormedResponse()) {
             return handleTechnicalFailureAtCancel(paymentId, ingenicoCallResult);
         }
@@ -131,13 +158,18 @@ public class IngenicoClient extends BaseIngenicoPaymentServiceProviderPort imple
         return new PaymentModificationResponse(paymentId, ingenicoCall, getModificationAdditionalErrorData(ingenicoCall));
     }
 
-    public PaymentModificationResponse refund(final PaymentData paymentData, final String paymentId, final SplitSettlementData splitSettlementData) {
+    public PaymentModificationResponse refund(final PaymentData paymentData, final String paymentId, final SplitSettlementData splitSettlementData, final UUID kbTenantId) {
         final RefundRequest body = null;
-        final IngenicoCallResult<RefundResponse> ingenicoCallResult = ingenicoPaymentRequestSender.refund(paymentId, body);
+        paymentStatusCache.invalidate(kbTenantId, paymentId);
+        final IngenicoCallResult<RefundResponse> ingenicoCallResult = ingenicoPaymentRequestSender.refund(paymentId, body, kbTenantId);
         if (!ingenicoCallResult.receivedWellFormedResponse()) {
             return handleTechnicalFailureAtRefund(paymentId, paymentData, ingenicoCallResult);
         }
-        return null;
+
+        // Keep the refund id: the webhook events of the refund only reference it
+        final RefundResponse result = ingenicoCallResult.getResult().get();
+        final PaymentServiceProviderResult paymentServiceProviderResult = PaymentServiceProviderResult.getPaymentResultForId(result.getStatus(), TransactionType.REFUND);
+        return new PaymentModificationResponse<RefundResponse>(paymentServiceProviderResult, result.getStatus(), paymentId, result.getId());
     }
 
     private PaymentModificationResponse handleTechnicalFailureAtRefund(final String paymentId, final PaymentData paymentData, final IngenicoCallResult<RefundResponse> ingenicoCall) {
@@ -155,9 +187,9 @@ public class IngenicoClient extends BaseIngenicoPaymentServiceProviderPort imple
         return additionalDataMap;
     }
 
-    public String tokenizeCreditCard(PaymentInfo paymentInfo, UserData userData) {
+    public String tokenizeCreditCard(PaymentInfo paymentInfo, UserData userData, final UUID kbTenantId) {
         CreateTokenRequest body = ingenicoRequestFactory.createTokenRequest(paymentInfo, userData);
-        final IngenicoCallResult<CreateTokenResponse> ingenicoCallResult = ingenicoPaymentRequestSender.createToken(body);
+        final IngenicoCallResult<CreateTokenResponse> ingenicoCallResult = ingenicoPaymentRequestSender.createToken(body, kbTenantId);
         if (!ingenicoCallResult.receivedWellFormedResponse()) {
             return null;
         }
@@ -165,15 +197,73 @@ public class IngenicoClient extends BaseIngenicoPaymentServiceProviderPort imple
         return ingenicoCallResult.getResult().get().getToken();
     }
 
-    public PaymentModificationResponse getPaymentInfo(final String paymentId, TransactionType transactionType) {
-        final IngenicoCallResult<PaymentResponse> ingenicoCallResult = ingenicoPaymentRequestSender.get(paymentId);
+    /**
+     * Served from the payment status cache when possible: final statuses (rejected, cancelled) are never re-fetched, others only once their TTL expired.
+     */
+    public PaymentModificationResponse getPaymentInfo(final String paymentId, TransactionType transactionType, final UUID kbTenantId) {
+        final String cachedStatus = paymentStatusCache.getStatus(kbTenantId, paymentId);
+        if (cachedStatus != null) {
+            return toPaymentInfoResponse(transactionType, paymentId, cachedStatus);
+        }
+
+        final IngenicoCallResult<PaymentResponse> ingenicoCallResult = ingenicoPaymentRequestSender.get(paymentId, kbTenantId);
+        return toPaymentInfoResponse(transactionType, kbTenantId, ingenicoCallResult);
+    }
+
+    /**
+     * Same as {@link #getPaymentInfo(String, TransactionType, UUID)}, without blocking the calling thread.
+     */
+    public ListenableFuture<PaymentModificationResponse> getPaymentInfoAsync(final String paymentId, final TransactionType transactionType, final UUID kbTenantId) {
+        final String cachedStatus = paymentStatusCache.getStatus(kbTenantId, paymentId);
+        if (cachedStatus != null) {
+            return Futures.immediateFuture(toPaymentInfoResponse(transactionType, paymentId, cachedStatus));
+        }
+
+        return Futures.transform(ingenicoPaymentRequestSender.getAsync(paymentId, kbTenantId),
+                                 new Function<IngenicoCallResult<PaymentResponse>, PaymentModificationResponse>() {
+                                     @Override
+                                     public PaymentModificationResponse apply(final IngenicoCallResult<PaymentResponse> ingenicoCallResult) {
+                                         return toPaymentInfoResponse(transactionType, kbTenantId, ingenicoCallResult);
+                                     }
+                                 });
+    }
+
+    /**
+     * @see IngenicoWebhooksHelper#unmarshal(String, String, String)
+     */
+    public IngenicoWebhookEvent unmarshalWebhookEvent(final String body, @Nullable final String keyId, @Nullable final String signature) {
+        return webhooksHelper.unmarshal(body, keyId, signature);
+    }
+
+    /**
+     * Same as {@link #getPaymentInfo(String, TransactionType, UUID)}, for a status pushed by Ingenico.
+     */
+    public PaymentModificationResponse getNotifiedPaymentInfo(final String paymentId, final String status, final TransactionType transactionType, final UUID kbTenantId) {
+        paymentStatusCache.putStatus(kbTenantId, paymentId, status);
+        return toPaymentInfoResponse(transactionType, paymentId, status);
+    }
+
+    /**
+     * Status of a refund pushed by Ingenico: the payment status changes along, so its cached value is dropped.
+     */
+    public PaymentModificationResponse getNotifiedRefundInfo(final String paymentId, final String refundId, final String status, final UUID kbTenantId) {
+        paymentStatusCache.invalidate(kbTenantId, paymentId);
+        final PaymentServiceProviderResult paymentServiceProviderResult = PaymentServiceProviderResult.getPaymentResultForId(status, TransactionType.REFUND);
+        return new PaymentModificationResponse(paymentServiceProviderResult, status, paymentId, refundId);
+    }
+
+    private PaymentModificationResponse toPaymentInfoResponse(final TransactionType transactionType, final UUID kbTenantId, final IngenicoCallResult<PaymentResponse> ingenicoCallResult) {
         if (!ingenicoCallResult.receivedWellFormedResponse()) {
             return null;
         }
 
         PaymentResponse result = ingenicoCallResult.getResult().get();
-        final PaymentServiceProviderResult paymentServiceProviderResult = PaymentServiceProviderResult.getPaymentResultForId(result.getStatus(), transactionType);
+        paymentStatusCache.putStatus(kbTenantId, result.getId(), result.getStatus());
+        return toPaymentInfoResponse(transactionType, result.getId(), result.getStatus());
+    }
 
-        return new PaymentModificationResponse(paymentServiceProviderResult, result.getStatus(), result.getId());
+    private PaymentModificationResponse toPaymentInfoResponse(final TransactionType transactionType, final String paymentId, final String status) {
+        final PaymentServiceProviderResult paymentServiceProviderResult = PaymentServiceProviderResult.getPaymentResultForId(status, transactionType);
+        return new PaymentModificationResponse(paymentServiceProviderResult, status, paymentId);
     }
 }
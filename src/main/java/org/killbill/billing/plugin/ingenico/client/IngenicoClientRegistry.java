@@ -26,8 +26,11 @@ import javax.net.ssl.X509TrustManager;
 
 import com.google.common.base.Preconditions;
 import com.ingenico.connect.gateway.sdk.java.Client;
+import com.ingenico.connect.gateway.sdk.java.Communicator;
 import com.ingenico.connect.gateway.sdk.java.CommunicatorConfiguration;
 import com.ingenico.connect.gateway.sdk.java.Factory;
+import com.ingenico.connect.gateway.sdk.java.Marshaller;
+import com.ingenico.connect.gateway.sdk.java.defaultimpl.DefaultMarshaller;
 import com.ingenico.connect.gateway.sdk.java.merchant.MerchantClient;
 
 public class IngenicoClientRegistry {
@@ -63,7 +66,19 @@ public class IngenicoClientRegistry {
         CommunicatorConfiguration configuration = new CommunicatorConfiguration(config.toProperties())
                 .withApiKeyId(config.getApiKey())
                 .withSecretApiKey(config.getApiSecret());
-        this.client = Factory.createClient(configuration);
+        Marshaller marshaller = DefaultMarshaller.INSTANCE;
+        if (config.isStreamingMarshallerEnabled()) {
+            marshaller = IngenicoStreamingMarshaller.create(marshaller);
+        }
+        if (config.isSelectiveResponseDecodingEnabled()) {
+            marshaller = new IngenicoCreatePaymentResponseDecoder(marshaller);
+        }
+
+        if (marshaller != DefaultMarshaller.INSTANCE) {
+            this.client = Factory.createClient(new Communicator(Factory.createSession(configuration), marshaller));
+        } else {
+            this.client = Factory.createClient(configuration);
+        }
         return this.client;
     }
 
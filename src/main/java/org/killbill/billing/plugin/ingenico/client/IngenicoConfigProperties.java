@@ -29,10 +29,52 @@ public class IngenicoConfigProperties {
     private static final String DEFAULT_MAX_CONNECTIONS = "10";
     private static final String DEFAULT_INTEGRATOR = "Ingenico";
     private static final String DEFAULT_ENDPOINT_HOST = "api-sandbox.globalcollect.com";
+    private static final String DEFAULT_ENDPOINT_SCHEME = "https";
+    // -1 means the default port for the scheme
+    private static final String DEFAULT_ENDPOINT_PORT = "-1";
+    // Disabled by default
+    private static final String DEFAULT_ASYNC_QUEUE_SIZE = "1000";
+    private static final String DEFAULT_RECONCILIATION_INTERVAL = "0";
+    private static final String DEFAULT_RECONCILIATION_PAGE_SIZE = "100";
+    private static final String DEFAULT_RECONCILIATION_THREADS = "4";
+    private static final String DEFAULT_RECONCILIATION_MAX_IN_FLIGHT = "20";
+    private static final String DEFAULT_RECONCILIATION_MAX_AGE = "259200000";
+    private static final String DEFAULT_RECONCILIATION_RATE_LIMIT = "10";
+    private static final String DEFAULT_WEBHOOKS_THREADS = "4";
+    private static final String DEFAULT_WEBHOOKS_POLL_INTERVAL = "1000";
+    private static final String DEFAULT_WEBHOOKS_BATCH_SIZE = "100";
+    private static final String DEFAULT_WEBHOOKS_MAX_ATTEMPTS = "10";
+    private static final String DEFAULT_WEBHOOKS_RETRY_DELAY = "5000";
+    private static final String DEFAULT_WEBHOOKS_MAX_RETRY_DELAY = "3600000";
+    // Disabled by default
+    private static final String DEFAULT_RESPONSES_GROUP_COMMIT_WINDOW = "0";
+    private static final String DEFAULT_RESPONSES_GROUP_COMMIT_MAX_BATCH_SIZE = "100";
+    private static final String DEFAULT_RESPONSES_GROUP_COMMIT_TIMEOUT = "5000";
+    private static final String DEFAULT_ADDITIONAL_DATA_COMPACT = "false";
+    // Disabled by default
+    private static final String DEFAULT_ADDITIONAL_DATA_MIGRATION_INTERVAL = "0";
+    private static final String DEFAULT_ADDITIONAL_DATA_MIGRATION_BATCH_SIZE = "500";
+    private static final String DEFAULT_PAYMENT_METHOD_CACHE_TTL = "60000";
+    private static final String DEFAULT_PAYMENT_METHOD_CACHE_MAX_SIZE = "10000";
+    private static final String DEFAULT_PAYMENT_STATUS_CACHE_TTL = "5000";
+    private static final String DEFAULT_PAYMENT_STATUS_CACHE_TERMINAL_TTL = "300000";
+    private static final String DEFAULT_PAYMENT_STATUS_CACHE_MAX_SIZE = "10000";
+    private static final String DEFAULT_CREATE_RETRY_MAX_ATTEMPTS = "3";
+    private static final String DEFAULT_CREATE_RETRY_INITIAL_BACKOFF = "50";
+    private static final String DEFAULT_CREATE_RETRY_MAX_BACKOFF = "1000";
+    private static final String DEFAULT_CREATE_RETRY_MAX_DURATION = "10000";
+    private static final String DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD = "50";
+    private static final String DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS = "20";
+    private static final String DEFAULT_CIRCUIT_BREAKER_WINDOW = "10000";
+    private static final String DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION = "30000";
+    private static final String DEFAULT_STREAMING_MARSHALLER = "false";
+    private static final String DEFAULT_SELECTIVE_RESPONSE_DECODING = "false";
 
     //private final Map<String, String> merchantAccountMap = new ConcurrentHashMap<String, String>();
 
     private final String endpointHost;
+    private final String endpointScheme;
+    private final String endpointPort;
     private final String authorizationType;
     private final String connectTimeout;
     private final String socketTimeout;
@@ -41,6 +83,43 @@ public class IngenicoConfigProperties {
     private final String apiKey;
     private final String apiSecret;
     private final String merchantId;
+    private final int asyncThreads;
+    private final int asyncQueueSize;
+    private final long reconciliationInterval;
+    private final int reconciliationPageSize;
+    private final int reconciliationThreads;
+    private final int reconciliationMaxInFlight;
+    private final long reconciliationMaxAge;
+    private final double reconciliationRateLimit;
+    private final String webhooksKeyId;
+    private final String webhooksSecretKey;
+    private final int webhooksThreads;
+    private final long webhooksPollInterval;
+    private final int webhooksBatchSize;
+    private final int webhooksMaxAttempts;
+    private final long webhooksRetryDelay;
+    private final long webhooksMaxRetryDelay;
+    private final long responsesGroupCommitWindow;
+    private final int responsesGroupCommitMaxBatchSize;
+    private final long responsesGroupCommitTimeout;
+    private final boolean additionalDataCompact;
+    private final long additionalDataMigrationInterval;
+    private final int additionalDataMigrationBatchSize;
+    private final long paymentMethodCacheTtl;
+    private final long paymentMethodCacheMaxSize;
+    private final long paymentStatusCacheTtl;
+    private final long paymentStatusCacheTerminalTtl;
+    private final long paymentStatusCacheMaxSize;
+    private final int createRetryMaxAttempts;
+    private final long createRetryInitialBackoff;
+    private final long createRetryMaxBackoff;
+    private final long createRetryMaxDuration;
+    private final int circuitBreakerFailureRateThreshold;
+    private final int circuitBreakerMinimumCalls;
+    private final long circuitBreakerWindow;
+    private final long circuitBreakerOpenDuration;
+    private final boolean streamingMarshaller;
+    private final boolean selectiveResponseDecoding;
 
     public IngenicoConfigProperties(final Properties properties) {
         this.authorizationType = properties.getProperty(PROPERTY_PREFIX + "authorizationType", DEFAULT_AUTHORIZATION_TYPE);
@@ -49,9 +128,49 @@ public class IngenicoConfigProperties {
         this.maxConnections = properties.getProperty(PROPERTY_PREFIX + "maxConnections", DEFAULT_MAX_CONNECTIONS);
         this.integrator = properties.getProperty(PROPERTY_PREFIX + "integrator", DEFAULT_INTEGRATOR);
         this.endpointHost = properties.getProperty(PROPERTY_PREFIX + "endpoint.host", DEFAULT_ENDPOINT_HOST);
+        this.endpointScheme = properties.getProperty(PROPERTY_PREFIX + "endpoint.scheme", DEFAULT_ENDPOINT_SCHEME);
+        this.endpointPort = properties.getProperty(PROPERTY_PREFIX + "endpoint.port", DEFAULT_ENDPOINT_PORT);
         this.apiKey = properties.getProperty(PROPERTY_PREFIX + "apiKey", "placeholder");
         this.apiSecret = properties.getProperty(PROPERTY_PREFIX + "apiSecret", "placeholder");
         this.merchantId = properties.getProperty(PROPERTY_PREFIX + "merchantId");
+        // By default, as many in-flight async calls as there are HTTP connections
+        this.asyncThreads = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "asyncThreads", maxConnections));
+        this.asyncQueueSize = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "asyncQueueSize", DEFAULT_ASYNC_QUEUE_SIZE));
+        this.reconciliationInterval = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "reconciliation.interval", DEFAULT_RECONCILIATION_INTERVAL));
+        this.reconciliationPageSize = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "reconciliation.pageSize", DEFAULT_RECONCILIATION_PAGE_SIZE));
+        this.reconciliationThreads = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "reconciliation.threads", DEFAULT_RECONCILIATION_THREADS));
+        this.reconciliationMaxInFlight = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "reconciliation.maxInFlight", DEFAULT_RECONCILIATION_MAX_IN_FLIGHT));
+        this.reconciliationMaxAge = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "reconciliation.maxAge", DEFAULT_RECONCILIATION_MAX_AGE));
+        this.reconciliationRateLimit = Double.valueOf(properties.getProperty(PROPERTY_PREFIX + "reconciliation.rateLimit", DEFAULT_RECONCILIATION_RATE_LIMIT));
+        this.webhooksKeyId = properties.getProperty(PROPERTY_PREFIX + "webhooks.keyId");
+        this.webhooksSecretKey = properties.getProperty(PROPERTY_PREFIX + "webhooks.secretKey");
+        this.webhooksThreads = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "webhooks.threads", DEFAULT_WEBHOOKS_THREADS));
+        this.webhooksPollInterval = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "webhooks.pollInterval", DEFAULT_WEBHOOKS_POLL_INTERVAL));
+        this.webhooksBatchSize = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "webhooks.batchSize", DEFAULT_WEBHOOKS_BATCH_SIZE));
+        this.webhooksMaxAttempts = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "webhooks.maxAttempts", DEFAULT_WEBHOOKS_MAX_ATTEMPTS));
+        this.webhooksRetryDelay = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "webhooks.retryDelay", DEFAULT_WEBHOOKS_RETRY_DELAY));
+        this.webhooksMaxRetryDelay = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "webhooks.maxRetryDelay", DEFAULT_WEBHOOKS_MAX_RETRY_DELAY));
+        this.responsesGroupCommitWindow = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "responses.groupCommit.window", DEFAULT_RESPONSES_GROUP_COMMIT_WINDOW));
+        this.responsesGroupCommitMaxBatchSize = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "responses.groupCommit.maxBatchSize", DEFAULT_RESPONSES_GROUP_COMMIT_MAX_BATCH_SIZE));
+        this.responsesGroupCommitTimeout = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "responses.groupCommit.timeout", DEFAULT_RESPONSES_GROUP_COMMIT_TIMEOUT));
+        this.additionalDataCompact = Boolean.valueOf(properties.getProperty(PROPERTY_PREFIX + "responses.additionalData.compact", DEFAULT_ADDITIONAL_DATA_COMPACT));
+        this.additionalDataMigrationInterval = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "responses.additionalData.migration.interval", DEFAULT_ADDITIONAL_DATA_MIGRATION_INTERVAL));
+        this.additionalDataMigrationBatchSize = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "responses.additionalData.migration.batchSize", DEFAULT_ADDITIONAL_DATA_MIGRATION_BATCH_SIZE));
+        this.paymentMethodCacheTtl = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "paymentMethodCache.ttl", DEFAULT_PAYMENT_METHOD_CACHE_TTL));
+        this.paymentMethodCacheMaxSize = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "paymentMethodCache.maxSize", DEFAULT_PAYMENT_METHOD_CACHE_MAX_SIZE));
+        this.paymentStatusCacheTtl = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "paymentStatusCache.ttl", DEFAULT_PAYMENT_STATUS_CACHE_TTL));
+        this.paymentStatusCacheTerminalTtl = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "paymentStatusCache.terminalTtl", DEFAULT_PAYMENT_STATUS_CACHE_TERMINAL_TTL));
+        this.paymentStatusCacheMaxSize = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "paymentStatusCache.maxSize", DEFAULT_PAYMENT_STATUS_CACHE_MAX_SIZE));
+        this.createRetryMaxAttempts = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "createRetry.maxAttempts", DEFAULT_CREATE_RETRY_MAX_ATTEMPTS));
+        this.createRetryInitialBackoff = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "createRetry.initialBackoff", DEFAULT_CREATE_RETRY_INITIAL_BACKOFF));
+        this.createRetryMaxBackoff = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "createRetry.maxBackoff", DEFAULT_CREATE_RETRY_MAX_BACKOFF));
+        this.createRetryMaxDuration = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "createRetry.maxDuration", DEFAULT_CREATE_RETRY_MAX_DURATION));
+        this.circuitBreakerFailureRateThreshold = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "circuitBreaker.failureRateThreshold", DEFAULT_CIRCUIT_BREAKER_FAILURE_RATE_THRESHOLD));
+        this.circuitBreakerMinimumCalls = Integer.valueOf(properties.getProperty(PROPERTY_PREFIX + "circuitBreaker.minimumCalls", DEFAULT_CIRCUIT_BREAKER_MINIMUM_CALLS));
+        this.circuitBreakerWindow = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "circuitBreaker.window", DEFAULT_CIRCUIT_BREAKER_WINDOW));
+        this.circuitBreakerOpenDuration = Long.valueOf(properties.getProperty(PROPERTY_PREFIX + "circuitBreaker.openDuration", DEFAULT_CIRCUIT_BREAKER_OPEN_DURATION));
+        this.streamingMarshaller = Boolean.valueOf(properties.getProperty(PROPERTY_PREFIX + "streamingMarshaller", DEFAULT_STREAMING_MARSHALLER));
+        this.selectiveResponseDecoding = Boolean.valueOf(properties.getProperty(PROPERTY_PREFIX + "selectiveResponseDecoding", DEFAULT_SELECTIVE_RESPONSE_DECODING));
 
 //        this.merchantAccounts = properties.getProperty(PROPERTY_PREFIX + "merchantAccount");
 //        merchantAccountMap.clear();
@@ -94,6 +213,14 @@ public class IngenicoConfigProperties {
         return endpointHost;
     }
 
+    public String getEndpointScheme() {
+        return endpointScheme;
+    }
+
+    public String getEndpointPort() {
+        return endpointPort;
+    }
+
     public String getApiKey() {
         return apiKey;
     }
@@ -106,6 +233,154 @@ public class IngenicoConfigProperties {
         return merchantId;
     }
 
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    public int getAsyncQueueSize() {
+        return asyncQueueSize;
+    }
+
+    public long getReconciliationInterval() {
+        return reconciliationInterval;
+    }
+
+    public int getReconciliationPageSize() {
+        return reconciliationPageSize;
+    }
+
+    public int getReconciliationThreads() {
+        return reconciliationThreads;
+    }
+
+    public int getReconciliationMaxInFlight() {
+        return reconciliationMaxInFlight;
+    }
+
+    public long getReconciliationMaxAge() {
+        return reconciliationMaxAge;
+    }
+
+    public double getReconciliationRateLimit() {
+        return reconciliationRateLimit;
+    }
+
+    public String getWebhooksKeyId() {
+        return webhooksKeyId;
+    }
+
+    public String getWebhooksSecretKey() {
+        return webhooksSecretKey;
+    }
+
+    public int getWebhooksThreads() {
+        return webhooksThreads;
+    }
+
+    public long getWebhooksPollInterval() {
+        return webhooksPollInterval;
+    }
+
+    public int getWebhooksBatchSize() {
+        return webhooksBatchSize;
+    }
+
+    public int getWebhooksMaxAttempts() {
+        return webhooksMaxAttempts;
+    }
+
+    public long getWebhooksRetryDelay() {
+        return webhooksRetryDelay;
+    }
+
+    public long getWebhooksMaxRetryDelay() {
+        return webhooksMaxRetryDelay;
+    }
+
+    public long getResponsesGroupCommitWindow() {
+        return responsesGroupCommitWindow;
+    }
+
+    public int getResponsesGroupCommitMaxBatchSize() {
+        return responsesGroupCommitMaxBatchSize;
+    }
+
+    public long getResponsesGroupCommitTimeout() {
+        return responsesGroupCommitTimeout;
+    }
+
+    public boolean isAdditionalDataCompact() {
+        return additionalDataCompact;
+    }
+
+    public long getAdditionalDataMigrationInterval() {
+        return additionalDataMigrationInterval;
+    }
+
+    public int getAdditionalDataMigrationBatchSize() {
+        return additionalDataMigrationBatchSize;
+    }
+
+    public long getPaymentMethodCacheTtl() {
+        return paymentMethodCacheTtl;
+    }
+
+    public long getPaymentMethodCacheMaxSize() {
+        return paymentMethodCacheMaxSize;
+    }
+
+    public long getPaymentStatusCacheTtl() {
+        return paymentStatusCacheTtl;
+    }
+
+    public long getPaymentStatusCacheTerminalTtl() {
+        return paymentStatusCacheTerminalTtl;
+    }
+
+    public long getPaymentStatusCacheMaxSize() {
+        return paymentStatusCacheMaxSize;
+    }
+
+    public int getCreateRetryMaxAttempts() {
+        return createRetryMaxAttempts;
+    }
+
+    public long getCreateRetryInitialBackoff() {
+        return createRetryInitialBackoff;
+    }
+
+    public long getCreateRetryMaxBackoff() {
+        return createRetryMaxBackoff;
+    }
+
+    public long getCreateRetryMaxDuration() {
+        return createRetryMaxDuration;
+    }
+
+    public int getCircuitBreakerFailureRateThreshold() {
+        return circuitBreakerFailureRateThreshold;
+    }
+
+    public int getCircuitBreakerMinimumCalls() {
+        return circuitBreakerMinimumCalls;
+    }
+
+    public long getCircuitBreakerWindow() {
+        return circuitBreakerWindow;
+    }
+
+    public long getCircuitBreakerOpenDuration() {
+        return circuitBreakerOpenDuration;
+    }
+
+    public boolean isStreamingMarshallerEnabled() {
+        return streamingMarshaller;
+    }
+
+    public boolean isSelectiveResponseDecodingEnabled() {
+        return selectiveResponseDecoding;
+    }
+
     public Properties toProperties() {
         Properties properties = new Properties();
         properties.put("connect.api.authorizationType", getAuthorizationType());
@@ -114,6 +389,8 @@ public class IngenicoConfigProperties {
         properties.put("connect.api.maxConnections", getMaxConnections());
         properties.put("connect.api.integrator", getIntegrator());
         properties.put("connect.api.endpoint.host", getEndpointHost());
+        properties.put("connect.api.endpoint.scheme", getEndpointScheme());
+        properties.put("connect.api.endpoint.port", getEndpointPort());
         return properties;
     }
 }
@@ -0,0 +1,240 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.plugin.ingenico.client;
+
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.ingenico.connect.gateway.sdk.java.Marshaller;
+import com.ingenico.connect.gateway.sdk.java.domain.definitions.CardFraudResults;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.CreatePaymentResponse;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.CardPaymentMethodSpecificOutput;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.Payment;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.PaymentOutput;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.PaymentReferences;
+
+/**
+ * Decodes CreatePaymentResponse bodies by pulling from the JSON stream only the fields a PurchaseResult is built from
+ * (payment id and status, payment reference, authorisation code, AVS/CVV/fraud service results): the returned object
+ * graph has nothing else.
+ * <p>
+ * Responses requiring an action of the customer (3-D Secure, redirection) are fully decoded by the delegate,
+ * as is everything else.
+ */
+public class IngenicoCreatePaymentResponseDecoder implements Marshaller {
+
+    private static final String REDIRECT_PAYMENT_METHOD = "redirect";
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final Marshaller delegate;
+
+    public IngenicoCreatePaymentResponseDecoder(final Marshaller delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String marshal(final Object requestObject) {
+        return delegate.marshal(requestObject);
+    }
+
+    @Override
+    public <T> T unmarshal(final String responseJson, final Class<T> type) {
+        if (type == CreatePaymentResponse.class && responseJson != null) {
+            final CreatePaymentResponse response = decode(responseJson);
+            if (response != null) {
+                return type.cast(response);
+            }
+        }
+        return delegate.unmarshal(responseJson, type);
+    }
+
+    /**
+     * @return the decoded response, or {@code null} if it needs to be fully decoded
+     */
+    @Nullable
+    public CreatePaymentResponse decode(final String responseJson) {
+        try {
+            final JsonParser parser = jsonFactory.createParser(responseJson);
+            try {
+                return readResponse(parser);
+            } finally {
+                parser.close();
+            }
+        } catch (final IOException e) {
+            // Let the delegate deal with it
+            return null;
+        }
+    }
+
+    private CreatePaymentResponse readResponse(final JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return null;
+        }
+
+        Payment payment = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            final JsonToken value = parser.nextToken();
+            if ("merchantAction".equals(field) && value != JsonToken.VALUE_NULL) {
+                // 3-D Secure or redirection
+                return null;
+            } else if ("payment".equals(field)) {
+                payment = readPayment(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+
+        if (payment == null ||
+            (payment.getPaymentOutput() != null && REDIRECT_PAYMENT_METHOD.equals(payment.getPaymentOutput().getPaymentMethod()))) {
+            return null;
+        }
+
+        final CreatePaymentResponse response = new CreatePaymentResponse();
+        response.setPayment(payment);
+        return response;
+    }
+
+    private Payment readPayment(final JsonParser parser) throws IOException {
+        if (!startObject(parser)) {
+            return null;
+        }
+
+        final Payment payment = new Payment();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("id".equals(field)) {
+                payment.setId(readString(parser));
+            } else if ("status".equals(field)) {
+                payment.setStatus(readString(parser));
+            } else if ("paymentOutput".equals(field)) {
+                payment.setPaymentOutput(readPaymentOutput(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return payment;
+    }
+
+    private PaymentOutput readPaymentOutput(final JsonParser parser) throws IOException {
+        if (!startObject(parser)) {
+            return null;
+        }
+
+        final PaymentOutput paymentOutput = new PaymentOutput();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("paymentMethod".equals(field)) {
+                paymentOutput.setPaymentMethod(readString(parser));
+            } else if ("references".equals(field)) {
+                paymentOutput.setReferences(readReferences(parser));
+            } else if ("cardPaymentMethodSpecificOutput".equals(field)) {
+                paymentOutput.setCardPaymentMethodSpecificOutput(readCardOutput(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return paymentOutput;
+    }
+
+    private PaymentReferences readReferences(final JsonParser parser) throws IOException {
+        if (!startObject(parser)) {
+            return null;
+        }
+
+        final PaymentReferences references = new PaymentReferences();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("paymentReference".equals(field)) {
+                references.setPaymentReference(readString(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return references;
+    }
+
+    private CardPaymentMethodSpecificOutput readCardOutput(final JsonParser parser) throws IOException {
+        if (!startObject(parser)) {
+            return null;
+        }
+
+        final CardPaymentMethodSpecificOutput cardOutput = new CardPaymentMethodSpecificOutput();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("authorisationCode".equals(field)) {
+                cardOutput.setAuthorisationCode(readString(parser));
+            } else if ("fraudResults".equals(field)) {
+                cardOutput.setFraudResults(readFraudResults(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return cardOutput;
+    }
+
+    private CardFraudResults readFraudResults(final JsonParser parser) throws IOException {
+        if (!startObject(parser)) {
+            return null;
+        }
+
+        final CardFraudResults fraudResults = new CardFraudResults();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            final String field = parser.getCurrentName();
+            parser.nextToken();
+            if ("avsResult".equals(field)) {
+                fraudResults.setAvsResult(readString(parser));
+            } else if ("cvvResult".equals(field)) {
+                fraudResults.setCvvResult(readString(parser));
+            } else if ("fraudServiceResult".equals(field)) {
+                fraudResults.setFraudServiceResult(readString(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return fraudResults;
+    }
+
+    // false for a null object
+    private static boolean startObject(final JsonParser parser) throws IOException {
+        if (parser.getCurrentToken() == JsonToken.VALUE_NULL) {
+            return false;
+        } else if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException("Expected an object, got " + parser.getCurrentToken(), parser.getCurrentLocation());
+        }
+        return true;
+    }
+
+    private static String readString(final JsonParser parser) throws IOException {
+        if (parser.getCurrentToken().isStructStart()) {
+            throw new JsonParseException("Expected a value, got " + parser.getCurrentToken(), parser.getCurrentLocation());
+        }
+        return parser.getValueAsString();
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.client;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.plugin.ingenico.client.model.PaymentServiceProviderResult;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Last known Ingenico status of each payment, one bounded cache per tenant.
+ * <p>
+ * Final statuses (see {@link PaymentServiceProviderResult#isFinal(String)}) stay cached until evicted. Other terminal
+ * statuses (see {@link PaymentServiceProviderResult#isTerminal(String)}) expire after {@code terminalTtlMillis}, as a
+ * captured or paid payment can still be refunded, charged back or reversed on the Ingenico side, and all other statuses
+ * expire after {@code ttlMillis}.
+ */
+public class IngenicoPaymentStatusCache {
+
+    private static final String DEFAULT_TENANT = "default";
+
+    private final long ttlMillis;
+    private final long terminalTtlMillis;
+    private final LoadingCache<String, Cache<String, CachedStatus>> cachesPerTenant;
+
+    public IngenicoPaymentStatusCache(final long ttlMillis, final long terminalTtlMillis, final long maxSizePerTenant) {
+        this.ttlMillis = ttlMillis;
+        this.terminalTtlMillis = terminalTtlMillis;
+        this.cachesPerTenant = CacheBuilder.newBuilder()
+                                           .build(new CacheLoader<String, Cache<String, CachedStatus>>() {
+                                               @Override
+                                               public Cache<String, CachedStatus> load(final String tenant) {
+                                                   return CacheBuilder.newBuilder()
+                                                                      .maximumSize(maxSizePerTenant)
+                                                                      .build();
+                                               }
+                                           });
+    }
+
+    /**
+     * @return the cached status, null if unknown or expired
+     */
+    @Nullable
+    public String getStatus(@Nullable final UUID kbTenantId, final String paymentId) {
+        final Cache<String, CachedStatus> cache = getCache(kbTenantId);
+        final CachedStatus cachedStatus = cache.getIfPresent(paymentId);
+        if (cachedStatus == null) {
+            return null;
+        }
+        if (cachedStatus.isExpired(System.currentTimeMillis())) {
+            cache.invalidate(paymentId);
+            return null;
+        }
+        return cachedStatus.getStatus();
+    }
+
+    public void putStatus(@Nullable final UUID kbTenantId, final String paymentId, @Nullable final String status) {
+        if (status == null) {
+            return;
+        }
+        final long expiresAt;
+        if (PaymentServiceProviderResult.isFinal(status)) {
+            expiresAt = Long.MAX_VALUE;
+        } else if (PaymentServiceProviderResult.isTerminal(status)) {
+            expiresAt = System.currentTimeMillis() + terminalTtlMillis;
+        } else {
+            expiresAt = System.currentTimeMillis() + ttlMillis;
+        }
+        getCache(kbTenantId).put(paymentId, new CachedStatus(status, expiresAt));
+    }
+
+    /**
+     * To be called when a modification is sent for the payment.
+     */
+    public void invalidate(@Nullable final UUID kbTenantId, final String paymentId) {
+        getCache(kbTenantId).invalidate(paymentId);
+    }
+
+    private Cache<String, CachedStatus> getCache(@Nullable final UUID kbTenantId) {
+        return cachesPerTenant.getUnchecked(kbTenantId == null ? DEFAULT_TENANT : kbTenantId.toString());
+    }
+
+    private static final class CachedStatus {
+
+        private final String status;
+        private final long expiresAt;
+
+        private CachedStatus(final String status, final long expiresAt) {
+            this.status = status;
+            this.expiresAt = expiresAt;
+        }
+
+        public String getStatus() {
+            return status;
+        }
+
+        public boolean isExpired(final long now) {
+            return now >= expiresAt;
+        }
+    }
+}
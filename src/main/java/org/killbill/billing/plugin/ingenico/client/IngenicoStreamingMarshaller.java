@@ -0,0 +1,672 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.plugin.ingenico.client;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.ingenico.connect.gateway.sdk.java.Marshaller;
+import com.ingenico.connect.gateway.sdk.java.domain.definitions.Address;
+import com.ingenico.connect.gateway.sdk.java.domain.definitions.AmountOfMoney;
+import com.ingenico.connect.gateway.sdk.java.domain.definitions.Card;
+import com.ingenico.connect.gateway.sdk.java.domain.definitions.CardWithoutCvv;
+import com.ingenico.connect.gateway.sdk.java.domain.definitions.ContactDetailsBase;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.ApprovePaymentRequest;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.CreatePaymentRequest;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.AddressPersonal;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.CardPaymentMethodSpecificInput;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.ContactDetails;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.Customer;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.Order;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.OrderApprovePayment;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.OrderReferences;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.OrderReferencesApprovePayment;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.PersonalInformation;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.PersonalName;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.SepaDirectDebitPaymentMethodSpecificInput;
+
+/**
+ * Writes the payment requests built by the plugin (CreatePaymentRequest, ApprovePaymentRequest) with hand-written
+ * field emitters instead of the reflection-based SDK marshaller, into a per-thread buffer.
+ * <p>
+ * The output must be the one of the SDK marshaller, byte for byte: fields are written in the order the SDK (Gson)
+ * writes them, null fields are skipped and strings are escaped the same way. A request with a non-null field the
+ * emitters don't handle is marshalled by the SDK marshaller. Everything else (responses, other requests) is left to
+ * the SDK marshaller.
+ */
+public class IngenicoStreamingMarshaller implements Marshaller {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngenicoStreamingMarshaller.class);
+
+    private static final ImmutableSet<Class<?>> REQUEST_TYPES = ImmutableSet.<Class<?>>of(CreatePaymentRequest.class, ApprovePaymentRequest.class);
+
+    // Don't keep the buffer of an unusually large request around
+    private static final int MAX_RETAINED_BUFFER_SIZE = 16 * 1024;
+
+    private static final String[] REPLACEMENT_CHARS = new String[128];
+    private static final String[] HTML_SAFE_REPLACEMENT_CHARS;
+
+    static {
+        for (int i = 0; i < 0x20; i++) {
+            REPLACEMENT_CHARS[i] = String.format("\\u%04x", i);
+        }
+        REPLACEMENT_CHARS['"'] = "\\\"";
+        REPLACEMENT_CHARS['\\'] = "\\\\";
+        REPLACEMENT_CHARS['\t'] = "\\t";
+        REPLACEMENT_CHARS['\b'] = "\\b";
+        REPLACEMENT_CHARS['\n'] = "\\n";
+        REPLACEMENT_CHARS['\r'] = "\\r";
+        REPLACEMENT_CHARS['\f'] = "\\f";
+        HTML_SAFE_REPLACEMENT_CHARS = REPLACEMENT_CHARS.clone();
+        HTML_SAFE_REPLACEMENT_CHARS['<'] = "\\u003c";
+        HTML_SAFE_REPLACEMENT_CHARS['>'] = "\\u003e";
+        HTML_SAFE_REPLACEMENT_CHARS['&'] = "\\u0026";
+        HTML_SAFE_REPLACEMENT_CHARS['='] = "\\u003d";
+        HTML_SAFE_REPLACEMENT_CHARS['\''] = "\\u0027";
+    }
+
+    private final Marshaller delegate;
+    private final String[] replacementChars;
+    // Read-only once built
+    private final Map<Class<?>, Map<String, Accessor<?>>> accessors = new HashMap<Class<?>, Map<String, Accessor<?>>>();
+    private final Map<Class<?>, ObjectEmitter> emitters = new HashMap<Class<?>, ObjectEmitter>();
+
+    private final ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
+        @Override
+        protected StringBuilder initialValue() {
+            return new StringBuilder(1024);
+        }
+    };
+
+    /**
+     * @return a streaming marshaller if it reproduces the output of the delegate for sample requests, the delegate otherwise
+     */
+    public static Marshaller create(final Marshaller delegate) {
+        final IngenicoStreamingMarshaller marshaller = new IngenicoStreamingMarshaller(delegate);
+        for (final Object sampleRequest : sampleRequests()) {
+            if (!marshaller.isEquivalent(sampleRequest)) {
+                logger.warn("Streaming marshaller output differs from the one of {} for a {}, using the latter", delegate.getClass().getName(), sampleRequest.getClass().getSimpleName());
+                return delegate;
+            }
+        }
+        return marshaller;
+    }
+
+    public IngenicoStreamingMarshaller(final Marshaller delegate) {
+        this.delegate = delegate;
+        this.replacementChars = usesHtmlSafeEscaping(delegate) ? HTML_SAFE_REPLACEMENT_CHARS : REPLACEMENT_CHARS;
+        registerAccessors();
+        for (final Class<?> type : accessors.keySet()) {
+            emitters.put(type, new ObjectEmitter(type));
+        }
+    }
+
+    @Override
+    public String marshal(final Object requestObject) {
+        final String json = requestObject != null && REQUEST_TYPES.contains(requestObject.getClass()) ? marshalStreaming(requestObject) : null;
+        return json != null ? json : delegate.marshal(requestObject);
+    }
+
+    @Override
+    public <T> T unmarshal(final String responseJson, final Class<T> type) {
+        return delegate.unmarshal(responseJson, type);
+    }
+
+    /**
+     * @return {@code true} if the request is written by the emitters, exactly as the delegate would
+     */
+    public boolean isEquivalent(final Object requestObject) {
+        final String json = marshalStreaming(requestObject);
+        return json != null && json.equals(delegate.marshal(requestObject));
+    }
+
+    // null if the request has a field the emitters don't handle
+    private String marshalStreaming(final Object requestObject) {
+        StringBuilder out = buffers.get();
+        if (out.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            out = new StringBuilder(1024);
+            buffers.set(out);
+        }
+        out.setLength(0);
+        return writeValue(requestObject, out) ? out.toString() : null;
+    }
+
+    private boolean writeValue(final Object value, final StringBuilder out) {
+        if (value instanceof String) {
+            writeString((String) value, out);
+            return true;
+        } else if (value instanceof Number || value instanceof Boolean) {
+            out.append(value.toString());
+            return true;
+        }
+
+        // Like the SDK, use the runtime type of the value
+        final ObjectEmitter emitter = emitters.get(value.getClass());
+        return emitter != null && emitter.write(value, out);
+    }
+
+    private void writeString(final String value, final StringBuilder out) {
+        out.append('"');
+        int last = 0;
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            final char c = value.charAt(i);
+            final String replacement;
+            if (c < 128) {
+                replacement = replacementChars[c];
+                if (replacement == null) {
+                    continue;
+                }
+            } else if (c == '\u2028') {
+                replacement = "\\u2028";
+            } else if (c == '\u2029') {
+                replacement = "\\u2029";
+            } else {
+                continue;
+            }
+            out.append(value, last, i);
+            out.append(replacement);
+            last = i + 1;
+        }
+        out.append(value, last, length);
+        out.append('"');
+    }
+
+    private static boolean usesHtmlSafeEscaping(final Marshaller delegate) {
+        final OrderReferences probe = new OrderReferences();
+        probe.setMerchantReference("<");
+        return String.valueOf(delegate.marshal(probe)).contains("\\u003c");
+    }
+
+    private interface Accessor<T> {
+
+        Object get(T object);
+    }
+
+    // Fields of a type, in the order the SDK marshaller writes them (own fields first, then the ones of the superclasses)
+    private final class ObjectEmitter {
+
+        private final List<String> names = new ArrayList<String>();
+        private final List<Accessor<Object>> fieldAccessors = new ArrayList<Accessor<Object>>();
+        // Fields without a hand-written accessor: the request is left to the delegate if they are set
+        private final List<Boolean> unsupported = new ArrayList<Boolean>();
+
+        @SuppressWarnings("unchecked")
+        private ObjectEmitter(final Class<?> type) {
+            for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+                final Map<String, Accessor<?>> declaredAccessors = accessors.get(current);
+                for (final Field field : current.getDeclaredFields()) {
+                    if (field.isSynthetic() || Modifier.isStatic(field.getModifiers()) || Modifier.isTransient(field.getModifiers())) {
+                        continue;
+                    }
+
+                    final Accessor<?> accessor = declaredAccessors == null ? null : declaredAccessors.get(field.getName());
+                    names.add("\"" + field.getName() + "\":");
+                    fieldAccessors.add(accessor != null ? (Accessor<Object>) accessor : reflectiveAccessor(field));
+                    unsupported.add(accessor == null);
+                }
+            }
+        }
+
+        private boolean write(final Object object, final StringBuilder out) {
+            out.append('{');
+            boolean first = true;
+            for (int i = 0; i < names.size(); i++) {
+                final Object value = fieldAccessors.get(i).get(object);
+                if (value == null) {
+                    continue;
+                }
+                if (unsupported.get(i)) {
+                    return false;
+                }
+
+                if (!first) {
+                    out.append(',');
+                }
+                first = false;
+                out.append(names.get(i));
+                if (!writeValue(value, out)) {
+                    return false;
+                }
+            }
+            out.append('}');
+            return true;
+        }
+    }
+
+    private static Accessor<Object> reflectiveAccessor(final Field field) {
+        field.setAccessible(true);
+        return new Accessor<Object>() {
+            @Override
+            public Object get(final Object object) {
+                try {
+                    return field.get(object);
+                } catch (final IllegalAccessException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    }
+
+    private <T> void register(final Class<T> declaringClass, final String field, final Accessor<T> accessor) {
+        Map<String, Accessor<?>> declaredAccessors = accessors.get(declaringClass);
+        if (declaredAccessors == null) {
+            declaredAccessors = new HashMap<String, Accessor<?>>();
+            accessors.put(declaringClass, declaredAccessors);
+        }
+        declaredAccessors.put(field, accessor);
+    }
+
+    // The fields set by the request builders and the payment info converters
+    private void registerAccessors() {
+        register(CreatePaymentRequest.class, "cardPaymentMethodSpecificInput", new Accessor<CreatePaymentRequest>() {
+            @Override
+            public Object get(final CreatePaymentRequest request) {
+                return request.getCardPaymentMethodSpecificInput();
+            }
+        });
+        register(CreatePaymentRequest.class, "order", new Accessor<CreatePaymentRequest>() {
+            @Override
+            public Object get(final CreatePaymentRequest request) {
+                return request.getOrder();
+            }
+        });
+        register(CreatePaymentRequest.class, "sepaDirectDebitPaymentMethodSpecificInput", new Accessor<CreatePaymentRequest>() {
+            @Override
+            public Object get(final CreatePaymentRequest request) {
+                return request.getSepaDirectDebitPaymentMethodSpecificInput();
+            }
+        });
+
+        register(ApprovePaymentRequest.class, "amount", new Accessor<ApprovePaymentRequest>() {
+            @Override
+            public Object get(final ApprovePaymentRequest request) {
+                return request.getAmount();
+            }
+        });
+        register(ApprovePaymentRequest.class, "order", new Accessor<ApprovePaymentRequest>() {
+            @Override
+            public Object get(final ApprovePaymentRequest request) {
+                return request.getOrder();
+            }
+        });
+        register(OrderApprovePayment.class, "references", new Accessor<OrderApprovePayment>() {
+            @Override
+            public Object get(final OrderApprovePayment order) {
+                return order.getReferences();
+            }
+        });
+        register(OrderReferencesApprovePayment.class, "merchantReference", new Accessor<OrderReferencesApprovePayment>() {
+            @Override
+            public Object get(final OrderReferencesApprovePayment references) {
+                return references.getMerchantReference();
+            }
+        });
+
+        register(Order.class, "amountOfMoney", new Accessor<Order>() {
+            @Override
+            public Object get(final Order order) {
+                return order.getAmountOfMoney();
+            }
+        });
+        register(Order.class, "customer", new Accessor<Order>() {
+            @Override
+            public Object get(final Order order) {
+                return order.getCustomer();
+            }
+        });
+        register(Order.class, "references", new Accessor<Order>() {
+            @Override
+            public Object get(final Order order) {
+                return order.getReferences();
+            }
+        });
+        register(OrderReferences.class, "merchantReference", new Accessor<OrderReferences>() {
+            @Override
+            public Object get(final OrderReferences references) {
+                return references.getMerchantReference();
+            }
+        });
+        register(AmountOfMoney.class, "amount", new Accessor<AmountOfMoney>() {
+            @Override
+            public Object get(final AmountOfMoney amountOfMoney) {
+                return amountOfMoney.getAmount();
+            }
+        });
+        register(AmountOfMoney.class, "currencyCode", new Accessor<AmountOfMoney>() {
+            @Override
+            public Object get(final AmountOfMoney amountOfMoney) {
+                return amountOfMoney.getCurrencyCode();
+            }
+        });
+
+        register(Customer.class, "billingAddress", new Accessor<Customer>() {
+            @Override
+            public Object get(final Customer customer) {
+                return customer.getBillingAddress();
+            }
+        });
+        register(Customer.class, "contactDetails", new Accessor<Customer>() {
+            @Override
+            public Object get(final Customer customer) {
+                return customer.getContactDetails();
+            }
+        });
+        register(Customer.class, "locale", new Accessor<Customer>() {
+            @Override
+            public Object get(final Customer customer) {
+                return customer.getLocale();
+            }
+        });
+        register(Customer.class, "merchantCustomerId", new Accessor<Customer>() {
+            @Override
+            public Object get(final Customer customer) {
+                return customer.getMerchantCustomerId();
+            }
+        });
+        register(Customer.class, "personalInformation", new Accessor<Customer>() {
+            @Override
+            public Object get(final Customer customer) {
+                return customer.getPersonalInformation();
+            }
+        });
+        register(Customer.class, "shippingAddress", new Accessor<Customer>() {
+            @Override
+            public Object get(final Customer customer) {
+                return customer.getShippingAddress();
+            }
+        });
+        register(Customer.class, "vatNumber", new Accessor<Customer>() {
+            @Override
+            public Object get(final Customer customer) {
+                return customer.getVatNumber();
+            }
+        });
+
+        register(ContactDetailsBase.class, "emailAddress", new Accessor<ContactDetailsBase>() {
+            @Override
+            public Object get(final ContactDetailsBase contactDetails) {
+                return contactDetails.getEmailAddress();
+            }
+        });
+        register(ContactDetailsBase.class, "emailMessageType", new Accessor<ContactDetailsBase>() {
+            @Override
+            public Object get(final ContactDetailsBase contactDetails) {
+                return contactDetails.getEmailMessageType();
+            }
+        });
+        register(ContactDetails.class, "phoneNumber", new Accessor<ContactDetails>() {
+            @Override
+            public Object get(final ContactDetails contactDetails) {
+                return contactDetails.getPhoneNumber();
+            }
+        });
+
+        register(PersonalInformation.class, "dateOfBirth", new Accessor<PersonalInformation>() {
+            @Override
+            public Object get(final PersonalInformation personalInformation) {
+                return personalInformation.getDateOfBirth();
+            }
+        });
+        register(PersonalInformation.class, "gender", new Accessor<PersonalInformation>() {
+            @Override
+            public Object get(final PersonalInformation personalInformation) {
+                return personalInformation.getGender();
+            }
+        });
+        register(PersonalInformation.class, "name", new Accessor<PersonalInformation>() {
+            @Override
+            public Object get(final PersonalInformation personalInformation) {
+                return personalInformation.getName();
+            }
+        });
+        register(PersonalName.class, "firstName", new Accessor<PersonalName>() {
+            @Override
+            public Object get(final PersonalName name) {
+                return name.getFirstName();
+            }
+        });
+        register(PersonalName.class, "surname", new Accessor<PersonalName>() {
+            @Override
+            public Object get(final PersonalName name) {
+                return name.getSurname();
+            }
+        });
+
+        register(Address.class, "additionalInfo", new Accessor<Address>() {
+            @Override
+            public Object get(final Address address) {
+                return address.getAdditionalInfo();
+            }
+        });
+        register(Address.class, "city", new Accessor<Address>() {
+            @Override
+            public Object get(final Address address) {
+                return address.getCity();
+            }
+        });
+        register(Address.class, "countryCode", new Accessor<Address>() {
+            @Override
+            public Object get(final Address address) {
+                return address.getCountryCode();
+            }
+        });
+        register(Address.class, "houseNumber", new Accessor<Address>() {
+            @Override
+            public Object get(final Address address) {
+                return address.getHouseNumber();
+            }
+        });
+        register(Address.class, "state", new Accessor<Address>() {
+            @Override
+            public Object get(final Address address) {
+                return address.getState();
+            }
+        });
+        register(Address.class, "street", new Accessor<Address>() {
+            @Override
+            public Object get(final Address address) {
+                return address.getStreet();
+            }
+        });
+        register(Address.class, "zip", new Accessor<Address>() {
+            @Override
+            public Object get(final Address address) {
+                return address.getZip();
+            }
+        });
+        register(AddressPersonal.class, "name", new Accessor<AddressPersonal>() {
+            @Override
+            public Object get(final AddressPersonal address) {
+                return address.getName();
+            }
+        });
+
+        register(CardPaymentMethodSpecificInput.class, "card", new Accessor<CardPaymentMethodSpecificInput>() {
+            @Override
+            public Object get(final CardPaymentMethodSpecificInput input) {
+                return input.getCard();
+            }
+        });
+        register(CardPaymentMethodSpecificInput.class, "isRecurring", new Accessor<CardPaymentMethodSpecificInput>() {
+            @Override
+            public Object get(final CardPaymentMethodSpecificInput input) {
+                return input.getIsRecurring();
+            }
+        });
+        register(CardPaymentMethodSpecificInput.class, "paymentProductId", new Accessor<CardPaymentMethodSpecificInput>() {
+            @Override
+            public Object get(final CardPaymentMethodSpecificInput input) {
+                return input.getPaymentProductId();
+            }
+        });
+        register(CardPaymentMethodSpecificInput.class, "recurringPaymentSequenceIndicator", new Accessor<CardPaymentMethodSpecificInput>() {
+            @Override
+            public Object get(final CardPaymentMethodSpecificInput input) {
+                return input.getRecurringPaymentSequenceIndicator();
+            }
+        });
+        register(CardPaymentMethodSpecificInput.class, "skipAuthentication", new Accessor<CardPaymentMethodSpecificInput>() {
+            @Override
+            public Object get(final CardPaymentMethodSpecificInput input) {
+                return input.getSkipAuthentication();
+            }
+        });
+        register(CardPaymentMethodSpecificInput.class, "token", new Accessor<CardPaymentMethodSpecificInput>() {
+            @Override
+            public Object get(final CardPaymentMethodSpecificInput input) {
+                return input.getToken();
+            }
+        });
+        register(Card.class, "cvv", new Accessor<Card>() {
+            @Override
+            public Object get(final Card card) {
+                return card.getCvv();
+            }
+        });
+        register(CardWithoutCvv.class, "cardNumber", new Accessor<CardWithoutCvv>() {
+            @Override
+            public Object get(final CardWithoutCvv card) {
+                return card.getCardNumber();
+            }
+        });
+        register(CardWithoutCvv.class, "cardholderName", new Accessor<CardWithoutCvv>() {
+            @Override
+            public Object get(final CardWithoutCvv card) {
+                return card.getCardholderName();
+            }
+        });
+        register(CardWithoutCvv.class, "expiryDate", new Accessor<CardWithoutCvv>() {
+            @Override
+            public Object get(final CardWithoutCvv card) {
+                return card.getExpiryDate();
+            }
+        });
+
+        register(SepaDirectDebitPaymentMethodSpecificInput.class, "paymentProductId", new Accessor<SepaDirectDebitPaymentMethodSpecificInput>() {
+            @Override
+            public Object get(final SepaDirectDebitPaymentMethodSpecificInput input) {
+                return input.getPaymentProductId();
+            }
+        });
+    }
+
+    // Every field with a hand-written accessor is set, with characters the SDK marshaller escapes
+    private static List<Object> sampleRequests() {
+        final String text = "<Wile> & 'E.' = \"Coyote\" \\ \t\n\u0001\u2028 \u00e9";
+
+        final PersonalName name = new PersonalName();
+        name.setFirstName(text);
+        name.setSurname(text);
+
+        final Address billingAddress = new Address();
+        billingAddress.setAdditionalInfo(text);
+        billingAddress.setCity(text);
+        billingAddress.setCountryCode("US");
+        billingAddress.setHouseNumber(text);
+        billingAddress.setState(text);
+        billingAddress.setStreet(text);
+        billingAddress.setZip(text);
+
+        final AddressPersonal shippingAddress = new AddressPersonal();
+        shippingAddress.setAdditionalInfo(text);
+        shippingAddress.setCity(text);
+        shippingAddress.setCountryCode("US");
+        shippingAddress.setHouseNumber(text);
+        shippingAddress.setName(name);
+        shippingAddress.setState(text);
+        shippingAddress.setStreet(text);
+        shippingAddress.setZip(text);
+
+        final ContactDetails contactDetails = new ContactDetails();
+        contactDetails.setEmailAddress(text);
+        contactDetails.setEmailMessageType("html");
+        contactDetails.setPhoneNumber(text);
+
+        final PersonalInformation personalInformation = new PersonalInformation();
+        personalInformation.setDateOfBirth("19700101");
+        personalInformation.setGender("male");
+        personalInformation.setName(name);
+
+        final Customer customer = new Customer();
+        customer.setBillingAddress(billingAddress);
+        customer.setContactDetails(contactDetails);
+        customer.setLocale("en_US");
+        customer.setMerchantCustomerId(text);
+        customer.setPersonalInformation(personalInformation);
+        customer.setShippingAddress(shippingAddress);
+        customer.setVatNumber(text);
+
+        final AmountOfMoney amountOfMoney = new AmountOfMoney();
+        amountOfMoney.setAmount(Long.MAX_VALUE);
+        amountOfMoney.setCurrencyCode("USD");
+
+        final OrderReferences references = new OrderReferences();
+        references.setMerchantReference(text);
+
+        final Order order = new Order();
+        order.setAmountOfMoney(amountOfMoney);
+        order.setCustomer(customer);
+        order.setReferences(references);
+
+        final Card card = new Card();
+        card.setCardNumber("4567350000427977");
+        card.setCardholderName(text);
+        card.setCvv("123");
+        card.setExpiryDate("1230");
+
+        final CardPaymentMethodSpecificInput cardInput = new CardPaymentMethodSpecificInput();
+        cardInput.setCard(card);
+        cardInput.setIsRecurring(true);
+        cardInput.setPaymentProductId(1);
+        cardInput.setRecurringPaymentSequenceIndicator("recurring");
+        cardInput.setSkipAuthentication(false);
+        cardInput.setToken(text);
+
+        final SepaDirectDebitPaymentMethodSpecificInput sepaDirectDebitInput = new SepaDirectDebitPaymentMethodSpecificInput();
+        sepaDirectDebitInput.setPaymentProductId(770);
+
+        final CreatePaymentRequest cardRequest = new CreatePaymentRequest();
+        cardRequest.setCardPaymentMethodSpecificInput(cardInput);
+        cardRequest.setOrder(order);
+
+        final CreatePaymentRequest sepaDirectDebitRequest = new CreatePaymentRequest();
+        sepaDirectDebitRequest.setOrder(new Order());
+        sepaDirectDebitRequest.setSepaDirectDebitPaymentMethodSpecificInput(sepaDirectDebitInput);
+
+        final OrderReferencesApprovePayment approveReferences = new OrderReferencesApprovePayment();
+        approveReferences.setMerchantReference(text);
+        final OrderApprovePayment approveOrder = new OrderApprovePayment();
+        approveOrder.setReferences(approveReferences);
+        final ApprovePaymentRequest approveRequest = new ApprovePaymentRequest();
+        approveRequest.setAmount(1234L);
+        approveRequest.setOrder(approveOrder);
+
+        return ImmutableList.<Object>of(cardRequest, sepaDirectDebitRequest, approveRequest, new ApprovePaymentRequest());
+    }
+}
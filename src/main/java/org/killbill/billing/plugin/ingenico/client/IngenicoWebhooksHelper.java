@@ -0,0 +1,138 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.client;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+import javax.annotation.Nullable;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.joda.time.DateTime;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.killbill.billing.plugin.ingenico.client.model.IngenicoWebhookEvent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Verifies and parses the webhook events pushed by Ingenico.
+ * <p>
+ * Events are signed with the webhooks secret key of the merchant: the {@code X-GCS-Signature} header holds the
+ * base64 encoded HMAC-SHA256 of the body, {@code X-GCS-KeyId} the id of the key used.
+ */
+public class IngenicoWebhooksHelper {
+
+    public static final String SIGNATURE_HEADER = "X-GCS-Signature";
+    public static final String KEY_ID_HEADER = "X-GCS-KeyId";
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    // Objects a webhook event can be about
+    private static final String[] EVENT_OBJECTS = {"payment", "refund", "payout"};
+    // e.g. 2017-02-02T11:24:14.040+0100
+    private static final DateTimeFormatter CREATED_FORMATTER = ISODateTimeFormat.dateTimeParser().withZoneUTC();
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String keyId;
+    private final String secretKey;
+
+    public IngenicoWebhooksHelper(@Nullable final String keyId, @Nullable final String secretKey) {
+        this.keyId = keyId;
+        this.secretKey = secretKey;
+    }
+
+    /**
+     * @param body      raw body of the webhook call
+     * @param keyId     value of the {@code X-GCS-KeyId} header
+     * @param signature value of the {@code X-GCS-Signature} header
+     * @return the parsed event
+     * @throws IllegalArgumentException if the signature doesn't match or the body isn't a webhook event
+     */
+    public IngenicoWebhookEvent unmarshal(final String body, @Nullable final String keyId, @Nullable final String signature) {
+        validateSignature(body, keyId, signature);
+
+        final JsonNode event;
+        try {
+            event = objectMapper.readTree(body);
+        } catch (final IOException e) {
+            throw new IllegalArgumentException("Malformed webhook event", e);
+        }
+        if (event == null || !event.hasNonNull("id") || !event.hasNonNull("type")) {
+            throw new IllegalArgumentException("Malformed webhook event");
+        }
+
+        final DateTime creationDate = parseCreated(event);
+        for (final String eventObject : EVENT_OBJECTS) {
+            final JsonNode object = event.get(eventObject);
+            if (object != null && object.hasNonNull("id")) {
+                return new IngenicoWebhookEvent(event.get("id").asText(),
+                                                event.get("type").asText(),
+                                                object.get("id").asText(),
+                                                object.hasNonNull("status") ? object.get("status").asText() : null,
+                                                creationDate);
+            }
+        }
+        return new IngenicoWebhookEvent(event.get("id").asText(), event.get("type").asText(), null, null, creationDate);
+    }
+
+    @Nullable
+    private DateTime parseCreated(final JsonNode event) {
+        if (!event.hasNonNull("created")) {
+            return null;
+        }
+        try {
+            return CREATED_FORMATTER.parseDateTime(event.get("created").asText());
+        } catch (final IllegalArgumentException e) {
+            // Not worth rejecting the event: it is then applied in arrival order
+            return null;
+        }
+    }
+
+    private void validateSignature(final String body, @Nullable final String keyId, @Nullable final String signature) {
+        if (this.keyId == null || secretKey == null) {
+            throw new IllegalArgumentException("No webhooks key configured");
+        }
+        if (!this.keyId.equals(keyId)) {
+            throw new IllegalArgumentException("Unknown webhooks keyId='" + keyId + "'");
+        }
+        if (signature == null) {
+            throw new IllegalArgumentException("Missing webhook signature");
+        }
+
+        final byte[] expectedSignature;
+        try {
+            final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(new SecretKeySpec(secretKey.getBytes(UTF_8), HMAC_ALGORITHM));
+            expectedSignature = mac.doFinal(body.getBytes(UTF_8));
+        } catch (final GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+
+        // Constant time comparison
+        if (!MessageDigest.isEqual(expectedSignature, BaseEncoding.base64().decode(signature.trim()))) {
+            throw new IllegalArgumentException("Invalid webhook signature");
+        }
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.client.model;
+
+import javax.annotation.Nullable;
+
+import org.joda.time.DateTime;
+
+/**
+ * The part of an Ingenico webhook event the plugin cares about: which payment (or refund, payout) it is about and its new status.
+ */
+public class IngenicoWebhookEvent {
+
+    // Type of the events about a refund (e.g. refund.refunded): their object id is the refund id
+    private static final String REFUND_EVENT_TYPE_PREFIX = "refund.";
+
+    private final String id;
+    private final String type;
+    private final String objectId;
+    private final String status;
+    private final DateTime creationDate;
+
+    public IngenicoWebhookEvent(final String id, final String type, @Nullable final String objectId, @Nullable final String status, @Nullable final DateTime creationDate) {
+        this.id = id;
+        this.type = type;
+        this.objectId = objectId;
+        this.status = status;
+        this.creationDate = creationDate;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getObjectId() {
+        return objectId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    // When Ingenico raised the event: deliveries aren't ordered, this is what orders the events of a payment
+    public DateTime getCreationDate() {
+        return creationDate;
+    }
+
+    public static boolean isRefundEvent(@Nullable final String type) {
+        return type != null && type.startsWith(REFUND_EVENT_TYPE_PREFIX);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("IngenicoWebhookEvent{");
+        sb.append("id='").append(id).append('\'');
+        sb.append(", type='").append(type).append('\'');
+        sb.append(", objectId='").append(objectId).append('\'');
+        sb.append(", status='").append(status).append('\'');
+        sb.append(", creationDate=").append(creationDate);
+        sb.append('}');
+        return sb.toString();
+    }
+}
@@ -17,21 +17,30 @@
 
 package org.killbill.billing.plugin.ingenico.client.model;
 
-import org.killbill.billing.catalog.api.Currency;
-
 import java.math.BigDecimal;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.catalog.api.Currency;
 
 public class PaymentData<I extends PaymentInfo> {
 
     private final BigDecimal amount;
     private final Currency currency;
     private final String paymentTransactionExternalKey;
+    private final UUID kbTransactionId;
     private final I paymentInfo;
 
     public PaymentData(final BigDecimal amount, final Currency currency, final String paymentTransactionExternalKey, final I paymentInfo) {
+        this(amount, currency, paymentTransactionExternalKey, null, paymentInfo);
+    }
+
+    public PaymentData(final BigDecimal amount, final Currency currency, final String paymentTransactionExternalKey, @Nullable final UUID kbTransactionId, final I paymentInfo) {
         this.amount = amount;
         this.currency = currency;
         this.paymentTransactionExternalKey = paymentTransactionExternalKey;
+        this.kbTransactionId = kbTransactionId;
         this.paymentInfo = paymentInfo;
     }
 
@@ -47,6 +56,11 @@ public class PaymentData<I extends PaymentInfo> {
         return paymentTransactionExternalKey;
     }
 
+    @Nullable
+    public UUID getKbTransactionId() {
+        return kbTransactionId;
+    }
+
     public I getPaymentInfo() {
         return paymentInfo;
     }
@@ -57,6 +71,7 @@ public class PaymentData<I extends PaymentInfo> {
         sb.append("amount=").append(amount);
         sb.append(", currency=").append(currency);
         sb.append(", paymentTransactionExternalKey='").append(paymentTransactionExternalKey).append('\'');
+        sb.append(", kbTransactionId=").append(kbTransactionId);
         sb.append(", paymentInfo=").append(paymentInfo);
         sb.append('}');
         return sb.toString();
@@ -82,6 +97,9 @@ public class PaymentData<I extends PaymentInfo> {
         if (paymentTransactionExternalKey != null ? !paymentTransactionExternalKey.equals(that.paymentTransactionExternalKey) : that.paymentTransactionExternalKey != null) {
             return false;
         }
+        if (kbTransactionId != null ? !kbTransactionId.equals(that.kbTransactionId) : that.kbTransactionId != null) {
+            return false;
+        }
         return paymentInfo != null ? paymentInfo.equals(that.paymentInfo) : that.paymentInfo == null;
     }
 
@@ -90,6 +108,7 @@ public class PaymentData<I extends PaymentInfo> {
         int result = amount != null ? amount.hashCode() : 0;
         result = 31 * result + (currency != null ? currency.hashCode() : 0);
         result = 31 * result + (paymentTransactionExternalKey != null ? paymentTransactionExternalKey.hashCode() : 0);
+        result = 31 * result + (kbTransactionId != null ? kbTransactionId.hashCode() : 0);
         result = 31 * result + (paymentInfo != null ? paymentInfo.hashCode() : 0);
         return result;
     }
@@ -33,24 +33,34 @@ public class PaymentModificationResponse<T> {
     private final IngenicoCallErrorStatus ingenicoCallErrorStatus;
     private final Map<Object, Object> additionalData;
     private final String paymentId;
+    private final String modificationId;
     private final String status;
     private final Optional<PaymentServiceProviderResult> result;
 
     public PaymentModificationResponse(final String paymentId, final IngenicoCallResult<T> ingenicoCallResult, final Map<Object, Object> additionalData) {
-        this(Optional.<PaymentServiceProviderResult>absent(), paymentId, null, ingenicoCallResult.getResponseStatus().orNull(), additionalData);
+        this(Optional.<PaymentServiceProviderResult>absent(), paymentId, null, null, ingenicoCallResult.getResponseStatus().orNull(), additionalData);
     }
 
     public PaymentModificationResponse(final PaymentServiceProviderResult result, final String status, final String paymentId) {
-        this(Optional.of(result), paymentId, status, null, new HashMap<Object, Object>());
+        this(result, status, paymentId, null);
+    }
+
+    /**
+     * @param modificationId id of the object created by the modification, if any (e.g. the refund id)
+     */
+    public PaymentModificationResponse(final PaymentServiceProviderResult result, final String status, final String paymentId, @Nullable final String modificationId) {
+        this(Optional.of(result), paymentId, modificationId, status, null, new HashMap<Object, Object>());
     }
 
     private PaymentModificationResponse(Optional<PaymentServiceProviderResult> result,
                                         final String paymentId,
+                                        @Nullable final String modificationId,
                                         final String status,
                                         @Nullable final IngenicoCallErrorStatus ingenicoCallErrorStatus,
                                         final Map<Object, Object> additionalData) {
         this.result = result;
         this.paymentId = paymentId;
+        this.modificationId = modificationId;
         this.status = status;
         this.ingenicoCallErrorStatus = ingenicoCallErrorStatus;
         this.additionalData = additionalData;
@@ -71,6 +81,10 @@ public class PaymentModificationResponse<T> {
         return paymentId;
     }
 
+    public String getModificationId() {
+        return modificationId;
+    }
+
     public String getStatus() {
         return status;
     }
@@ -92,6 +106,7 @@ public class PaymentModificationResponse<T> {
         final StringBuilder sb = new StringBuilder("PaymentModificationResponse{");
         sb.append("ingenicoCallErrorStatus=").append(ingenicoCallErrorStatus);
         sb.append(", paymentId='").append(paymentId).append('\'');
+        sb.append(", modificationId='").append(modificationId).append('\'');
         sb.append(", status='").append(status).append('\'');
         sb.append(", additionalData={");
         // Make sure to escape values, as they may contain spaces
@@ -129,6 +144,9 @@ public class PaymentModificationResponse<T> {
         if (paymentId != null ? !paymentId.equals(that.paymentId) : that.paymentId != null) {
             return false;
         }
+        if (modificationId != null ? !modificationId.equals(that.modificationId) : that.modificationId != null) {
+            return false;
+        }
         //noinspection SimplifiableIfStatement
         if (status != null ? !status.equals(that.status) : that.status != null) {
             return false;
@@ -141,6 +159,7 @@ public class PaymentModificationResponse<T> {
     public int hashCode() {
         int result = additionalData != null ? additionalData.hashCode() : 0;
         result = 31 * result + (paymentId != null ? paymentId.hashCode() : 0);
+        result = 31 * result + (modificationId != null ? modificationId.hashCode() : 0);
         result = 31 * result + (status != null ? status.hashCode() : 0);
         result = 31 * result + (ingenicoCallErrorStatus != null ? ingenicoCallErrorStatus.hashCode() : 0);
         return result;
@@ -20,15 +20,20 @@ import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import org.killbill.billing.payment.api.Payment;
 import org.killbill.billing.payment.api.TransactionType;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.SetMultimap;
+
 public enum PaymentServiceProviderResult {
 
     AUTHORISED(new String[] {"CAPTURED", "CANCELLED", "REFUNDED", "CHARGEBACKED", "REVERSED", "PAID", "ACCOUNT_VERIFIED"}),
     REDIRECT_SHOPPER("REDIRECTED"), // authorize return code when using 3D-Secure
-    RECEIVED(new String[]{"CREATED", "AUTHORIZATION_REQUESTED", "CAPTURE_REQUESTED"}), // direct debit, ideal payment response
+    RECEIVED(new String[]{"CREATED", "AUTHORIZATION_REQUESTED", "CAPTURE_REQUESTED", "REFUND_REQUESTED"}), // direct debit, ideal payment response
     REFUSED(new String[] {"REJECTED_CAPTURE", "REJECTED"}),
     PENDING(new String[]{"PENDING_APPROVAL", "PENDING_PAYMENT", "PENDING_FRAUD_APPROVAL"}),
     ERROR(new String[]{"Error", "[error]"}),
@@ -36,12 +41,32 @@ public enum PaymentServiceProviderResult {
 
     private static final Map<String, PaymentServiceProviderResult> REVERSE_LOOKUP = new HashMap<String, PaymentServiceProviderResult>();
 
+    // Ingenico statuses which will not change anymore, short of a refund, chargeback or reversal
+    private static final Set<String> TERMINAL_STATUSES = ImmutableSet.<String>of("CAPTURED", "PAID", "CANCELLED", "REFUNDED", "CHARGEBACKED", "REVERSED", "ACCOUNT_VERIFIED", "REJECTED", "REJECTED_CAPTURE");
+    // Terminal statuses which can't change at all: the payment is dead
+    private static final Set<String> FINAL_STATUSES = ImmutableSet.<String>of("CANCELLED", "REJECTED", "REJECTED_CAPTURE");
+    // Ingenico statuses expected to change without any action on our side
+    private static final Set<String> PENDING_STATUSES = ImmutableSet.<String>of("CREATED", "REDIRECTED", "AUTHORIZATION_REQUESTED", "CAPTURE_REQUESTED", "PENDING_APPROVAL", "PENDING_PAYMENT", "PENDING_FRAUD_APPROVAL");
+    // Pending statuses, with the transaction types they leave pending (PENDING_APPROVAL completes an authorization)
+    private static final SetMultimap<String, TransactionType> PENDING_TRANSACTION_TYPES;
+
     static {
         for (final PaymentServiceProviderResult providerResult : PaymentServiceProviderResult.values()) {
             for (final String response : providerResult.getResponses()) {
                 REVERSE_LOOKUP.put(response, providerResult);
             }
         }
+
+        final ImmutableSetMultimap.Builder<String, TransactionType> pendingTransactionTypes = ImmutableSetMultimap.builder();
+        for (final String status : PENDING_STATUSES) {
+            for (final TransactionType transactionType : TransactionType.values()) {
+                final PaymentServiceProviderResult result = getPaymentResultForId(status, transactionType);
+                if (result == PENDING || result == RECEIVED || result == REDIRECT_SHOPPER) {
+                    pendingTransactionTypes.put(status, transactionType);
+                }
+            }
+        }
+        PENDING_TRANSACTION_TYPES = pendingTransactionTypes.build();
     }
 
     private final String[] responses;
@@ -73,6 +98,25 @@ public enum PaymentServiceProviderResult {
         }
     }
 
+    public static boolean isTerminal(@Nullable final String id) {
+        return id != null && TERMINAL_STATUSES.contains(id);
+    }
+
+    public static boolean isFinal(@Nullable final String id) {
+        return id != null && FINAL_STATUSES.contains(id);
+    }
+
+    public static Set<String> getPendingStatuses() {
+        return PENDING_STATUSES;
+    }
+
+    /**
+     * @return the pending statuses, mapped to the transaction types still pending in that status
+     */
+    public static SetMultimap<String, TransactionType> getPendingTransactionTypes() {
+        return PENDING_TRANSACTION_TYPES;
+    }
+
     public String[] getResponses() {
         return responses;
     }
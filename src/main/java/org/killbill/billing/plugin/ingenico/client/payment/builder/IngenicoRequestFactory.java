@@ -37,15 +37,18 @@ public class IngenicoRequestFactory {
 
     private final PaymentInfoConverterManagement paymentInfoConverterManagement;
     private final IngenicoConfigProperties ingenicoConfigProperties;
+    // Built once per tenant configuration
+    private final PaymentRequestTemplate paymentRequestTemplate;
 
     public IngenicoRequestFactory(final PaymentInfoConverterManagement paymentInfoConverterManagement,
                                   final IngenicoConfigProperties ingenicoConfigProperties) {
         this.paymentInfoConverterManagement = paymentInfoConverterManagement;
         this.ingenicoConfigProperties = ingenicoConfigProperties;
+        this.paymentRequestTemplate = new PaymentRequestTemplate();
     }
 
     public CreatePaymentRequest createPaymentRequest(final PaymentData paymentData, final UserData userData, @Nullable final SplitSettlementData splitSettlementData) {
-        final PaymentRequestBuilder paymentRequestBuilder = new PaymentRequestBuilder(paymentData, userData, splitSettlementData, paymentInfoConverterManagement);
+        final PaymentRequestBuilder paymentRequestBuilder = new PaymentRequestBuilder(paymentData, userData, splitSettlementData, paymentInfoConverterManagement, paymentRequestTemplate);
         return paymentRequestBuilder.build();
     }
 
@@ -35,7 +35,6 @@ import com.google.common.io.BaseEncoding;
 import com.ingenico.connect.gateway.sdk.java.domain.definitions.Address;
 import com.ingenico.connect.gateway.sdk.java.domain.definitions.AmountOfMoney;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.CreatePaymentRequest;
-import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.AddressPersonal;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.ContactDetails;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.Customer;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.Order;
@@ -49,16 +48,26 @@ public class PaymentRequestBuilder extends RequestBuilder<CreatePaymentRequest>
     private final PaymentData paymentData;
     private final UserData userData;
     private final SplitSettlementData splitSettlementData;
+    private final PaymentRequestTemplate template;
     private final Order order;
 
     public PaymentRequestBuilder(final PaymentData paymentData,
                                  final UserData userData,
                                  @Nullable final SplitSettlementData splitSettlementData,
                                  final PaymentInfoConverterManagement paymentInfoConverterManagement) {
+        this(paymentData, userData, splitSettlementData, paymentInfoConverterManagement, new PaymentRequestTemplate());
+    }
+
+    public PaymentRequestBuilder(final PaymentData paymentData,
+                                 final UserData userData,
+                                 @Nullable final SplitSettlementData splitSettlementData,
+                                 final PaymentInfoConverterManagement paymentInfoConverterManagement,
+                                 final PaymentRequestTemplate template) {
         super(paymentInfoConverterManagement.convertPaymentInfoToPaymentRequest(paymentData.getPaymentInfo()));
         this.paymentData = paymentData;
         this.userData = userData;
         this.splitSettlementData = splitSettlementData;
+        this.template = template;
         this.order = request.getOrder();
     }
 
@@ -102,7 +111,7 @@ public class PaymentRequestBuilder extends RequestBuilder<CreatePaymentRequest>
     private void setShopperData() {
         ContactDetails contactDetails = new ContactDetails();
         contactDetails.setEmailAddress(userData.getShopperEmail());
-        contactDetails.setEmailMessageType("html");
+        contactDetails.setEmailMessageType(PaymentRequestTemplate.EMAIL_MESSAGE_TYPE);
         contactDetails.setPhoneNumber(userData.getTelephoneNumber());
 
         PersonalName name = new PersonalName();
@@ -128,23 +137,9 @@ public class PaymentRequestBuilder extends RequestBuilder<CreatePaymentRequest>
     }
 
     private void setShippingAddress() {
-        PersonalName personalName = new PersonalName();
-        personalName.setFirstName("Road");
-        personalName.setSurname("Runner");
-        //        shippingName.setTitle("Miss");
-
-        AddressPersonal shippingAddress = new AddressPersonal();
-        shippingAddress.setAdditionalInfo("Suite II");
-        shippingAddress.setCity("Monument Valley");
-        shippingAddress.setCountryCode("US");
-        shippingAddress.setHouseNumber("1");
-        shippingAddress.setName(personalName);
-        shippingAddress.setState("Utah");
-        shippingAddress.setStreet("Desertroad");
-        shippingAddress.setZip("84536");
-
+        // Shared with the other requests of the tenant
         Customer customer = order.getCustomer() != null ? order.getCustomer() : new Customer();
-        customer.setShippingAddress(shippingAddress);
+        customer.setShippingAddress(template.getShippingAddress());
         order.setCustomer(customer);
     }
 
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.killbill.billing.plugin.ingenico.client.payment.builder;
+
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.AddressPersonal;
+import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.PersonalName;
+
+/**
+ * Parts of a CreatePaymentRequest which do not depend on the payment, built once per tenant configuration.
+ * <p>
+ * They are shared by all the requests built from the template: they must not be modified once built.
+ */
+public class PaymentRequestTemplate {
+
+    public static final String EMAIL_MESSAGE_TYPE = "html";
+
+    private final AddressPersonal shippingAddress;
+
+    public PaymentRequestTemplate() {
+        this.shippingAddress = buildShippingAddress();
+    }
+
+    public AddressPersonal getShippingAddress() {
+        return shippingAddress;
+    }
+
+    private static AddressPersonal buildShippingAddress() {
+        final PersonalName personalName = new PersonalName();
+        personalName.setFirstName("Road");
+        personalName.setSurname("Runner");
+        //        shippingName.setTitle("Miss");
+
+        final AddressPersonal shippingAddress = new AddressPersonal();
+        shippingAddress.setAdditionalInfo("Suite II");
+        shippingAddress.setCity("Monument Valley");
+        shippingAddress.setCountryCode("US");
+        shippingAddress.setHouseNumber("1");
+        shippingAddress.setName(personalName);
+        shippingAddress.setState("Utah");
+        shippingAddress.setStreet("Desertroad");
+        shippingAddress.setZip("84536");
+        return shippingAddress;
+    }
+}
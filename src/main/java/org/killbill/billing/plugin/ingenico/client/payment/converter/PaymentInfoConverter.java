@@ -26,10 +26,12 @@ import com.ingenico.connect.gateway.sdk.java.domain.payment.definitions.Order;
 import com.ingenico.connect.gateway.sdk.java.domain.token.CreateTokenRequest;
 import com.ingenico.connect.gateway.sdk.java.domain.token.definitions.CustomerToken;
 
+/**
+ * Stateless: a single instance is shared by all threads of a tenant configuration, so everything built for a request
+ * must stay local to the call.
+ */
 public class PaymentInfoConverter<T extends PaymentInfo> {
 
-    private Order order;
-
     /**
      * @param paymentInfo to convert
      * @return {@code true} if this converter is capable of handling the payment info
@@ -43,10 +45,10 @@ public class PaymentInfoConverter<T extends PaymentInfo> {
      */
     public CreatePaymentRequest convertPaymentInfoToPaymentRequest(final T paymentInfo) {
         final CreatePaymentRequest paymentRequest = new CreatePaymentRequest();
-        order = new Order();
+        final Order order = new Order();
 
         setInstallments(paymentInfo, paymentRequest);
-        setOrderBillingAddress(paymentInfo, paymentRequest);
+        setOrderBillingAddress(paymentInfo, order);
         paymentRequest.setOrder(order);
 
         return paymentRequest;
@@ -82,11 +84,10 @@ public class PaymentInfoConverter<T extends PaymentInfo> {
         return address;
     }
 
-    private void setOrderBillingAddress(PaymentInfo paymentInfo, final CreatePaymentRequest paymentRequest) {
-        Address address = createBillingAddress(paymentInfo);
-        Customer customer = order.getCustomer() != null ? order.getCustomer() : new Customer();
+    private void setOrderBillingAddress(final PaymentInfo paymentInfo, final Order order) {
+        final Address address = createBillingAddress(paymentInfo);
+        final Customer customer = order.getCustomer() != null ? order.getCustomer() : new Customer();
         customer.setBillingAddress(address);
         order.setCustomer(customer);
-        paymentRequest.setOrder(order);
     }
 }
@@ -17,47 +17,97 @@
 
 package org.killbill.billing.plugin.ingenico.client.payment.converter.impl;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.killbill.billing.plugin.ingenico.client.model.PaymentInfo;
+import org.killbill.billing.plugin.ingenico.client.model.paymentinfo.Card;
+import org.killbill.billing.plugin.ingenico.client.model.paymentinfo.Recurring;
+import org.killbill.billing.plugin.ingenico.client.model.paymentinfo.SepaDirectDebit;
 import org.killbill.billing.plugin.ingenico.client.payment.converter.PaymentInfoConverter;
 import org.killbill.billing.plugin.ingenico.client.payment.converter.PaymentInfoConverterManagement;
 
-import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.CreatePaymentRequest;
 import com.ingenico.connect.gateway.sdk.java.domain.token.CreateTokenRequest;
 
+/**
+ * Dispatches each payment info to the converter registered for its class (or its closest registered superclass),
+ * falling back to the generic {@link PaymentInfoConverter}. The converter of each concrete class is resolved once.
+ * <p>
+ * Each tenant configuration has its own service, so converters can be registered per tenant.
+ */
 public class PaymentInfoConverterService implements PaymentInfoConverterManagement<PaymentInfo> {
 
-    private final List<PaymentInfoConverter<? extends PaymentInfo>> paymentInfoConverters;
+    // Default fallback
+    private final PaymentInfoConverter<PaymentInfo> defaultConverter = new PaymentInfoConverter<PaymentInfo>();
+    // Replaced as a whole on registration, so that a lookup never caches a converter resolved from stale registrations
+    private volatile Converters converters = new Converters(ImmutableMap.<Class<?>, PaymentInfoConverter<? extends PaymentInfo>>of());
 
     public PaymentInfoConverterService() {
-        this.paymentInfoConverters = ImmutableList.<PaymentInfoConverter<? extends PaymentInfo>>of(new CreditCardConverter(),
-                                                                                                   new SepaDirectDebitConverter(),
-                                                                                                   new RecurringConverter(),
-                                                                                                   // Default fallback
-                                                                                                   new PaymentInfoConverter<PaymentInfo>());
+        registerConverter(Card.class, new CreditCardConverter());
+        registerConverter(SepaDirectDebit.class, new SepaDirectDebitConverter());
+        registerConverter(Recurring.class, new RecurringConverter());
+    }
+
+    /**
+     * Register (or replace) the converter of a payment info class, and of its subclasses without a converter of their own.
+     * Meant to be called while the tenant configuration is built.
+     */
+    public synchronized <T extends PaymentInfo> void registerConverter(final Class<T> paymentInfoClass, final PaymentInfoConverter<T> converter) {
+        final Map<Class<?>, PaymentInfoConverter<? extends PaymentInfo>> registeredConverters = new HashMap<Class<?>, PaymentInfoConverter<? extends PaymentInfo>>(converters.registeredConverters);
+        registeredConverters.put(paymentInfoClass, converter);
+        // Subclasses may resolve to the new converter: start over with an empty cache
+        converters = new Converters(ImmutableMap.copyOf(registeredConverters));
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public CreatePaymentRequest convertPaymentInfoToPaymentRequest(final PaymentInfo paymentInfo) {
-        for (final PaymentInfoConverter pic : paymentInfoConverters) {
-            if (pic.supportsPaymentInfo(paymentInfo)) {
-                return pic.convertPaymentInfoToPaymentRequest(paymentInfo);
-            }
-        }
-        // Should never happen
-        throw new IllegalArgumentException("No PaymentInfoConverter for " + paymentInfo + " found.");
+        final PaymentInfoConverter<PaymentInfo> converter = (PaymentInfoConverter<PaymentInfo>) getConverter(paymentInfo);
+        return converter.convertPaymentInfoToPaymentRequest(paymentInfo);
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public CreateTokenRequest convertPaymentInfoToCreateTokenRequest(final PaymentInfo paymentInfo) {
-        for (final PaymentInfoConverter pic : paymentInfoConverters) {
-            if (pic.supportsPaymentInfo(paymentInfo)) {
-                return pic.convertPaymentInfoToCreateTokenRequest(paymentInfo);
+        final PaymentInfoConverter<PaymentInfo> converter = (PaymentInfoConverter<PaymentInfo>) getConverter(paymentInfo);
+        return converter.convertPaymentInfoToCreateTokenRequest(paymentInfo);
+    }
+
+    private PaymentInfoConverter<? extends PaymentInfo> getConverter(final PaymentInfo paymentInfo) {
+        // Resolved and cached against the same registrations
+        final Converters currentConverters = converters;
+        final Class<?> paymentInfoClass = paymentInfo.getClass();
+        final PaymentInfoConverter<? extends PaymentInfo> resolvedConverter = currentConverters.resolvedConverters.get(paymentInfoClass);
+        if (resolvedConverter != null) {
+            return resolvedConverter;
+        }
+
+        final PaymentInfoConverter<? extends PaymentInfo> converter = resolveConverter(currentConverters.registeredConverters, paymentInfoClass);
+        currentConverters.resolvedConverters.put(paymentInfoClass, converter);
+        return converter;
+    }
+
+    private PaymentInfoConverter<? extends PaymentInfo> resolveConverter(final Map<Class<?>, PaymentInfoConverter<? extends PaymentInfo>> registeredConverters, final Class<?> paymentInfoClass) {
+        for (Class<?> candidate = paymentInfoClass; candidate != null; candidate = candidate.getSuperclass()) {
+            final PaymentInfoConverter<? extends PaymentInfo> converter = registeredConverters.get(candidate);
+            if (converter != null) {
+                return converter;
             }
         }
-        // Should never happen
-        throw new IllegalArgumentException("No PaymentInfoConverter for " + paymentInfo + " found.");
+        return defaultConverter;
+    }
+
+    private static final class Converters {
+
+        private final Map<Class<?>, PaymentInfoConverter<? extends PaymentInfo>> registeredConverters;
+        private final ConcurrentMap<Class<?>, PaymentInfoConverter<? extends PaymentInfo>> resolvedConverters = new ConcurrentHashMap<Class<?>, PaymentInfoConverter<? extends PaymentInfo>>();
+
+        private Converters(final Map<Class<?>, PaymentInfoConverter<? extends PaymentInfo>> registeredConverters) {
+            this.registeredConverters = registeredConverters;
+        }
     }
 }
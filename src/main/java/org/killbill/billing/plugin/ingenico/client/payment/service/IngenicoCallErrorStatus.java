@@ -34,6 +34,10 @@ public enum IngenicoCallErrorStatus {
      * Received response is not parsable.
      */
     RESPONSE_INVALID,
+    /**
+     * Request was not sent because the circuit breaker for this tenant and operation is open.
+     */
+    CIRCUIT_OPEN,
     /**
      * We don't know ;).
      */
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.client.payment.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Latency histograms of the Ingenico calls, shared by all tenant configurations.
+ * <p>
+ * Each call is recorded twice: in its (tenant, operation) histogram and in the operation-wide one
+ * (reported with the {@link #ALL_TENANTS} tenant), as percentiles cannot be aggregated after the fact.
+ */
+public class IngenicoCallMetrics {
+
+    public static final String ALL_TENANTS = "all";
+
+    private static final String DEFAULT_TENANT = "default";
+
+    private final ConcurrentMap<String, IngenicoLatencyHistogram> histograms = new ConcurrentHashMap<String, IngenicoLatencyHistogram>();
+
+    public void record(@Nullable final UUID kbTenantId, final String operation, final long durationMillis, @Nullable final IngenicoCallErrorStatus errorStatus) {
+        getHistogram(tenant(kbTenantId), operation).record(durationMillis, errorStatus);
+        getHistogram(ALL_TENANTS, operation).record(durationMillis, errorStatus);
+    }
+
+    public void recordStatus(@Nullable final UUID kbTenantId, final String operation, @Nullable final IngenicoCallErrorStatus errorStatus) {
+        getHistogram(tenant(kbTenantId), operation).recordStatus(errorStatus);
+        getHistogram(ALL_TENANTS, operation).recordStatus(errorStatus);
+    }
+
+    public Collection<IngenicoLatencyHistogram> getHistograms() {
+        return Collections.unmodifiableCollection(histograms.values());
+    }
+
+    private IngenicoLatencyHistogram getHistogram(final String tenant, final String operation) {
+        final String key = tenant + "/" + operation;
+
+        final IngenicoLatencyHistogram existing = histograms.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        final IngenicoLatencyHistogram histogram = new IngenicoLatencyHistogram(tenant, operation);
+        final IngenicoLatencyHistogram previous = histograms.putIfAbsent(key, histogram);
+        return previous != null ? previous : histogram;
+    }
+
+    private String tenant(@Nullable final UUID kbTenantId) {
+        return kbTenantId == null ? DEFAULT_TENANT : kbTenantId.toString();
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.client.payment.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Circuit breaker for a single (tenant, operation) pair.
+ * <p>
+ * Trips when, over a window of {@code windowMillis}, at least {@code minimumCalls} calls were made and
+ * {@code failureRateThreshold} percent of them never reached Ingenico or never got an answer.
+ * Once open, calls fail fast for {@code openDurationMillis}, then a single probe is let through (half-open):
+ * its outcome either closes the circuit or opens it again. Outcomes of the other calls still in flight (admitted before
+ * the circuit opened, or bypassing it) are ignored while half-open. Calls are synchronous, so the probe is identified
+ * by the thread it was admitted on.
+ */
+public class IngenicoCircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final String kbTenantId;
+    private final String operation;
+    private final int failureRateThreshold;
+    private final int minimumCalls;
+    private final long windowMillis;
+    private final long openDurationMillis;
+
+    private final AtomicLong rejectedCalls = new AtomicLong();
+
+    private volatile State state = State.CLOSED;
+    private volatile long openedAt;
+
+    // Guarded by this
+    private Thread probe;
+    private long windowStart;
+    private int windowCalls;
+    private int windowFailures;
+
+    public IngenicoCircuitBreaker(final String kbTenantId,
+                                  final String operation,
+                                  final int failureRateThreshold,
+                                  final int minimumCalls,
+                                  final long windowMillis,
+                                  final long openDurationMillis) {
+        this.kbTenantId = kbTenantId;
+        this.operation = operation;
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumCalls = minimumCalls;
+        this.windowMillis = windowMillis;
+        this.openDurationMillis = openDurationMillis;
+        this.windowStart = System.currentTimeMillis();
+    }
+
+    /**
+     * @return {@code true} if the call can go through, {@code false} if it should fail fast
+     */
+    public boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < openDurationMillis) {
+                rejectedCalls.incrementAndGet();
+                return false;
+            }
+        }
+
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMillis) {
+                state = State.HALF_OPEN;
+                probe = null;
+            }
+            // Half-open: only one probe at a time
+            if (state == State.HALF_OPEN && probe == null) {
+                probe = Thread.currentThread();
+                return true;
+            }
+            if (state == State.CLOSED) {
+                return true;
+            }
+        }
+        rejectedCalls.incrementAndGet();
+        return false;
+    }
+
+    public void onSuccess() {
+        record(false);
+    }
+
+    public void onFailure() {
+        record(true);
+    }
+
+    private synchronized void record(final boolean failure) {
+        final long now = System.currentTimeMillis();
+
+        if (state == State.HALF_OPEN) {
+            if (probe != Thread.currentThread()) {
+                return;
+            }
+            probe = null;
+            if (failure) {
+                open(now);
+            } else {
+                close(now);
+            }
+            return;
+        }
+
+        if (now - windowStart >= windowMillis) {
+            resetWindow(now);
+        }
+        windowCalls++;
+        if (failure) {
+            windowFailures++;
+        }
+
+        if (state == State.CLOSED && windowCalls >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCalls) {
+            open(now);
+        }
+    }
+
+    private void open(final long now) {
+        probe = null;
+        openedAt = now;
+        state = State.OPEN;
+        resetWindow(now);
+    }
+
+    private void close(final long now) {
+        probe = null;
+        state = State.CLOSED;
+        resetWindow(now);
+    }
+
+    private void resetWindow(final long now) {
+        windowStart = now;
+        windowCalls = 0;
+        windowFailures = 0;
+    }
+
+    public String getKbTenantId() {
+        return kbTenantId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public long getOpenedAt() {
+        return openedAt;
+    }
+
+    public long getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+
+    public synchronized int getWindowCalls() {
+        return windowCalls;
+    }
+
+    public synchronized int getWindowFailures() {
+        return windowFailures;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("IngenicoCircuitBreaker{");
+        sb.append("kbTenantId='").append(kbTenantId).append('\'');
+        sb.append(", operation='").append(operation).append('\'');
+        sb.append(", state=").append(state);
+        sb.append(", rejectedCalls=").append(rejectedCalls);
+        sb.append('}');
+        return sb.toString();
+    }
+}
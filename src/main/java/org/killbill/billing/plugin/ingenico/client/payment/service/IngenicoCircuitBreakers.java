@@ -0,0 +1,88 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.client.payment.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
+
+/**
+ * Circuit breakers shared by all tenant configurations, keyed by tenant and operation. A circuit breaker is rebuilt
+ * (closed) when the configuration of its tenant changes, so that new thresholds apply.
+ */
+public class IngenicoCircuitBreakers {
+
+    private static final String DEFAULT_TENANT = "default";
+
+    private final ConcurrentMap<String, ConfiguredCircuitBreaker> circuitBreakers = new ConcurrentHashMap<String, ConfiguredCircuitBreaker>();
+
+    public IngenicoCircuitBreaker getCircuitBreaker(@Nullable final UUID kbTenantId, final String operation, final IngenicoConfigProperties config) {
+        final String tenant = kbTenantId == null ? DEFAULT_TENANT : kbTenantId.toString();
+        final String key = tenant + "/" + operation;
+
+        while (true) {
+            final ConfiguredCircuitBreaker existing = circuitBreakers.get(key);
+            if (existing != null && existing.config == config) {
+                return existing.circuitBreaker;
+            }
+
+            final ConfiguredCircuitBreaker circuitBreaker = new ConfiguredCircuitBreaker(config,
+                                                                                         new IngenicoCircuitBreaker(tenant,
+                                                                                                                    operation,
+                                                                                                                    config.getCircuitBreakerFailureRateThreshold(),
+                                                                                                                    config.getCircuitBreakerMinimumCalls(),
+                                                                                                                    config.getCircuitBreakerWindow(),
+                                                                                                                    config.getCircuitBreakerOpenDuration()));
+            if (existing == null) {
+                final ConfiguredCircuitBreaker previous = circuitBreakers.putIfAbsent(key, circuitBreaker);
+                if (previous == null) {
+                    return circuitBreaker.circuitBreaker;
+                }
+            } else if (circuitBreakers.replace(key, existing, circuitBreaker)) {
+                return circuitBreaker.circuitBreaker;
+            }
+            // Lost a race with another thread, look again
+        }
+    }
+
+    public Collection<IngenicoCircuitBreaker> getCircuitBreakers() {
+        final Collection<IngenicoCircuitBreaker> result = new LinkedList<IngenicoCircuitBreaker>();
+        for (final ConfiguredCircuitBreaker circuitBreaker : circuitBreakers.values()) {
+            result.add(circuitBreaker.circuitBreaker);
+        }
+        return Collections.unmodifiableCollection(result);
+    }
+
+    private static final class ConfiguredCircuitBreaker {
+
+        private final IngenicoConfigProperties config;
+        private final IngenicoCircuitBreaker circuitBreaker;
+
+        private ConfiguredCircuitBreaker(final IngenicoConfigProperties config, final IngenicoCircuitBreaker circuitBreaker) {
+            this.config = config;
+            this.circuitBreaker = circuitBreaker;
+        }
+    }
+}
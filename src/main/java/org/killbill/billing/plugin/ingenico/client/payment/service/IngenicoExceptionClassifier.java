@@ -0,0 +1,243 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.client.payment.service;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import com.google.common.collect.ImmutableList;
+import com.ingenico.connect.gateway.sdk.java.ApiException;
+import com.ingenico.connect.gateway.sdk.java.AuthorizationException;
+import com.ingenico.connect.gateway.sdk.java.DeclinedPaymentException;
+import com.ingenico.connect.gateway.sdk.java.DeclinedPayoutException;
+import com.ingenico.connect.gateway.sdk.java.DeclinedRefundException;
+import com.ingenico.connect.gateway.sdk.java.GlobalCollectException;
+import com.ingenico.connect.gateway.sdk.java.IdempotenceException;
+import com.ingenico.connect.gateway.sdk.java.ReferenceException;
+import com.ingenico.connect.gateway.sdk.java.ValidationException;
+
+import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.REQUEST_NOT_SEND;
+import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.RESPONSE_ABOUT_INVALID_REQUEST;
+import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.RESPONSE_INVALID;
+import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.RESPONSE_NOT_RECEIVED;
+import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.UNKNOWN_FAILURE;
+
+/**
+ * Maps the root cause of a failed Ingenico call to an {@link IngenicoCallErrorStatus}.
+ * <p>
+ * Rules are matched on the exception type (first matching rule wins, custom rules before the default ones), and the
+ * rule resolved for a given exception class is cached. A rule can refine its status with matchers on the exception
+ * message; if none matches (or there is no message), the rule default applies, {@code UNKNOWN_FAILURE} if it has none.
+ */
+public class IngenicoExceptionClassifier {
+
+    private static final Rule NO_RULE = new Rule(Throwable.class, UNKNOWN_FAILURE);
+
+    private final List<Rule> customRules = new CopyOnWriteArrayList<Rule>();
+    private final List<Rule> defaultRules;
+    private final ConcurrentMap<Class<?>, Rule> rulesCache = new ConcurrentHashMap<Class<?>, Rule>();
+    private final ConcurrentMap<String, Classification> classifications = new ConcurrentHashMap<String, Classification>();
+
+    public IngenicoExceptionClassifier() {
+        // Order matters: subclasses first (e.g. ConnectException is a SocketException, SocketTimeoutException an IOException)
+        this.defaultRules = ImmutableList.<Rule>of(new Rule(ConnectException.class, REQUEST_NOT_SEND),
+                                                   new Rule(SocketTimeoutException.class, null).whenMessageContains("Read timed out", RESPONSE_NOT_RECEIVED)
+                                                                                               .whenMessageContains("Unexpected end of file from server", RESPONSE_INVALID),
+                                                   new Rule(SocketException.class, null).whenMessageContains("Unexpected end of file from server", RESPONSE_INVALID),
+                                                   new Rule(UnknownHostException.class, REQUEST_NOT_SEND),
+                                                   new Rule(ValidationException.class, RESPONSE_ABOUT_INVALID_REQUEST),
+                                                   new Rule(IllegalArgumentException.class, RESPONSE_ABOUT_INVALID_REQUEST),
+                                                   new Rule(DeclinedPaymentException.class, RESPONSE_ABOUT_INVALID_REQUEST),
+                                                   new Rule(DeclinedPayoutException.class, RESPONSE_ABOUT_INVALID_REQUEST),
+                                                   new Rule(DeclinedRefundException.class, RESPONSE_ABOUT_INVALID_REQUEST),
+                                                   new Rule(AuthorizationException.class, REQUEST_NOT_SEND),
+                                                   new Rule(ReferenceException.class, REQUEST_NOT_SEND),
+                                                   new Rule(IdempotenceException.class, REQUEST_NOT_SEND),
+                                                   new Rule(GlobalCollectException.class, RESPONSE_INVALID),
+                                                   new Rule(ApiException.class, RESPONSE_ABOUT_INVALID_REQUEST),
+                                                   new Rule(IOException.class, null).whenMessageContains("Invalid Http response", RESPONSE_INVALID)
+                                                                                    .whenMessageContains("Bogus chunk size", RESPONSE_INVALID));
+    }
+
+    /**
+     * Register a rule taking precedence over the existing ones.
+     *
+     * @param defaultStatus status when none of the message matchers of the rule match, null for UNKNOWN_FAILURE
+     * @return the rule, to add message matchers to
+     */
+    public Rule register(final Class<? extends Throwable> exceptionClass, @Nullable final IngenicoCallErrorStatus defaultStatus) {
+        final Rule rule = new Rule(exceptionClass, defaultStatus);
+        customRules.add(0, rule);
+        rulesCache.clear();
+        return rule;
+    }
+
+    public IngenicoCallErrorStatus classify(final Throwable rootCause) {
+        final IngenicoCallErrorStatus errorStatus = getRule(rootCause.getClass()).resolve(rootCause.getMessage());
+        getClassification(rootCause.getClass().getName(), errorStatus).increment();
+        return errorStatus;
+    }
+
+    public Collection<Classification> getClassifications() {
+        return Collections.unmodifiableCollection(classifications.values());
+    }
+
+    private Rule getRule(final Class<?> exceptionClass) {
+        final Rule cachedRule = rulesCache.get(exceptionClass);
+        if (cachedRule != null) {
+            return cachedRule;
+        }
+
+        Rule rule = findRule(customRules, exceptionClass);
+        if (rule == null) {
+            rule = findRule(defaultRules, exceptionClass);
+        }
+        if (rule == null) {
+            rule = NO_RULE;
+        }
+        rulesCache.put(exceptionClass, rule);
+        return rule;
+    }
+
+    private Rule findRule(final Iterable<Rule> rules, final Class<?> exceptionClass) {
+        for (final Rule rule : rules) {
+            if (rule.getExceptionClass().isAssignableFrom(exceptionClass)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    private Classification getClassification(final String exceptionClass, final IngenicoCallErrorStatus errorStatus) {
+        final String key = exceptionClass + "/" + errorStatus;
+
+        final Classification existing = classifications.get(key);
+        if (existing != null) {
+            return existing;
+        }
+
+        final Classification classification = new Classification(exceptionClass, errorStatus);
+        final Classification previous = classifications.putIfAbsent(key, classification);
+        return previous != null ? previous : classification;
+    }
+
+    public interface MessageMatcher {
+
+        /**
+         * @param message exception message, never null
+         */
+        boolean matches(String message);
+    }
+
+    public static MessageMatcher messageContains(final String fragment) {
+        return new MessageMatcher() {
+            @Override
+            public boolean matches(final String message) {
+                return message.contains(fragment);
+            }
+        };
+    }
+
+    public static class Rule {
+
+        private final Class<? extends Throwable> exceptionClass;
+        private final IngenicoCallErrorStatus defaultStatus;
+        private final List<MessageRule> messageRules = new CopyOnWriteArrayList<MessageRule>();
+
+        private Rule(final Class<? extends Throwable> exceptionClass, @Nullable final IngenicoCallErrorStatus defaultStatus) {
+            this.exceptionClass = exceptionClass;
+            this.defaultStatus = defaultStatus == null ? UNKNOWN_FAILURE : defaultStatus;
+        }
+
+        public Rule when(final MessageMatcher matcher, final IngenicoCallErrorStatus errorStatus) {
+            messageRules.add(new MessageRule(matcher, errorStatus));
+            return this;
+        }
+
+        public Rule whenMessageContains(final String fragment, final IngenicoCallErrorStatus errorStatus) {
+            return when(messageContains(fragment), errorStatus);
+        }
+
+        public Class<? extends Throwable> getExceptionClass() {
+            return exceptionClass;
+        }
+
+        private IngenicoCallErrorStatus resolve(@Nullable final String message) {
+            if (message == null) {
+                return defaultStatus;
+            }
+            for (final MessageRule messageRule : messageRules) {
+                if (messageRule.matcher.matches(message)) {
+                    return messageRule.errorStatus;
+                }
+            }
+            return defaultStatus;
+        }
+    }
+
+    private static class MessageRule {
+
+        private final MessageMatcher matcher;
+        private final IngenicoCallErrorStatus errorStatus;
+
+        private MessageRule(final MessageMatcher matcher, final IngenicoCallErrorStatus errorStatus) {
+            this.matcher = matcher;
+            this.errorStatus = errorStatus;
+        }
+    }
+
+    public static class Classification {
+
+        private final String exceptionClass;
+        private final IngenicoCallErrorStatus errorStatus;
+        private final AtomicLong count = new AtomicLong();
+
+        private Classification(final String exceptionClass, final IngenicoCallErrorStatus errorStatus) {
+            this.exceptionClass = exceptionClass;
+            this.errorStatus = errorStatus;
+        }
+
+        private void increment() {
+            count.incrementAndGet();
+        }
+
+        public String getExceptionClass() {
+            return exceptionClass;
+        }
+
+        public IngenicoCallErrorStatus getErrorStatus() {
+            return errorStatus;
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+    }
+}
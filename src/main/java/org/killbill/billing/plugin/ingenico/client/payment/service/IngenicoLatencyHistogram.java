@@ -0,0 +1,157 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.client.payment.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram (in ms) for a single (tenant, operation) pair.
+ * <p>
+ * Buckets are log-linear: exact up to 8 ms, then 8 sub-buckets per power of two, which bounds
+ * the relative error of the reported percentiles to 12.5%. Recording is a couple of atomic increments.
+ */
+public class IngenicoLatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Anything above ~2^31 ms ends up in the last bucket
+    private static final int MAX_MAGNITUDE = 31;
+    private static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+    private static final long MAX_TRACKABLE_VALUE = upperBound(BUCKET_COUNT - 1);
+
+    private final String kbTenantId;
+    private final String operation;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private final AtomicLong successes = new AtomicLong();
+    private final AtomicLongArray errors = new AtomicLongArray(IngenicoCallErrorStatus.values().length);
+
+    public IngenicoLatencyHistogram(final String kbTenantId, final String operation) {
+        this.kbTenantId = kbTenantId;
+        this.operation = operation;
+    }
+
+    /**
+     * Record a call which reached (or tried to reach) Ingenico.
+     *
+     * @param durationMillis call duration
+     * @param errorStatus    null if the call was successful
+     */
+    public void record(final long durationMillis, final IngenicoCallErrorStatus errorStatus) {
+        final long value = Math.min(Math.max(durationMillis, 0), MAX_TRACKABLE_VALUE);
+        buckets.incrementAndGet(bucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        updateMax(value);
+        recordStatus(errorStatus);
+    }
+
+    /**
+     * Record the outcome of a call without a meaningful duration (e.g. rejected by the circuit breaker).
+     */
+    public void recordStatus(final IngenicoCallErrorStatus errorStatus) {
+        if (errorStatus == null) {
+            successes.incrementAndGet();
+        } else {
+            errors.incrementAndGet(errorStatus.ordinal());
+        }
+    }
+
+    private void updateMax(final long value) {
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return upper bound (in ms) of the bucket holding that percentile, 0 if nothing was recorded
+     */
+    public long getPercentile(final double percentile) {
+        final long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int bucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >> shift) & (SUB_BUCKET_COUNT - 1));
+    }
+
+    static long upperBound(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long subBucket = index % SUB_BUCKET_COUNT;
+        return ((SUB_BUCKET_COUNT + subBucket + 1) << shift) - 1;
+    }
+
+    public String getKbTenantId() {
+        return kbTenantId;
+    }
+
+    public String getOperation() {
+        return operation;
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getSum() {
+        return sum.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getSuccesses() {
+        return successes.get();
+    }
+
+    public long getErrors(final IngenicoCallErrorStatus errorStatus) {
+        return errors.get(errorStatus.ordinal());
+    }
+}
@@ -20,25 +20,34 @@ package org.killbill.billing.plugin.ingenico.client.payment.service;
 import java.io.Closeable;
 import java.io.IOException;
 import java.net.ConnectException;
-import java.net.SocketException;
-import java.net.SocketTimeoutException;
-import java.net.UnknownHostException;
 import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
 
 import org.killbill.billing.plugin.ingenico.client.IngenicoClientRegistry;
+import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.ingenico.connect.gateway.sdk.java.ApiException;
-import com.ingenico.connect.gateway.sdk.java.AuthorizationException;
+import com.ingenico.connect.gateway.sdk.java.CallContext;
 import com.ingenico.connect.gateway.sdk.java.DeclinedPaymentException;
 import com.ingenico.connect.gateway.sdk.java.DeclinedPayoutException;
 import com.ingenico.connect.gateway.sdk.java.DeclinedRefundException;
-import com.ingenico.connect.gateway.sdk.java.GlobalCollectException;
 import com.ingenico.connect.gateway.sdk.java.IdempotenceException;
-import com.ingenico.connect.gateway.sdk.java.ReferenceException;
-import com.ingenico.connect.gateway.sdk.java.ValidationException;
 import com.ingenico.connect.gateway.sdk.java.domain.errors.definitions.APIError;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.ApprovePaymentRequest;
 import com.ingenico.connect.gateway.sdk.java.domain.payment.CancelPaymentResponse;
@@ -56,85 +65,272 @@ import com.ingenico.connect.gateway.sdk.java.domain.token.CreateTokenRequest;
 import com.ingenico.connect.gateway.sdk.java.domain.token.CreateTokenResponse;
 import com.ingenico.connect.gateway.sdk.java.merchant.MerchantClient;
 
+import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.CIRCUIT_OPEN;
 import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.REQUEST_NOT_SEND;
-import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.RESPONSE_ABOUT_INVALID_REQUEST;
-import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.RESPONSE_INVALID;
 import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.RESPONSE_NOT_RECEIVED;
-import static org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus.UNKNOWN_FAILURE;
 
 public class IngenicoPaymentRequestSender implements Closeable {
 
     private static final Logger logger = LoggerFactory.getLogger(IngenicoPaymentRequestSender.class);
 
     private final IngenicoClientRegistry ingenicoClientRegistry;
+    private final IngenicoConfigProperties config;
+    private final IngenicoCircuitBreakers circuitBreakers;
+    private final IngenicoCallMetrics callMetrics;
+    private final IngenicoExceptionClassifier exceptionClassifier;
+    private final ListeningExecutorService asyncExecutor;
+    private final Random random = new Random();
     private List<APIError> errors;
     private String status;
 
-    public IngenicoPaymentRequestSender(final IngenicoClientRegistry ingenicoClientRegistry) {
+    public IngenicoPaymentRequestSender(final IngenicoClientRegistry ingenicoClientRegistry, final IngenicoConfigProperties config, final IngenicoCircuitBreakers circuitBreakers, final IngenicoCallMetrics callMetrics, final IngenicoExceptionClassifier exceptionClassifier) {
         this.ingenicoClientRegistry = ingenicoClientRegistry;
+        this.config = config;
+        this.circuitBreakers = circuitBreakers;
+        this.callMetrics = callMetrics;
+        this.exceptionClassifier = exceptionClassifier;
+
+        final int asyncThreads = config.getAsyncThreads();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(asyncThreads,
+                                                                   asyncThreads,
+                                                                   60L,
+                                                                   TimeUnit.SECONDS,
+                                                                   new ArrayBlockingQueue<Runnable>(config.getAsyncQueueSize()),
+                                                                   new ThreadFactoryBuilder().setNameFormat("ingenico-async-%d")
+                                                                                             .setDaemon(true)
+                                                                                             .build());
+        // Threads are only started for tenants actually using the async path
+        executor.allowCoreThreadTimeOut(true);
+        this.asyncExecutor = MoreExecutors.listeningDecorator(executor);
+    }
+
+    /**
+     * @param idempotenceKey if not null, sent along with the request and used to safely retry it when the outcome is unknown
+     */
+    public IngenicoCallResult<CreatePaymentResponse> create(final CreatePaymentRequest request, @Nullable final String idempotenceKey, final UUID kbTenantId) {
+        return createWithRetries(request, idempotenceKey, kbTenantId);
     }
 
-    public IngenicoCallResult<CreatePaymentResponse> create(final CreatePaymentRequest request) {
-        return callIngenico(new IngenicoCall<MerchantClient, CreatePaymentResponse>() {
+    public ListenableFuture<IngenicoCallResult<CreatePaymentResponse>> createAsync(final CreatePaymentRequest request, @Nullable final String idempotenceKey, final UUID kbTenantId) {
+        return submitAsync("create", kbTenantId, new Callable<IngenicoCallResult<CreatePaymentResponse>>() {
             @Override
-            public CreatePaymentResponse apply(final MerchantClient client) throws ApiException {
-                return client.payments().create(request);
+            public IngenicoCallResult<CreatePaymentResponse> call() {
+                return createWithRetries(request, idempotenceKey, kbTenantId);
             }
         });
     }
 
-    public IngenicoCallResult<PaymentApprovalResponse> approve(final  String paymentId, final ApprovePaymentRequest modificationRequest) {
-        return callIngenico(new IngenicoCall<MerchantClient, PaymentApprovalResponse>() {
+    public IngenicoCallResult<PaymentApprovalResponse> approve(final String paymentId, final ApprovePaymentRequest modificationRequest, final UUID kbTenantId) {
+        return callIngenico("approve", kbTenantId, approveCall(paymentId, modificationRequest));
+    }
+
+    public ListenableFuture<IngenicoCallResult<PaymentApprovalResponse>> approveAsync(final String paymentId, final ApprovePaymentRequest modificationRequest, final UUID kbTenantId) {
+        return callIngenicoAsync("approve", kbTenantId, approveCall(paymentId, modificationRequest));
+    }
+
+    public IngenicoCallResult<PaymentResponse> get(final String paymentId, final UUID kbTenantId) {
+        return callIngenico("get", kbTenantId, getCall(paymentId));
+    }
+
+    public ListenableFuture<IngenicoCallResult<PaymentResponse>> getAsync(final String paymentId, final UUID kbTenantId) {
+        return callIngenicoAsync("get", kbTenantId, getCall(paymentId));
+    }
+
+    public IngenicoCallResult<RefundResponse> refund(final String paymentId, final RefundRequest modificationRequest, final UUID kbTenantId) {
+        return callIngenico("refund", kbTenantId, refundCall(paymentId, modificationRequest));
+    }
+
+    public ListenableFuture<IngenicoCallResult<RefundResponse>> refundAsync(final String paymentId, final RefundRequest modificationRequest, final UUID kbTenantId) {
+        return callIngenicoAsync("refund", kbTenantId, refundCall(paymentId, modificationRequest));
+    }
+
+    public IngenicoCallResult<CancelPaymentResponse> cancel(final String paymentId, final UUID kbTenantId) {
+        return callIngenico("cancel", kbTenantId, cancelCall(paymentId));
+    }
+
+    public ListenableFuture<IngenicoCallResult<CancelPaymentResponse>> cancelAsync(final String paymentId, final UUID kbTenantId) {
+        return callIngenicoAsync("cancel", kbTenantId, cancelCall(paymentId));
+    }
+
+    public IngenicoCallResult<CreateTokenResponse> createToken(final CreateTokenRequest createTokenRequest, final UUID kbTenantId) {
+        return callIngenico("createToken", kbTenantId, createTokenCall(createTokenRequest));
+    }
+
+    public ListenableFuture<IngenicoCallResult<CreateTokenResponse>> createTokenAsync(final CreateTokenRequest createTokenRequest, final UUID kbTenantId) {
+        return callIngenicoAsync("createToken", kbTenantId, createTokenCall(createTokenRequest));
+    }
+
+    /**
+     * Without an idempotence key, the request is sent once. With one, it is re-sent (with the same key) when Ingenico
+     * may or may not have processed it, with an exponential backoff: Ingenico either processes it for the first time,
+     * replays the original response, or rejects it with an IdempotenceException while the original one is still in flight.
+     * <p>
+     * Once an attempt may have reached Ingenico, the outcome stays unknown (RESPONSE_NOT_RECEIVED) unless a later attempt
+     * gets an answer: a retry which isn't sent, or is rejected because the original request is still in flight, says nothing
+     * about the payment. Retries bypass the circuit breaker, as the payment may already be in progress. No retry is started
+     * once createRetry.maxDuration has elapsed, so the calling thread is blocked for at most maxDuration + socketTimeout.
+     */
+    private IngenicoCallResult<CreatePaymentResponse> createWithRetries(final CreatePaymentRequest request, @Nullable final String idempotenceKey, @Nullable final UUID kbTenantId) {
+        if (idempotenceKey == null) {
+            return callIngenico("create", kbTenantId, createCall(request, null));
+        }
+
+        final CallContext callContext = new CallContext().withIdempotenceKey(idempotenceKey);
+        final int maxAttempts = Math.max(1, config.getCreateRetryMaxAttempts());
+        final long retryDeadline = System.currentTimeMillis() + config.getCreateRetryMaxDuration();
+
+        IngenicoCallResult<CreatePaymentResponse> result = null;
+        // Latest attempt which may have been processed by Ingenico
+        IngenicoCallResult<CreatePaymentResponse> unknownOutcomeResult = null;
+        for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            result = callIngenico("create", kbTenantId, createCall(request, callContext), attempt > 1);
+            if (!isOutcomeUnknown(result)) {
+                break;
+            }
+            if (result.getResponseStatus().orNull() == RESPONSE_NOT_RECEIVED) {
+                unknownOutcomeResult = result;
+            }
+            if (attempt == maxAttempts) {
+                break;
+            }
+
+            final long backoff = backoff(attempt);
+            if (System.currentTimeMillis() + backoff >= retryDeadline) {
+                logger.warn("Not retrying Ingenico create for idempotenceKey='{}': createRetry.maxDuration of {} ms reached after {} attempt(s)", idempotenceKey, config.getCreateRetryMaxDuration(), attempt);
+                break;
+            }
+            logger.info("Retrying Ingenico create for idempotenceKey='{}' in {} ms (attempt {}/{}), previous result: {}", idempotenceKey, backoff, attempt + 1, maxAttempts, result);
+            try {
+                Thread.sleep(backoff);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (callContext.getIdempotenceRequestTimestamp() != null) {
+            logger.info("Duplicate Ingenico create for idempotenceKey='{}', replayed response of the request sent at {}", idempotenceKey, callContext.getIdempotenceRequestTimestamp());
+        }
+
+        if (!isOutcomeUnknown(result)) {
+            return result;
+        } else if (unknownOutcomeResult != null) {
+            return unknownOutcomeResult;
+        } else if (IdempotenceException.class.getName().equals(result.getExceptionClass().orNull())) {
+            // A request with the same key (e.g. sent by another node) is still being processed by Ingenico
+            final UnSuccessfulIngenicoCall<CreatePaymentResponse> inFlightResult = new UnSuccessfulIngenicoCall<CreatePaymentResponse>(RESPONSE_NOT_RECEIVED,
+                                                                                                                                      new IllegalStateException("Payment with idempotenceKey='" + idempotenceKey + "' still in progress: " + result.getExceptionMessage().orNull()));
+            inFlightResult.setDuration(result.getDuration());
+            return inFlightResult;
+        }
+        // Never sent
+        return result;
+    }
+
+    /**
+     * Whether the request may not have been processed by Ingenico yet (and can be re-sent with its idempotence key).
+     */
+    private boolean isOutcomeUnknown(final IngenicoCallResult<?> result) {
+        if (result.getResponseStatus().orNull() == RESPONSE_NOT_RECEIVED) {
+            return true;
+        }
+        final String exceptionClass = result.getExceptionClass().orNull();
+        // Connection refused, or the first request with the same idempotence key is still being processed
+        return ConnectException.class.getName().equals(exceptionClass) || IdempotenceException.class.getName().equals(exceptionClass);
+    }
+
+    /**
+     * Exponential backoff with jitter, between half and all of min(maxBackoff, initialBackoff * 2^(attempt - 1)).
+     */
+    private long backoff(final int attempt) {
+        final long initialBackoff = config.getCreateRetryInitialBackoff();
+        final long maxBackoff = config.getCreateRetryMaxBackoff();
+        final long exponentialBackoff = attempt >= 31 ? maxBackoff : Math.min(maxBackoff, initialBackoff << (attempt - 1));
+        final long halfBackoff = exponentialBackoff / 2;
+        return halfBackoff + (long) (random.nextDouble() * (exponentialBackoff - halfBackoff + 1));
+    }
+
+    private IngenicoCall<MerchantClient, CreatePaymentResponse> createCall(final CreatePaymentRequest request, @Nullable final CallContext callContext) {
+        return new IngenicoCall<MerchantClient, CreatePaymentResponse>() {
+            @Override
+            public CreatePaymentResponse apply(final MerchantClient client) throws ApiException {
+                return callContext == null ? client.payments().create(request) : client.payments().create(request, callContext);
+            }
+        };
+    }
+
+    private IngenicoCall<MerchantClient, PaymentApprovalResponse> approveCall(final String paymentId, final ApprovePaymentRequest modificationRequest) {
+        return new IngenicoCall<MerchantClient, PaymentApprovalResponse>() {
             @Override
             public PaymentApprovalResponse apply(final MerchantClient client) throws ApiException {
                 return client.payments().approve(paymentId, modificationRequest);
             }
-        });
+        };
     }
 
-    public IngenicoCallResult<PaymentResponse> get(final String paymentId) {
-        return callIngenico(new IngenicoCall<MerchantClient, PaymentResponse>() {
+    private IngenicoCall<MerchantClient, PaymentResponse> getCall(final String paymentId) {
+        return new IngenicoCall<MerchantClient, PaymentResponse>() {
             @Override
             public PaymentResponse apply(final MerchantClient client) throws ApiException {
                 return client.payments().get(paymentId);
             }
-        });
+        };
     }
 
-    public IngenicoCallResult<RefundResponse> refund(final String paymentId, final RefundRequest modificationRequest) {
-        return callIngenico(new IngenicoCall<MerchantClient, RefundResponse>() {
+    private IngenicoCall<MerchantClient, RefundResponse> refundCall(final String paymentId, final RefundRequest modificationRequest) {
+        return new IngenicoCall<MerchantClient, RefundResponse>() {
             @Override
             public RefundResponse apply(final MerchantClient client) throws ApiException {
                 return client.payments().refund(paymentId, modificationRequest);
             }
-        });
+        };
     }
 
-    public IngenicoCallResult<CancelPaymentResponse> cancel(final  String paymentId) {
-        return callIngenico(new IngenicoCall<MerchantClient, CancelPaymentResponse>() {
+    private IngenicoCall<MerchantClient, CancelPaymentResponse> cancelCall(final String paymentId) {
+        return new IngenicoCall<MerchantClient, CancelPaymentResponse>() {
             @Override
             public CancelPaymentResponse apply(final MerchantClient client) throws ApiException {
                 return client.payments().cancel(paymentId);
             }
-        });
+        };
     }
 
-    public IngenicoCallResult<CreateTokenResponse> createToken(final CreateTokenRequest createTokenRequest) {
-        return callIngenico(new IngenicoCall<MerchantClient, CreateTokenResponse>() {
+    private IngenicoCall<MerchantClient, CreateTokenResponse> createTokenCall(final CreateTokenRequest createTokenRequest) {
+        return new IngenicoCall<MerchantClient, CreateTokenResponse>() {
             @Override
             public CreateTokenResponse apply(final MerchantClient client) throws ApiException {
                 return client.tokens().create(createTokenRequest);
             }
-        });
+        };
     }
 
-    private <T> IngenicoCallResult<T> callIngenico(final IngenicoCall<MerchantClient, T> ingenicoCall) {
+    private <T> IngenicoCallResult<T> callIngenico(final String operation, @Nullable final UUID kbTenantId, final IngenicoCall<MerchantClient, T> ingenicoCall) {
+        return callIngenico(operation, kbTenantId, ingenicoCall, false);
+    }
+
+    /**
+     * @param bypassCircuitBreaker whether to send the request even if the circuit is open (its outcome is still recorded)
+     */
+    private <T> IngenicoCallResult<T> callIngenico(final String operation, @Nullable final UUID kbTenantId, final IngenicoCall<MerchantClient, T> ingenicoCall, final boolean bypassCircuitBreaker) {
+        final IngenicoCircuitBreaker circuitBreaker = circuitBreakers.getCircuitBreaker(kbTenantId, operation, config);
+        if (!bypassCircuitBreaker && !circuitBreaker.allowRequest()) {
+            logger.warn("Circuit breaker open, not sending Ingenico request: {}", circuitBreaker);
+            final UnSuccessfulIngenicoCall<T> rejectedResult = new UnSuccessfulIngenicoCall<T>(CIRCUIT_OPEN, new IllegalStateException("Circuit breaker open for operation " + operation));
+            rejectedResult.setDuration(0);
+            callMetrics.recordStatus(kbTenantId, operation, CIRCUIT_OPEN);
+            return rejectedResult;
+        }
+
         final long startTime = System.currentTimeMillis();
+        boolean outcomeRecorded = false;
         try {
             final MerchantClient client = ingenicoClientRegistry.getMerchantClient();
             final T result = ingenicoCall.apply(client);
 
             final long duration = System.currentTimeMillis() - startTime;
+            outcomeRecorded = true;
+            circuitBreaker.onSuccess();
+            callMetrics.record(kbTenantId, operation, duration, null);
             return new SuccessfulIngenicoCall<T>(result, duration);
         } catch (final Exception e) {
             final long duration = System.currentTimeMillis() - startTime;
@@ -142,76 +338,88 @@ public class IngenicoPaymentRequestSender implements Closeable {
 
             final UnSuccessfulIngenicoCall<T> unsuccessfulResult = mapExceptionToCallResult(e);
             unsuccessfulResult.setDuration(duration);
+            outcomeRecorded = true;
+            if (isGatewayUnavailable(e, unsuccessfulResult)) {
+                circuitBreaker.onFailure();
+            } else {
+                circuitBreaker.onSuccess();
+            }
+            callMetrics.record(kbTenantId, operation, duration, unsuccessfulResult.getResponseStatus().orNull());
             return unsuccessfulResult;
+        } finally {
+            // E.g. an Error thrown by the SDK: count it as a failure, which also releases a half-open probe
+            if (!outcomeRecorded) {
+                circuitBreaker.onFailure();
+            }
         }
     }
 
     /**
-     * Educated guess approach to transform CXF exceptions into error status codes.
-     * In the future if we encounter further different cases it makes sense to change this if/else structure to a map with lookup.
+     * Only transport level failures count against the circuit breaker: API errors (e.g. an unknown payment id,
+     * mapped to REQUEST_NOT_SEND as well) mean the gateway did answer.
+     */
+    private boolean isGatewayUnavailable(final Exception e, final IngenicoCallResult<?> result) {
+        if (Throwables.getRootCause(e) instanceof ApiException) {
+            return false;
+        }
+        final IngenicoCallErrorStatus responseStatus = result.getResponseStatus().orNull();
+        return responseStatus == REQUEST_NOT_SEND || responseStatus == RESPONSE_NOT_RECEIVED;
+    }
+
+    /**
+     * The Connect SDK only ships a blocking transport: the round trip runs on a dedicated pool (sized after the
+     * connection pool, with a bounded queue) and callers compose on the returned future instead of holding their own
+     * thread. The future never fails: errors are mapped to an {@link IngenicoCallErrorStatus} exactly like the
+     * synchronous path, and calls which can't be queued are reported as REQUEST_NOT_SEND.
+     */
+    private <T> ListenableFuture<IngenicoCallResult<T>> callIngenicoAsync(final String operation, @Nullable final UUID kbTenantId, final IngenicoCall<MerchantClient, T> ingenicoCall) {
+        return submitAsync(operation, kbTenantId, new Callable<IngenicoCallResult<T>>() {
+            @Override
+            public IngenicoCallResult<T> call() {
+                return callIngenico(operation, kbTenantId, ingenicoCall);
+            }
+        });
+    }
+
+    private <T> ListenableFuture<IngenicoCallResult<T>> submitAsync(final String operation, @Nullable final UUID kbTenantId, final Callable<IngenicoCallResult<T>> callable) {
+        try {
+            return asyncExecutor.submit(callable);
+        } catch (final RejectedExecutionException e) {
+            logger.warn("Unable to schedule Ingenico request, too many async calls queued", e);
+            callMetrics.recordStatus(kbTenantId, operation, REQUEST_NOT_SEND);
+            final UnSuccessfulIngenicoCall<T> rejectedResult = new UnSuccessfulIngenicoCall<T>(REQUEST_NOT_SEND, e);
+            rejectedResult.setDuration(0);
+            return Futures.<IngenicoCallResult<T>>immediateFuture(rejectedResult);
+        }
+    }
+
+    /**
+     * Wraps a failed call: the error status comes from the {@link IngenicoExceptionClassifier}, and the Ingenico errors
+     * (plus the payment id and status of declined payments, payouts and refunds) are extracted from SDK exceptions.
      */
     private <T> UnSuccessfulIngenicoCall<T> mapExceptionToCallResult(final Exception e) {
         //noinspection ThrowableResultOfMethodCallIgnored
         final Throwable rootCause = Throwables.getRootCause(e);
-        final String errorMessage = rootCause.getMessage();
-        if (rootCause instanceof ConnectException) {
-            return new UnSuccessfulIngenicoCall<T>(REQUEST_NOT_SEND, rootCause);
-        } else if (rootCause instanceof SocketTimeoutException) {
-            // read timeout
-            if (errorMessage.contains("Read timed out")) {
-                return new UnSuccessfulIngenicoCall<T>(RESPONSE_NOT_RECEIVED, rootCause);
-            } else if (errorMessage.contains("Unexpected end of file from server")) {
-                return new UnSuccessfulIngenicoCall<T>(RESPONSE_INVALID, rootCause);
-            }
-        } else if (rootCause instanceof SocketException) {
-            if (errorMessage.contains("Unexpected end of file from server")) {
-                return new UnSuccessfulIngenicoCall<T>(RESPONSE_INVALID, rootCause);
-            }
-        } else if (rootCause instanceof UnknownHostException) {
-            return new UnSuccessfulIngenicoCall<T>(REQUEST_NOT_SEND, rootCause);
-        } else if (rootCause instanceof ValidationException) {
-            List<APIError> errors = ((ValidationException) rootCause).getErrors();
-            return new UnSuccessfulIngenicoCall<T>(RESPONSE_ABOUT_INVALID_REQUEST, rootCause, errors);
-        } else if (rootCause instanceof IllegalArgumentException) {
-            return new UnSuccessfulIngenicoCall<T>(RESPONSE_ABOUT_INVALID_REQUEST, rootCause);
-        } else if (rootCause instanceof DeclinedPaymentException) {
-            IngenicoErrors errors = parseDeclinedPayment((DeclinedPaymentException) rootCause);
-            return new UnSuccessfulIngenicoCall<T>(RESPONSE_ABOUT_INVALID_REQUEST, rootCause, errors.getErrors(), errors.getPaymentId(), errors.getStatus());
+        final IngenicoCallErrorStatus errorStatus = exceptionClassifier.classify(rootCause);
+        if (rootCause instanceof DeclinedPaymentException) {
+            final IngenicoErrors errors = parseDeclinedPayment((DeclinedPaymentException) rootCause);
+            return new UnSuccessfulIngenicoCall<T>(errorStatus, rootCause, errors.getErrors(), errors.getPaymentId(), errors.getStatus());
         } else if (rootCause instanceof DeclinedPayoutException) {
-            IngenicoErrors errors = parseDeclinedPayout((DeclinedPayoutException) rootCause);
-            return new UnSuccessfulIngenicoCall<T>(RESPONSE_ABOUT_INVALID_REQUEST, rootCause, errors.getErrors(), errors.getPaymentId(), errors.getStatus());
+            final IngenicoErrors errors = parseDeclinedPayout((DeclinedPayoutException) rootCause);
+            return new UnSuccessfulIngenicoCall<T>(errorStatus, rootCause, errors.getErrors(), errors.getPaymentId(), errors.getStatus());
         } else if (rootCause instanceof DeclinedRefundException) {
-            IngenicoErrors errors = parseDeclinedRefund((DeclinedRefundException) rootCause);
-            return new UnSuccessfulIngenicoCall<T>(RESPONSE_ABOUT_INVALID_REQUEST, rootCause, errors.getErrors(), errors.getPaymentId(), errors.getStatus());
-        } else if (rootCause instanceof AuthorizationException) {
-            List<APIError> errors = ((AuthorizationException) rootCause).getErrors();
-            return new UnSuccessfulIngenicoCall<T>(REQUEST_NOT_SEND, rootCause, errors);
-        } else if (rootCause instanceof ReferenceException) {
-            List<APIError> errors = ((ReferenceException) rootCause).getErrors();
-            return new UnSuccessfulIngenicoCall<T>(REQUEST_NOT_SEND, rootCause, errors);
-        } else if (rootCause instanceof IdempotenceException) {
-            List<APIError> errors = ((IdempotenceException) rootCause).getErrors();
-            return new UnSuccessfulIngenicoCall<T>(REQUEST_NOT_SEND, rootCause, errors);
-        } else if (rootCause instanceof GlobalCollectException) {
-            List<APIError> errors = ((GlobalCollectException) rootCause).getErrors();
-            return new UnSuccessfulIngenicoCall<T>(RESPONSE_INVALID, rootCause, errors);
+            final IngenicoErrors errors = parseDeclinedRefund((DeclinedRefundException) rootCause);
+            return new UnSuccessfulIngenicoCall<T>(errorStatus, rootCause, errors.getErrors(), errors.getPaymentId(), errors.getStatus());
         } else if (rootCause instanceof ApiException) {
-            IngenicoErrors errors = parseApiError((ApiException) rootCause);
-            return new UnSuccessfulIngenicoCall<T>(RESPONSE_ABOUT_INVALID_REQUEST, rootCause, errors.getErrors(), errors.getPaymentId(), errors.getStatus());
-        } else if (rootCause instanceof IOException) {
-            if (errorMessage.contains("Invalid Http response")) {
-                // unparsable data as response
-                return new UnSuccessfulIngenicoCall<T>(RESPONSE_INVALID, rootCause);
-            } else if (errorMessage.contains("Bogus chunk size")) {
-                return new UnSuccessfulIngenicoCall<T>(RESPONSE_INVALID, rootCause);
-            }
+            return new UnSuccessfulIngenicoCall<T>(errorStatus, rootCause, ((ApiException) rootCause).getErrors());
         }
 
-        return new UnSuccessfulIngenicoCall<T>(UNKNOWN_FAILURE, rootCause);
+        return new UnSuccessfulIngenicoCall<T>(errorStatus, rootCause);
     }
 
     @Override
     public void close() throws IOException {
+        asyncExecutor.shutdown();
         ingenicoClientRegistry.close();
     }
 
@@ -225,10 +433,6 @@ public class IngenicoPaymentRequestSender implements Closeable {
         final private String status;
         final private String paymentId;
 
-        public IngenicoErrors(final List<APIError> errors) {
-            this(errors, null, null);
-        }
-
         private IngenicoErrors(final List<APIError> errors, final String status, final String paymentId) {
             this.errors = errors;
             this.status = status;
@@ -267,9 +471,4 @@ public class IngenicoPaymentRequestSender implements Closeable {
         final RefundResult paymentResult = e.getRefundResult();
         return new IngenicoErrors(errors, paymentResult.getStatus(), paymentResult.getId());
     }
-
-    private IngenicoErrors parseApiError(final ApiException e) {
-        List<APIError> errors = e.getErrors();
-        return new IngenicoErrors(errors);
-    }
 }
@@ -30,7 +30,12 @@ import org.killbill.billing.payment.plugin.api.PaymentPluginApi;
 import org.killbill.billing.plugin.api.notification.PluginConfigurationEventHandler;
 import org.killbill.billing.plugin.ingenico.api.IngenicoPaymentPluginApi;
 import org.killbill.billing.plugin.ingenico.client.IngenicoClient;
+import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallMetrics;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCircuitBreakers;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoExceptionClassifier;
 import org.killbill.billing.plugin.ingenico.dao.IngenicoDao;
+import org.killbill.billing.plugin.ingenico.dao.IngenicoPaymentMethodCache;
 import org.killbill.clock.Clock;
 import org.killbill.clock.DefaultClock;
 import org.osgi.framework.BundleContext;
@@ -43,14 +48,30 @@ public class IngenicoActivator extends KillbillActivatorBase {
     public static final String PLUGIN_NAME = "killbill-ingenico";
 
     private IngenicoConfigurationHandler ingenicoConfigurationHandler;
+    private IngenicoReconciliationPoller reconciliationPoller;
+    private IngenicoNotificationProcessor notificationProcessor;
+    private IngenicoAdditionalDataMigrator additionalDataMigrator;
+    private IngenicoDao dao;
 
     @Override
     public void start(final BundleContext context) throws Exception {
         super.start(context);
 
+        // The reconciliation poller, the webhooks processor and the database access are configured globally only
+        final IngenicoConfigProperties globalConfig = new IngenicoConfigProperties(configProperties.getProperties());
+
         final Clock clock = new DefaultClock();
-        final IngenicoDao dao = new IngenicoDao(dataSource.getDataSource());
-        ingenicoConfigurationHandler = new IngenicoConfigurationHandler(PLUGIN_NAME, killbillAPI, logService);
+        final IngenicoPaymentMethodCache paymentMethodCache = globalConfig.getPaymentMethodCacheTtl() > 0 ? new IngenicoPaymentMethodCache(globalConfig.getPaymentMethodCacheTtl(), globalConfig.getPaymentMethodCacheMaxSize()) : null;
+        dao = new IngenicoDao(dataSource.getDataSource(),
+                              globalConfig.getResponsesGroupCommitWindow(),
+                              globalConfig.getResponsesGroupCommitMaxBatchSize(),
+                              globalConfig.getResponsesGroupCommitTimeout(),
+                              globalConfig.isAdditionalDataCompact(),
+                              paymentMethodCache);
+        final IngenicoCircuitBreakers circuitBreakers = new IngenicoCircuitBreakers();
+        final IngenicoCallMetrics callMetrics = new IngenicoCallMetrics();
+        final IngenicoExceptionClassifier exceptionClassifier = new IngenicoExceptionClassifier();
+        ingenicoConfigurationHandler = new IngenicoConfigurationHandler(PLUGIN_NAME, killbillAPI, logService, circuitBreakers, callMetrics, exceptionClassifier);
 
         // Register an event listener (optional)
 //        registerEventHandlerWhenPluginStart(killbillEventHandler);
@@ -58,10 +79,25 @@ public class IngenicoActivator extends KillbillActivatorBase {
         final IngenicoClient globalIngenicoClient = ingenicoConfigurationHandler.createConfigurable(configProperties.getProperties());
         ingenicoConfigurationHandler.setDefaultConfigurable(globalIngenicoClient);
 
-        final PaymentPluginApi paymentPluginApi = new IngenicoPaymentPluginApi(ingenicoConfigurationHandler, killbillAPI, configProperties, logService, clock, dao);
+        final boolean reconciliationEnabled = globalConfig.getReconciliationInterval() > 0;
+
+        final IngenicoPaymentPluginApi paymentPluginApi = new IngenicoPaymentPluginApi(ingenicoConfigurationHandler, killbillAPI, configProperties, logService, clock, dao, !reconciliationEnabled);
         registerPaymentPluginApi(context, paymentPluginApi);
 
-        final IngenicoServlet analyticsServlet = new IngenicoServlet(logService);
+        notificationProcessor = new IngenicoNotificationProcessor(paymentPluginApi, dao, clock, globalConfig);
+        notificationProcessor.start();
+
+        if (reconciliationEnabled) {
+            reconciliationPoller = new IngenicoReconciliationPoller(paymentPluginApi, dao, clock, globalConfig);
+            reconciliationPoller.start();
+        }
+
+        if (globalConfig.isAdditionalDataCompact() && globalConfig.getAdditionalDataMigrationInterval() > 0) {
+            additionalDataMigrator = new IngenicoAdditionalDataMigrator(dao, globalConfig);
+            additionalDataMigrator.start();
+        }
+
+        final IngenicoServlet analyticsServlet = new IngenicoServlet(logService, circuitBreakers, callMetrics, exceptionClassifier, paymentMethodCache);
         registerServlet(context, analyticsServlet);
 
         registerHandlers();
@@ -74,8 +110,19 @@ public class IngenicoActivator extends KillbillActivatorBase {
 
     @Override
     public void stop(final BundleContext context) throws Exception {
+        if (notificationProcessor != null) {
+            notificationProcessor.stop();
+        }
+        if (reconciliationPoller != null) {
+            reconciliationPoller.stop();
+        }
+        if (additionalDataMigrator != null) {
+            additionalDataMigrator.stop();
+        }
+        if (dao != null) {
+            dao.close();
+        }
         super.stop(context);
-        // Do additional work on shutdown (optional)
     }
 
     private void registerServlet(final BundleContext context, final HttpServlet servlet) {
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.core;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
+import org.killbill.billing.plugin.ingenico.dao.IngenicoDao;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Re-writes the additional data of the existing responses with the compact encoding, one batch at a time, and stops
+ * once it has gone through the whole table (new responses are written with the compact encoding already).
+ * <p>
+ * The position isn't persisted: after a restart, the scan starts over, skipping the rows already encoded.
+ */
+public class IngenicoAdditionalDataMigrator {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngenicoAdditionalDataMigrator.class);
+
+    private final IngenicoDao dao;
+    private final long interval;
+    private final int batchSize;
+    private final ScheduledExecutorService scheduler;
+
+    // Only accessed by the scheduler thread
+    private long lastRecordId = 0;
+    private long encodedResponses = 0;
+
+    public IngenicoAdditionalDataMigrator(final IngenicoDao dao, final IngenicoConfigProperties config) {
+        this.dao = dao;
+        this.interval = config.getAdditionalDataMigrationInterval();
+        this.batchSize = config.getAdditionalDataMigrationBatchSize();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("ingenico-additional-data-migrator")
+                                                                                              .setDaemon(true)
+                                                                                              .build());
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+                                             @Override
+                                             public void run() {
+                                                 try {
+                                                     if (!migrateBatch()) {
+                                                         logger.info("Compact encoding of the response additional data done, {} responses re-written", encodedResponses);
+                                                         scheduler.shutdown();
+                                                     }
+                                                 } catch (final Exception e) {
+                                                     logger.warn("Compact encoding of the response additional data failed after recordId={}", lastRecordId, e);
+                                                 }
+                                             }
+                                         },
+                                         interval,
+                                         interval,
+                                         TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * @return false once there is nothing left to encode
+     */
+    boolean migrateBatch() throws SQLException {
+        final List<IngenicoResponsesRecord> batch = dao.getResponsesToEncode(lastRecordId, batchSize);
+        if (batch.isEmpty()) {
+            return false;
+        }
+
+        encodedResponses += dao.encodeAdditionalData(batch);
+        lastRecordId = batch.get(batch.size() - 1).getRecordId().longValue();
+        return batch.size() == batchSize;
+    }
+}
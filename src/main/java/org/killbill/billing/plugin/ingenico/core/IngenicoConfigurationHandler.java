@@ -6,9 +6,14 @@ import org.killbill.billing.plugin.api.notification.PluginTenantConfigurableConf
 import org.killbill.billing.plugin.ingenico.client.IngenicoClient;
 import org.killbill.billing.plugin.ingenico.client.IngenicoClientRegistry;
 import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
+import org.killbill.billing.plugin.ingenico.client.IngenicoPaymentStatusCache;
+import org.killbill.billing.plugin.ingenico.client.IngenicoWebhooksHelper;
 import org.killbill.billing.plugin.ingenico.client.payment.builder.IngenicoRequestFactory;
 import org.killbill.billing.plugin.ingenico.client.payment.converter.PaymentInfoConverterManagement;
 import org.killbill.billing.plugin.ingenico.client.payment.converter.impl.PaymentInfoConverterService;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallMetrics;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCircuitBreakers;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoExceptionClassifier;
 import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoPaymentRequestSender;
 
 import java.util.Properties;
@@ -17,8 +22,16 @@ import java.util.Properties;
  * Created by otaviosoares on 14/11/16.
  */
 public class IngenicoConfigurationHandler extends PluginTenantConfigurableConfigurationHandler<IngenicoClient> {
-    public IngenicoConfigurationHandler(String pluginName, OSGIKillbillAPI osgiKillbillAPI, OSGIKillbillLogService osgiKillbillLogService) {
+
+    private final IngenicoCircuitBreakers circuitBreakers;
+    private final IngenicoCallMetrics callMetrics;
+    private final IngenicoExceptionClassifier exceptionClassifier;
+
+    public IngenicoConfigurationHandler(String pluginName, OSGIKillbillAPI osgiKillbillAPI, OSGIKillbillLogService osgiKillbillLogService, final IngenicoCircuitBreakers circuitBreakers, final IngenicoCallMetrics callMetrics, final IngenicoExceptionClassifier exceptionClassifier) {
         super(pluginName, osgiKillbillAPI, osgiKillbillLogService);
+        this.circuitBreakers = circuitBreakers;
+        this.callMetrics = callMetrics;
+        this.exceptionClassifier = exceptionClassifier;
     }
 
     @Override
@@ -30,7 +43,9 @@ public class IngenicoConfigurationHandler extends PluginTenantConfigurableConfig
         final IngenicoRequestFactory ingenicoRequestFactory = new IngenicoRequestFactory(paymentInfoConverterManagement, ingenicoConfigProperties);
 
         final IngenicoClientRegistry ingenicoClientRegistry = new IngenicoClientRegistry(ingenicoConfigProperties);
-        final IngenicoPaymentRequestSender ingenicoPaymentRequestSender = new IngenicoPaymentRequestSender(ingenicoClientRegistry);
-        return new IngenicoClient(ingenicoRequestFactory, ingenicoPaymentRequestSender);
+        final IngenicoPaymentRequestSender ingenicoPaymentRequestSender = new IngenicoPaymentRequestSender(ingenicoClientRegistry, ingenicoConfigProperties, circuitBreakers, callMetrics, exceptionClassifier);
+        final IngenicoPaymentStatusCache paymentStatusCache = new IngenicoPaymentStatusCache(ingenicoConfigProperties.getPaymentStatusCacheTtl(), ingenicoConfigProperties.getPaymentStatusCacheTerminalTtl(), ingenicoConfigProperties.getPaymentStatusCacheMaxSize());
+        final IngenicoWebhooksHelper webhooksHelper = new IngenicoWebhooksHelper(ingenicoConfigProperties.getWebhooksKeyId(), ingenicoConfigProperties.getWebhooksSecretKey());
+        return new IngenicoClient(ingenicoRequestFactory, ingenicoPaymentRequestSender, paymentStatusCache, webhooksHelper);
     }
 }
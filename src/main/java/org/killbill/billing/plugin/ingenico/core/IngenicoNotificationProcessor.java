@@ -0,0 +1,247 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.core;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.plugin.ingenico.api.IngenicoPaymentPluginApi;
+import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
+import org.killbill.billing.plugin.ingenico.dao.IngenicoDao;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoNotificationsRecord;
+import org.killbill.clock.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Drains the webhook events queued by {@link IngenicoPaymentPluginApi#processNotification} and applies the payment
+ * status transitions they carry.
+ * <p>
+ * Each event is claimed before being processed, so that a single node applies it. Events for the same Ingenico payment
+ * (including the events of its refunds) are applied in order by the same worker: an event which can't be applied (yet)
+ * holds back the next ones. As Ingenico doesn't deliver them in order, events raised before the last one applied are
+ * dropped. Failed events
+ * are retried with an exponential backoff, up to {@code webhooks.maxAttempts} times.
+ */
+public class IngenicoNotificationProcessor {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngenicoNotificationProcessor.class);
+
+    // Events claimed longer ago than that were abandoned (e.g. node crash)
+    private static final long CLAIM_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final IngenicoPaymentPluginApi paymentPluginApi;
+    private final IngenicoDao dao;
+    private final Clock clock;
+    private final long pollInterval;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final long retryDelay;
+    private final long maxRetryDelay;
+
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+
+    public IngenicoNotificationProcessor(final IngenicoPaymentPluginApi paymentPluginApi, final IngenicoDao dao, final Clock clock, final IngenicoConfigProperties config) {
+        this.paymentPluginApi = paymentPluginApi;
+        this.dao = dao;
+        this.clock = clock;
+        this.pollInterval = config.getWebhooksPollInterval();
+        this.batchSize = config.getWebhooksBatchSize();
+        this.maxAttempts = config.getWebhooksMaxAttempts();
+        this.retryDelay = config.getWebhooksRetryDelay();
+        this.maxRetryDelay = config.getWebhooksMaxRetryDelay();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("ingenico-notifications")
+                                                                                              .setDaemon(true)
+                                                                                              .build());
+        this.workers = Executors.newFixedThreadPool(config.getWebhooksThreads(),
+                                                    new ThreadFactoryBuilder().setNameFormat("ingenico-notifications-%d")
+                                                                              .setDaemon(true)
+                                                                              .build());
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+                                             @Override
+                                             public void run() {
+                                                 try {
+                                                     processNotifications();
+                                                 } catch (final InterruptedException e) {
+                                                     Thread.currentThread().interrupt();
+                                                 } catch (final Exception e) {
+                                                     logger.warn("Processing of the Ingenico webhook events failed", e);
+                                                 }
+                                             }
+                                         },
+                                         pollInterval,
+                                         pollInterval,
+                                         TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    void processNotifications() throws SQLException, InterruptedException {
+        // Payments with an event which couldn't be applied: their next events (in the next pages) have to wait
+        final Set<String> blockedPayments = new HashSet<String>();
+
+        long lastRecordId = 0;
+        while (!Thread.currentThread().isInterrupted()) {
+            final List<IngenicoNotificationsRecord> page = dao.getNotificationsToProcess(lastRecordId, batchSize);
+
+            final Map<String, List<IngenicoNotificationsRecord>> notificationsByPayment = new LinkedHashMap<String, List<IngenicoNotificationsRecord>>();
+            for (final IngenicoNotificationsRecord notification : page) {
+                final String key = notification.getKbTenantId() + "/" + getOrderingKey(notification);
+                if (blockedPayments.contains(key)) {
+                    continue;
+                }
+                List<IngenicoNotificationsRecord> notifications = notificationsByPayment.get(key);
+                if (notifications == null) {
+                    notifications = new LinkedList<IngenicoNotificationsRecord>();
+                    notificationsByPayment.put(key, notifications);
+                }
+                notifications.add(notification);
+            }
+
+            final List<Callable<Boolean>> tasks = new LinkedList<Callable<Boolean>>();
+            for (final List<IngenicoNotificationsRecord> notifications : notificationsByPayment.values()) {
+                tasks.add(processTask(notifications));
+            }
+            final List<Future<Boolean>> results = workers.invokeAll(tasks);
+
+            final Iterator<String> keys = notificationsByPayment.keySet().iterator();
+            for (final Future<Boolean> result : results) {
+                final String key = keys.next();
+                if (!isCompleted(result)) {
+                    blockedPayments.add(key);
+                }
+            }
+
+            if (page.size() < batchSize) {
+                break;
+            }
+            lastRecordId = page.get(page.size() - 1).getRecordId().longValue();
+        }
+    }
+
+    // Refund events are keyed by the refunded payment (when known), to be ordered with the events of the payment
+    private String getOrderingKey(final IngenicoNotificationsRecord notification) {
+        if (notification.getIngenicoPaymentId() != null) {
+            return notification.getIngenicoPaymentId();
+        }
+        return notification.getIngenicoRefundId() != null ? notification.getIngenicoRefundId() : notification.getEventId();
+    }
+
+    private boolean isCompleted(final Future<Boolean> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (final ExecutionException e) {
+            logger.warn("Processing of the Ingenico webhook events failed", e.getCause());
+            return false;
+        }
+    }
+
+    /**
+     * @return true if all events were applied (or ignored), false if one of them holds back the next ones
+     */
+    private Callable<Boolean> processTask(final List<IngenicoNotificationsRecord> notifications) {
+        return new Callable<Boolean>() {
+            @Override
+            public Boolean call() throws SQLException {
+                for (final IngenicoNotificationsRecord notification : notifications) {
+                    if (!isClaimable(notification) || !dao.claimNotification(notification, clock.getUTCNow())) {
+                        // Waiting for its next attempt, or being processed by another node
+                        return false;
+                    }
+                    final String processingStatus = process(notification);
+                    if (!IngenicoDao.NOTIFICATION_PROCESSED.equals(processingStatus) && !IngenicoDao.NOTIFICATION_IGNORED.equals(processingStatus)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        };
+    }
+
+    private boolean isClaimable(final IngenicoNotificationsRecord notification) {
+        final DateTime now = clock.getUTCNow();
+        if (IngenicoDao.NOTIFICATION_PROCESSING.equals(notification.getProcessingStatus())) {
+            // Abandoned (e.g. node crash)
+            return notification.getUpdatedDate().getTime() < now.getMillis() - CLAIM_TIMEOUT_MILLIS;
+        }
+        return notification.getNextAttemptDate().getTime() <= now.getMillis();
+    }
+
+    private String process(final IngenicoNotificationsRecord notification) throws SQLException {
+        final int attempt = notification.getProcessingAttempts() + 1;
+
+        String processingStatus;
+        if ((notification.getIngenicoPaymentId() == null && notification.getIngenicoRefundId() == null) || notification.getIngenicoStatus() == null) {
+            // Not about a payment (e.g. token events)
+            processingStatus = IngenicoDao.NOTIFICATION_IGNORED;
+        } else {
+            try {
+                final boolean applied = paymentPluginApi.processPaymentStatusNotification(notification.getEventType(),
+                                                                                          notification.getIngenicoPaymentId(),
+                                                                                          notification.getIngenicoRefundId(),
+                                                                                          notification.getIngenicoStatus(),
+                                                                                          notification.getEventDate() == null ? null : new DateTime(notification.getEventDate().getTime(), DateTimeZone.UTC),
+                                                                                          UUID.fromString(notification.getKbTenantId()));
+                if (applied) {
+                    processingStatus = IngenicoDao.NOTIFICATION_PROCESSED;
+                } else {
+                    // The event may have been received before the response of the call was saved
+                    processingStatus = attempt < maxAttempts ? IngenicoDao.NOTIFICATION_NEW : IngenicoDao.NOTIFICATION_IGNORED;
+                }
+            } catch (final Exception e) {
+                logger.warn("Failed to process webhook event eventId='{}', attempt={}", notification.getEventId(), attempt, e);
+                processingStatus = attempt < maxAttempts ? IngenicoDao.NOTIFICATION_NEW : IngenicoDao.NOTIFICATION_FAILED;
+            }
+        }
+
+        final DateTime now = clock.getUTCNow();
+        dao.updateNotificationStatus(notification.getRecordId(), processingStatus, now.plus(getRetryDelay(attempt)), now);
+        return processingStatus;
+    }
+
+    // retryDelay, doubled at each further attempt
+    private long getRetryDelay(final int attempt) {
+        final int doublings = Math.min(attempt - 1, 30);
+        return Math.min(retryDelay << doublings, maxRetryDelay);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.core;
+
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.killbill.billing.payment.api.TransactionType;
+import org.killbill.billing.payment.plugin.api.PaymentTransactionInfoPlugin;
+import org.killbill.billing.plugin.ingenico.api.IngenicoPaymentPluginApi;
+import org.killbill.billing.plugin.ingenico.client.IngenicoConfigProperties;
+import org.killbill.billing.plugin.ingenico.client.model.PaymentServiceProviderResult;
+import org.killbill.billing.plugin.ingenico.dao.IngenicoDao;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
+import org.killbill.clock.Clock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.SetMultimap;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Periodically refreshes the payments still pending on the Ingenico side, so that their state gets resolved
+ * without having to wait for a read from Kill Bill.
+ * <p>
+ * The latest responses of the payments still pending are read page by page, status by status, and each payment is
+ * refreshed once per run, through
+ * {@link IngenicoPaymentPluginApi#reconcilePaymentAsync(UUID, UUID, UUID, java.util.concurrent.Executor)}: a bounded
+ * pool of workers runs the database and Kill Bill work, while the calls to Ingenico run on the async path of the
+ * client. At most {@code maxInFlight} payments are being refreshed at once, and the calls to Ingenico are rate
+ * limited per tenant.
+ */
+public class IngenicoReconciliationPoller {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngenicoReconciliationPoller.class);
+
+    private final IngenicoPaymentPluginApi paymentPluginApi;
+    private final IngenicoDao dao;
+    private final Clock clock;
+    private final long interval;
+    private final int pageSize;
+    private final long maxAge;
+    private final double rateLimit;
+    private final int maxInFlight;
+    // Refreshes started and not completed yet
+    private final Semaphore inFlightRefreshes;
+
+    private final ConcurrentMap<String, RateLimiter> rateLimiters = new ConcurrentHashMap<String, RateLimiter>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService workers;
+
+    public IngenicoReconciliationPoller(final IngenicoPaymentPluginApi paymentPluginApi, final IngenicoDao dao, final Clock clock, final IngenicoConfigProperties config) {
+        this.paymentPluginApi = paymentPluginApi;
+        this.dao = dao;
+        this.clock = clock;
+        this.interval = config.getReconciliationInterval();
+        this.pageSize = config.getReconciliationPageSize();
+        this.maxAge = config.getReconciliationMaxAge();
+        this.rateLimit = config.getReconciliationRateLimit();
+        this.maxInFlight = config.getReconciliationMaxInFlight();
+        this.inFlightRefreshes = new Semaphore(maxInFlight);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("ingenico-reconciliation")
+                                                                                              .setDaemon(true)
+                                                                                              .build());
+        this.workers = Executors.newFixedThreadPool(config.getReconciliationThreads(),
+                                                    new ThreadFactoryBuilder().setNameFormat("ingenico-reconciliation-%d")
+                                                                              .setDaemon(true)
+                                                                              .build());
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+                                             @Override
+                                             public void run() {
+                                                 try {
+                                                     reconcile();
+                                                 } catch (final InterruptedException e) {
+                                                     Thread.currentThread().interrupt();
+                                                 } catch (final Exception e) {
+                                                     logger.warn("Reconciliation of the pending Ingenico payments failed", e);
+                                                 }
+                                             }
+                                         },
+                                         interval,
+                                         interval,
+                                         TimeUnit.MILLISECONDS);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    void reconcile() throws SQLException, InterruptedException {
+        final DateTime createdAfter = clock.getUTCNow().minus(maxAge);
+        final Set<String> reconciledPayments = new HashSet<String>();
+
+        final SetMultimap<String, TransactionType> pendingTransactionTypes = PaymentServiceProviderResult.getPendingTransactionTypes();
+        for (final String ingenicoStatus : pendingTransactionTypes.keySet()) {
+            DateTime lastCreatedDate = createdAfter;
+            long lastRecordId = 0;
+            while (!Thread.currentThread().isInterrupted()) {
+                final List<IngenicoResponsesRecord> page = dao.getPendingResponses(ingenicoStatus, pendingTransactionTypes.get(ingenicoStatus), lastCreatedDate, lastRecordId, pageSize);
+
+                for (final IngenicoResponsesRecord response : page) {
+                    if (reconciledPayments.add(response.getKbTenantId() + "/" + response.getKbPaymentId())) {
+                        reconcile(response);
+                    }
+                }
+
+                if (page.size() < pageSize) {
+                    break;
+                }
+                final IngenicoResponsesRecord last = page.get(page.size() - 1);
+                lastCreatedDate = new DateTime(last.getCreatedDate(), DateTimeZone.UTC);
+                lastRecordId = last.getRecordId().longValue();
+            }
+        }
+        // Wait for the last refreshes
+        inFlightRefreshes.acquire(maxInFlight);
+        inFlightRefreshes.release(maxInFlight);
+        logger.debug("Reconciled {} pending Ingenico payments", reconciledPayments.size());
+    }
+
+    private void reconcile(final IngenicoResponsesRecord response) throws InterruptedException {
+        getRateLimiter(response.getKbTenantId()).acquire();
+        inFlightRefreshes.acquire();
+
+        final ListenableFuture<List<PaymentTransactionInfoPlugin>> refresh = paymentPluginApi.reconcilePaymentAsync(UUID.fromString(response.getKbAccountId()),
+                                                                                                                  UUID.fromString(response.getKbPaymentId()),
+                                                                                                                  UUID.fromString(response.getKbTenantId()),
+                                                                                                                  workers);
+        Futures.addCallback(refresh,
+                            new FutureCallback<List<PaymentTransactionInfoPlugin>>() {
+                                @Override
+                                public void onSuccess(final List<PaymentTransactionInfoPlugin> result) {
+                                    inFlightRefreshes.release();
+                                }
+
+                                @Override
+                                public void onFailure(final Throwable t) {
+                                    inFlightRefreshes.release();
+                                    logger.warn("Failed to reconcile kbPaymentId='{}'", response.getKbPaymentId(), t);
+                                }
+                            },
+                            MoreExecutors.directExecutor());
+    }
+
+    private RateLimiter getRateLimiter(final String kbTenantId) {
+        final RateLimiter existing = rateLimiters.get(kbTenantId);
+        if (existing != null) {
+            return existing;
+        }
+
+        final RateLimiter rateLimiter = RateLimiter.create(rateLimit);
+        final RateLimiter previous = rateLimiters.putIfAbsent(kbTenantId, rateLimiter);
+        return previous != null ? previous : rateLimiter;
+    }
+}
@@ -18,25 +18,219 @@
 package org.killbill.billing.plugin.ingenico.core;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
+import javax.annotation.Nullable;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallErrorStatus;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCallMetrics;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCircuitBreaker;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoCircuitBreakers;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoExceptionClassifier;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoExceptionClassifier.Classification;
+import org.killbill.billing.plugin.ingenico.client.payment.service.IngenicoLatencyHistogram;
+import org.killbill.billing.plugin.ingenico.dao.IngenicoPaymentMethodCache;
 import org.osgi.service.log.LogService;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.CacheStats;
+
 public class IngenicoServlet extends HttpServlet {
 
+    private static final String CIRCUIT_BREAKERS_PATH = "/circuitBreakers";
+    private static final String METRICS_PATH = "/metrics";
+    private static final String EXCEPTIONS_PATH = "/metrics/exceptions";
+    private static final String PROMETHEUS_METRICS_PATH = "/metrics/prometheus";
+    private static final String PAYMENT_METHOD_CACHE_PATH = "/metrics/paymentMethodCache";
+    private static final String PROMETHEUS_CONTENT_TYPE = "text/plain; version=0.0.4";
+    private static final String SUCCESS = "SUCCESS";
+    private static final double[] PERCENTILES = {50.0, 99.0, 99.9};
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
     private final LogService logService;
+    private final IngenicoCircuitBreakers circuitBreakers;
+    private final IngenicoCallMetrics callMetrics;
+    private final IngenicoExceptionClassifier exceptionClassifier;
+    private final IngenicoPaymentMethodCache paymentMethodCache;
 
-    public IngenicoServlet(final LogService logService) {
+    public IngenicoServlet(final LogService logService,
+                           final IngenicoCircuitBreakers circuitBreakers,
+                           final IngenicoCallMetrics callMetrics,
+                           final IngenicoExceptionClassifier exceptionClassifier,
+                           @Nullable final IngenicoPaymentMethodCache paymentMethodCache) {
         this.logService = logService;
+        this.circuitBreakers = circuitBreakers;
+        this.callMetrics = callMetrics;
+        this.exceptionClassifier = exceptionClassifier;
+        this.paymentMethodCache = paymentMethodCache;
     }
 
     @Override
     protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
-        // Find me on http://127.0.0.1:8080/plugins/ingenico-plugin
-        logService.log(LogService.LOG_INFO, "VAI CORINTHIANS");
+        // Find me on http://127.0.0.1:8080/plugins/killbill-ingenico
+        final String pathInfo = req.getPathInfo();
+        if (CIRCUIT_BREAKERS_PATH.equals(pathInfo)) {
+            writeJson(resp, getCircuitBreakersState());
+        } else if (METRICS_PATH.equals(pathInfo)) {
+            writeJson(resp, getMetrics());
+        } else if (EXCEPTIONS_PATH.equals(pathInfo)) {
+            writeJson(resp, getExceptionClassifications());
+        } else if (PAYMENT_METHOD_CACHE_PATH.equals(pathInfo)) {
+            writeJson(resp, getPaymentMethodCacheStats());
+        } else if (PROMETHEUS_METRICS_PATH.equals(pathInfo)) {
+            writePrometheusMetrics(resp);
+        } else {
+            resp.sendError(HttpServletResponse.SC_NOT_FOUND);
+        }
+    }
+
+    private List<Map<String, Object>> getCircuitBreakersState() {
+        final List<Map<String, Object>> states = new LinkedList<Map<String, Object>>();
+        for (final IngenicoCircuitBreaker circuitBreaker : circuitBreakers.getCircuitBreakers()) {
+            final Map<String, Object> state = new LinkedHashMap<String, Object>();
+            state.put("kbTenantId", circuitBreaker.getKbTenantId());
+            state.put("operation", circuitBreaker.getOperation());
+            state.put("state", circuitBreaker.getState());
+            state.put("openedAt", circuitBreaker.getOpenedAt());
+            state.put("windowCalls", circuitBreaker.getWindowCalls());
+            state.put("windowFailures", circuitBreaker.getWindowFailures());
+            state.put("rejectedCalls", circuitBreaker.getRejectedCalls());
+            states.add(state);
+        }
+        return states;
+    }
+
+    private List<Map<String, Object>> getMetrics() {
+        final List<Map<String, Object>> metrics = new LinkedList<Map<String, Object>>();
+        for (final IngenicoLatencyHistogram histogram : callMetrics.getHistograms()) {
+            final Map<String, Object> metric = new LinkedHashMap<String, Object>();
+            metric.put("kbTenantId", histogram.getKbTenantId());
+            metric.put("operation", histogram.getOperation());
+            metric.put("count", histogram.getCount());
+            metric.put("p50", histogram.getPercentile(50.0));
+            metric.put("p99", histogram.getPercentile(99.0));
+            metric.put("p999", histogram.getPercentile(99.9));
+            metric.put("max", histogram.getMax());
+
+            final Map<String, Long> statuses = new LinkedHashMap<String, Long>();
+            statuses.put(SUCCESS, histogram.getSuccesses());
+            for (final IngenicoCallErrorStatus errorStatus : IngenicoCallErrorStatus.values()) {
+                statuses.put(errorStatus.name(), histogram.getErrors(errorStatus));
+            }
+            metric.put("statuses", statuses);
+            metrics.add(metric);
+        }
+        return metrics;
+    }
+
+    private List<Map<String, Object>> getExceptionClassifications() {
+        final List<Map<String, Object>> classifications = new LinkedList<Map<String, Object>>();
+        for (final Classification classification : exceptionClassifier.getClassifications()) {
+            final Map<String, Object> entry = new LinkedHashMap<String, Object>();
+            entry.put("exceptionClass", classification.getExceptionClass());
+            entry.put("errorStatus", classification.getErrorStatus());
+            entry.put("count", classification.getCount());
+            classifications.add(entry);
+        }
+        return classifications;
+    }
+
+    private List<Map<String, Object>> getPaymentMethodCacheStats() {
+        final List<Map<String, Object>> metrics = new LinkedList<Map<String, Object>>();
+        if (paymentMethodCache == null) {
+            return metrics;
+        }
+        for (final Map.Entry<String, CacheStats> entry : paymentMethodCache.getStats().entrySet()) {
+            final Map<String, Object> metric = new LinkedHashMap<String, Object>();
+            metric.put("kbTenantId", entry.getKey());
+            metric.put("hits", entry.getValue().hitCount());
+            metric.put("misses", entry.getValue().missCount());
+            metric.put("evictions", entry.getValue().evictionCount());
+            metrics.add(metric);
+        }
+        return metrics;
+    }
+
+    private void writePrometheusMetrics(final HttpServletResponse resp) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType(PROMETHEUS_CONTENT_TYPE);
+        resp.setCharacterEncoding("UTF-8");
+
+        final PrintWriter writer = resp.getWriter();
+        // The histograms of all tenants together get their own family: summing the per-tenant series would count each call twice
+        writer.println("# HELP ingenico_request_duration_seconds Latency of the calls to Ingenico, per tenant");
+        writer.println("# TYPE ingenico_request_duration_seconds summary");
+        for (final IngenicoLatencyHistogram histogram : callMetrics.getHistograms()) {
+            if (!IngenicoCallMetrics.ALL_TENANTS.equals(histogram.getKbTenantId())) {
+                writeLatencies(writer, "ingenico_request_duration_seconds", "tenant=\"" + histogram.getKbTenantId() + "\",operation=\"" + histogram.getOperation() + "\"", histogram);
+            }
+        }
+
+        writer.println("# HELP ingenico_request_duration_all_tenants_seconds Latency of the calls to Ingenico, all tenants together");
+        writer.println("# TYPE ingenico_request_duration_all_tenants_seconds summary");
+        for (final IngenicoLatencyHistogram histogram : callMetrics.getHistograms()) {
+            if (IngenicoCallMetrics.ALL_TENANTS.equals(histogram.getKbTenantId())) {
+                writeLatencies(writer, "ingenico_request_duration_all_tenants_seconds", "operation=\"" + histogram.getOperation() + "\"", histogram);
+            }
+        }
+
+        // Counters add up across tenants: no separate family needed
+        writer.println("# HELP ingenico_requests_total Calls to Ingenico, by outcome");
+        writer.println("# TYPE ingenico_requests_total counter");
+        for (final IngenicoLatencyHistogram histogram : callMetrics.getHistograms()) {
+            if (IngenicoCallMetrics.ALL_TENANTS.equals(histogram.getKbTenantId())) {
+                continue;
+            }
+            final String labels = "tenant=\"" + histogram.getKbTenantId() + "\",operation=\"" + histogram.getOperation() + "\"";
+            writer.println("ingenico_requests_total{" + labels + ",status=\"" + SUCCESS + "\"} " + histogram.getSuccesses());
+            for (final IngenicoCallErrorStatus errorStatus : IngenicoCallErrorStatus.values()) {
+                writer.println("ingenico_requests_total{" + labels + ",status=\"" + errorStatus.name() + "\"} " + histogram.getErrors(errorStatus));
+            }
+        }
+
+        writer.println("# HELP ingenico_exceptions_total Failed calls to Ingenico, by root cause and classification");
+        writer.println("# TYPE ingenico_exceptions_total counter");
+        for (final Classification classification : exceptionClassifier.getClassifications()) {
+            writer.println("ingenico_exceptions_total{exception=\"" + classification.getExceptionClass() + "\",status=\"" + classification.getErrorStatus() + "\"} " + classification.getCount());
+        }
+
+        if (paymentMethodCache != null) {
+            writer.println("# HELP ingenico_payment_method_cache_requests_total Lookups of payment methods in the cache, by result");
+            writer.println("# TYPE ingenico_payment_method_cache_requests_total counter");
+            for (final Map.Entry<String, CacheStats> entry : paymentMethodCache.getStats().entrySet()) {
+                final String labels = "tenant=\"" + entry.getKey() + "\"";
+                writer.println("ingenico_payment_method_cache_requests_total{" + labels + ",result=\"hit\"} " + entry.getValue().hitCount());
+                writer.println("ingenico_payment_method_cache_requests_total{" + labels + ",result=\"miss\"} " + entry.getValue().missCount());
+            }
+        }
+        writer.flush();
+    }
+
+    private static void writeLatencies(final PrintWriter writer, final String name, final String labels, final IngenicoLatencyHistogram histogram) {
+        for (final double percentile : PERCENTILES) {
+            writer.println(name + "{" + labels + ",quantile=\"" + percentile / 100.0 + "\"} " + toSeconds(histogram.getPercentile(percentile)));
+        }
+        writer.println(name + "_sum{" + labels + "} " + toSeconds(histogram.getSum()));
+        writer.println(name + "_count{" + labels + "} " + histogram.getCount());
+    }
+
+    private static double toSeconds(final long millis) {
+        return millis / 1000.0;
+    }
+
+    private void writeJson(final HttpServletResponse resp, final Object value) throws IOException {
+        resp.setStatus(HttpServletResponse.SC_OK);
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(resp.getOutputStream(), value);
     }
 }
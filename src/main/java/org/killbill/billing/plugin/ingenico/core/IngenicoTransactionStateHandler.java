@@ -48,6 +48,8 @@ import org.killbill.clock.Clock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
@@ -77,7 +79,29 @@ public class IngenicoTransactionStateHandler {
         this.clock = clock;
     }
 
-    public void updatePaymentInfo(final UUID kbAccountId, final UUID kbPaymentId, final List<PaymentTransactionInfoPlugin> paymentTransactions, TransactionType transactionType, final IngenicoResponsesRecord ingenicoResponseRecord, final PaymentModificationResponse response, final TenantContext tenantContext) throws SQLException {
+    /**
+     * The account and the payment are only fetched from Kill Bill once the new plugin status calls for a transition:
+     * most refreshes find a payment still pending, or already known in that state. The response is updated whenever
+     * Ingenico reported a new status, transition or not, so that it isn't refreshed again for nothing.
+     *
+     * @return true if the response or the transaction state changed, false if there is nothing new
+     */
+    public boolean updatePaymentInfo(final UUID kbAccountId, final UUID kbPaymentId, final List<PaymentTransactionInfoPlugin> paymentTransactions, TransactionType transactionType, final IngenicoResponsesRecord ingenicoResponseRecord, final PaymentModificationResponse response, final TenantContext tenantContext) throws SQLException {
+        final boolean transitioned = transitionPaymentTransaction(kbAccountId, kbPaymentId, paymentTransactions, transactionType, ingenicoResponseRecord, response, tenantContext);
+        final boolean statusChanged = response.getStatus() != null && !response.getStatus().equals(ingenicoResponseRecord.getIngenicoStatus());
+        if (!transitioned && !statusChanged) {
+            return false;
+        }
+
+        Iterable<PluginProperty> additionalData = PluginProperties.buildPluginProperties(response.getAdditionalData());
+        dao.updateResponse(ingenicoResponseRecord, response.getStatus(), response.getResultOrNull(), additionalData);
+        return true;
+    }
+
+    /**
+     * @return true if the transaction state was changed in Kill Bill
+     */
+    private boolean transitionPaymentTransaction(final UUID kbAccountId, final UUID kbPaymentId, final List<PaymentTransactionInfoPlugin> paymentTransactions, TransactionType transactionType, final IngenicoResponsesRecord ingenicoResponseRecord, final PaymentModificationResponse response, final TenantContext tenantContext) {
         UUID kbTransactionId = UUID.fromString(ingenicoResponseRecord.getKbPaymentTransactionId());
         final DateTime utcNow = clock.getUTCNow();
         final TransactionType expectedTransactionType = EVENT_CODES_TO_TRANSACTION_TYPE.get(ingenicoResponseRecord.getIngenicoStatus());
@@ -88,29 +112,42 @@ public class IngenicoTransactionStateHandler {
         IngenicoPaymentTransactionInfoPlugin paymentTransactionInfoPlugin = new IngenicoPaymentTransactionInfoPlugin(kbPaymentId, kbTransactionId, transactionType, amount, currency, response.getResult() , utcNow, response);
         final PaymentPluginStatus paymentPluginStatus = paymentTransactionInfoPlugin.getStatus();
 
-        Account account = getAccount(kbAccountId, tenantContext);
+        if (PaymentPluginStatus.UNDEFINED.equals(paymentPluginStatus) || PaymentPluginStatus.PENDING.equals(paymentPluginStatus)) {
+            // Nothing to transition to (yet)
+            return false;
+        }
+        if (expectedTransactionType != TransactionType.CHARGEBACK) {
+            final PaymentTransactionInfoPlugin knownTransaction = filterTransactions(paymentTransactions, kbTransactionId);
+            if (knownTransaction != null && paymentPluginStatus.equals(knownTransaction.getStatus())) {
+                // Kill Bill was already told about that status
+                return false;
+            }
+        }
+
+        final Supplier<Account> account = Suppliers.memoize(new Supplier<Account>() {
+            @Override
+            public Account get() {
+                return getAccount(kbAccountId, tenantContext);
+            }
+        });
         Payment payment = getPayment(kbPaymentId, context);
         PaymentTransaction paymentTransaction = filterForTransaction(payment, kbTransactionId);
 
-        if (PaymentPluginStatus.UNDEFINED.equals(paymentPluginStatus)) {
-            return;
-        } else if (paymentTransaction != null && TransactionStatus.PENDING.equals(paymentTransaction.getTransactionStatus()) && !PaymentPluginStatus.PENDING.equals(paymentPluginStatus)) {
-            transitionPendingTransaction(account, kbTransactionId, paymentPluginStatus, context);
-        } else if (paymentTransaction != null && paymentTransactionInfoPlugin.getStatus() != paymentPluginStatus) {
+        if (paymentTransaction != null && TransactionStatus.PENDING.equals(paymentTransaction.getTransactionStatus())) {
+            transitionPendingTransaction(account.get(), kbTransactionId, paymentPluginStatus, context);
+        } else if (paymentTransaction != null && toTransactionStatus(paymentPluginStatus) != paymentTransaction.getTransactionStatus()) {
             fixPaymentTransactionState(payment, paymentTransaction, paymentPluginStatus, ingenicoResponseRecord, context);
         } else if (paymentTransaction == null && expectedTransactionType == TransactionType.CHARGEBACK && PaymentPluginStatus.PROCESSED.equals(paymentPluginStatus)) {
-            createChargeback(account, kbPaymentId, paymentTransactionInfoPlugin, context);
+            createChargeback(account.get(), kbPaymentId, paymentTransactionInfoPlugin, context);
         } else if (paymentTransaction == null && expectedTransactionType == TransactionType.CHARGEBACK && PaymentPluginStatus.ERROR.equals(paymentPluginStatus)) {
             // There should only be one chargeback in Kill Bill, see https://github.com/killbill/killbill/issues/477
             final PaymentTransactionInfoPlugin chargeback = filterTransactions(paymentTransactions, TransactionType.CHARGEBACK);
-            createChargebackReversal(account, kbPaymentId, chargeback, context);
+            createChargebackReversal(account.get(), kbPaymentId, chargeback, context);
         }
         else {
-            return;
+            return false;
         }
-
-        Iterable<PluginProperty> additionalData = PluginProperties.buildPluginProperties(response.getAdditionalData());
-        dao.updateResponse(kbTransactionId, response.getStatus(), response.getResultOrNull(), additionalData, tenantContext.getTenantId());
+        return true;
     }
 
     private void createChargeback(final Account account, final UUID kbPaymentId, final PaymentTransactionInfoPlugin transaction, final CallContext context) {
@@ -158,24 +195,7 @@ public class IngenicoTransactionStateHandler {
 
         final String currentPaymentStateName = String.format("%s_%s", updatedPaymentTransaction.getTransactionType() == TransactionType.AUTHORIZE ? "AUTH" : updatedPaymentTransaction.getTransactionType(), paymentPluginStatus == PaymentPluginStatus.PROCESSED ? "SUCCESS" : "FAILED");
 
-        final TransactionStatus transactionStatus;
-        switch (paymentPluginStatus) {
-            case PROCESSED:
-                transactionStatus = TransactionStatus.SUCCESS;
-                break;
-            case PENDING:
-                transactionStatus = TransactionStatus.PENDING;
-                break;
-            case ERROR:
-                transactionStatus = TransactionStatus.PAYMENT_FAILURE;
-                break;
-            case CANCELED:
-                transactionStatus = TransactionStatus.PLUGIN_FAILURE;
-                break;
-            default:
-                transactionStatus = TransactionStatus.UNKNOWN;
-                break;
-        }
+        final TransactionStatus transactionStatus = toTransactionStatus(paymentPluginStatus);
         logger.warn("Forcing transition paymentTransactionExternalKey='{}', oldPaymentPluginStatus='{}', newPaymentPluginStatus='{}'", updatedPaymentTransaction.getExternalKey(), updatedPaymentTransaction.getPaymentInfoPlugin().getStatus(), paymentPluginStatus);
 
         try {
@@ -186,6 +206,21 @@ public class IngenicoTransactionStateHandler {
         }
     }
 
+    private static TransactionStatus toTransactionStatus(final PaymentPluginStatus paymentPluginStatus) {
+        switch (paymentPluginStatus) {
+            case PROCESSED:
+                return TransactionStatus.SUCCESS;
+            case PENDING:
+                return TransactionStatus.PENDING;
+            case ERROR:
+                return TransactionStatus.PAYMENT_FAILURE;
+            case CANCELED:
+                return TransactionStatus.PLUGIN_FAILURE;
+            default:
+                return TransactionStatus.UNKNOWN;
+        }
+    }
+
     private void transitionPendingTransaction(final Account account, final UUID kbTransactionId, final PaymentPluginStatus paymentPluginStatus, final CallContext context) {
         try {
             final Payment payment = killbillAPI.getPaymentApi().notifyPendingTransactionOfStateChanged(account, kbTransactionId, paymentPluginStatus == PaymentPluginStatus.PROCESSED, context);
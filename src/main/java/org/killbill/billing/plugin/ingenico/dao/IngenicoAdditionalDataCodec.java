@@ -0,0 +1,124 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Compact encoding of the additional_data column: the JSON is deflated against a dictionary of the keys and values
+ * the plugin usually stores, and Base64-encoded since the column is text.
+ * <p>
+ * Encoded values start with {@link #MARKER} followed by the dictionary version. JSON objects start with '{', so rows
+ * written before the encoding was enabled are still read as plain JSON.
+ */
+final class IngenicoAdditionalDataCodec {
+
+    static final char MARKER = '~';
+
+    // Rows can only be inflated with the dictionary they were deflated with: add a new version instead of changing it
+    private static final char DICTIONARY_VERSION = '1';
+    private static final byte[] DICTIONARY = ("java.net.SocketTimeoutException\",\"java.net.ConnectException\",\"Read timed out\"," +
+                                              "\"exceptionClass\":\"\"exceptionMessage\":\"\"ingenicoCallErrorStatus\":null," +
+                                              "\"RESPONSE_NOT_RECEIVED\"\"REQUEST_NOT_SEND\"\"RESPONSE_INVALID\"\"UNKNOWN_FAILURE\"" +
+                                              "\"PENDING_APPROVAL\"\"CAPTURE_REQUESTED\"\"REDIRECTED\"\"PENDING_PAYMENT\"\"REJECTED\"\"CAPTURED\"\"PAID\"" +
+                                              "{\"paymentTransactionExternalKey\":\"").getBytes(Charsets.UTF_8);
+
+    private static final BaseEncoding BASE64 = BaseEncoding.base64();
+
+    private IngenicoAdditionalDataCodec() {
+    }
+
+    static boolean isEncoded(@Nullable final String storedAdditionalData) {
+        return storedAdditionalData != null && storedAdditionalData.length() > 1 && storedAdditionalData.charAt(0) == MARKER;
+    }
+
+    /**
+     * @param json additional data, as JSON
+     * @return the encoded additional data, or the JSON itself if encoding it doesn't save any space
+     */
+    static String encode(final String json) {
+        final byte[] input = json.getBytes(Charsets.UTF_8);
+
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        final byte[] deflated;
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(input);
+            deflater.finish();
+            deflated = drain(deflater, input.length);
+        } finally {
+            deflater.end();
+        }
+
+        final String encoded = MARKER + String.valueOf(DICTIONARY_VERSION) + BASE64.encode(deflated);
+        return encoded.length() < json.length() ? encoded : json;
+    }
+
+    /**
+     * @param encoded additional data, as returned by {@link #encode(String)}
+     * @return the JSON, as UTF-8 bytes
+     * @throws IllegalArgumentException if the value is corrupted or was encoded with an unknown dictionary
+     */
+    static byte[] decode(final String encoded) {
+        if (encoded.charAt(1) != DICTIONARY_VERSION) {
+            throw new IllegalArgumentException("Unsupported additional data encoding version " + encoded.charAt(1));
+        }
+        final byte[] input = BASE64.decode(encoded.substring(2));
+
+        final Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input);
+            final ByteArrayOutputStream output = new ByteArrayOutputStream(input.length * 4);
+            final byte[] buffer = new byte[1024];
+            while (!inflater.finished()) {
+                final int inflated = inflater.inflate(buffer);
+                if (inflated == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new IllegalArgumentException("Truncated additional data");
+                    }
+                }
+                output.write(buffer, 0, inflated);
+            }
+            return output.toByteArray();
+        } catch (final DataFormatException e) {
+            throw new IllegalArgumentException("Corrupted additional data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] drain(final Deflater deflater, final int sizeHint) {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream(sizeHint);
+        final byte[] buffer = new byte[1024];
+        while (!deflater.finished()) {
+            final int deflated = deflater.deflate(buffer);
+            output.write(buffer, 0, deflated);
+        }
+        return output.toByteArray();
+    }
+}
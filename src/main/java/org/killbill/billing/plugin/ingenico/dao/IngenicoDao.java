@@ -4,7 +4,11 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -12,8 +16,14 @@ import javax.annotation.Nullable;
 import javax.sql.DataSource;
 
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.jooq.BatchBindStep;
+import org.jooq.DSLContext;
+import org.jooq.InsertValuesStep20;
 import org.jooq.UpdateSetMoreStep;
+import org.jooq.exception.DataAccessException;
 import org.jooq.impl.DSL;
+import org.jooq.types.UInteger;
 import org.killbill.billing.catalog.api.Currency;
 import org.killbill.billing.payment.api.PluginProperty;
 import org.killbill.billing.payment.api.TransactionType;
@@ -24,16 +34,19 @@ import org.killbill.billing.plugin.ingenico.client.model.PaymentServiceProviderR
 import org.killbill.billing.plugin.ingenico.client.model.PurchaseResult;
 import org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods;
 import org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses;
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoNotificationsRecord;
 import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord;
 import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import static org.killbill.billing.plugin.ingenico.client.model.PurchaseResult.EXCEPTION_CLASS;
 import static org.killbill.billing.plugin.ingenico.client.model.PurchaseResult.EXCEPTION_MESSAGE;
 import static org.killbill.billing.plugin.ingenico.client.model.PurchaseResult.INGENICO_CALL_ERROR_STATUS;
+import static org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS;
 import static org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods.INGENICO_PAYMENT_METHODS;
 import static org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES;
 
@@ -41,15 +54,98 @@ import static org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoRespon
  * Created by otaviosoares on 14/11/16.
  */
 public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, IngenicoResponses, IngenicoPaymentMethodsRecord, IngenicoPaymentMethods> {
+
+    // Processing statuses of the ingenico_notifications queue
+    public static final String NOTIFICATION_NEW = "NEW";
+    public static final String NOTIFICATION_PROCESSING = "PROCESSING";
+    public static final String NOTIFICATION_PROCESSED = "PROCESSED";
+    public static final String NOTIFICATION_IGNORED = "IGNORED";
+    public static final String NOTIFICATION_FAILED = "FAILED";
+
     private static final ObjectMapper objectMapper = new ObjectMapper();
     private static final Joiner JOINER = Joiner.on(",");
 
+    private final IngenicoResponseWriter responseWriter;
+    private final boolean encodeAdditionalData;
+    private final IngenicoPaymentMethodCache paymentMethodCache;
+
     public IngenicoDao(final DataSource dataSource) throws SQLException {
+        this(dataSource, 0, 0, 0, false, null);
+    }
+
+    /**
+     * @param groupCommitWindowMillis  how long response inserts are collected before being written together, 0 to write each one right away
+     * @param groupCommitMaxBatchSize  maximum number of responses written together
+     * @param groupCommitTimeoutMillis how long a caller waits for its response to be written together, before writing it itself
+     * @param encodeAdditionalData     whether to write the additional data of the responses with the compact encoding (it is always readable)
+     * @param paymentMethodCache       cache of the payment method rows, null to always read them from the database
+     */
+    public IngenicoDao(final DataSource dataSource,
+                       final long groupCommitWindowMillis,
+                       final int groupCommitMaxBatchSize,
+                       final long groupCommitTimeoutMillis,
+                       final boolean encodeAdditionalData,
+                       @Nullable final IngenicoPaymentMethodCache paymentMethodCache) throws SQLException {
         super(INGENICO_RESPONSES, INGENICO_PAYMENT_METHODS, dataSource);
+        this.encodeAdditionalData = encodeAdditionalData;
+        this.paymentMethodCache = paymentMethodCache;
+        if (groupCommitWindowMillis > 0) {
+            this.responseWriter = new IngenicoResponseWriter(this, groupCommitWindowMillis, groupCommitMaxBatchSize, groupCommitTimeoutMillis);
+            this.responseWriter.start();
+        } else {
+            this.responseWriter = null;
+        }
     }
 
     // Payment methods
 
+    @Override
+    public IngenicoPaymentMethodsRecord getPaymentMethod(final UUID kbPaymentMethodId, final UUID kbTenantId) throws SQLException {
+        if (paymentMethodCache == null) {
+            return super.getPaymentMethod(kbPaymentMethodId, kbTenantId);
+        }
+
+        final IngenicoPaymentMethodsRecord cachedPaymentMethod = paymentMethodCache.getPaymentMethod(kbTenantId, kbPaymentMethodId);
+        if (cachedPaymentMethod != null) {
+            return cachedPaymentMethod;
+        }
+
+        final IngenicoPaymentMethodsRecord paymentMethod = super.getPaymentMethod(kbPaymentMethodId, kbTenantId);
+        if (paymentMethod != null) {
+            paymentMethodCache.putPaymentMethod(kbTenantId, paymentMethod);
+        }
+        return paymentMethod;
+    }
+
+    @Override
+    public void addPaymentMethod(final UUID kbAccountId, final UUID kbPaymentMethodId, final boolean isDefault, final Map<String, String> additionalDataMap, final DateTime utcNow, final UUID kbTenantId) throws SQLException {
+        super.addPaymentMethod(kbAccountId, kbPaymentMethodId, isDefault, additionalDataMap, utcNow, kbTenantId);
+        if (paymentMethodCache != null) {
+            // The other payment methods of the account may not be the default one anymore
+            if (isDefault) {
+                paymentMethodCache.invalidateAll(kbTenantId);
+            } else {
+                paymentMethodCache.invalidate(kbTenantId, kbPaymentMethodId.toString());
+            }
+        }
+    }
+
+    @Override
+    public void deletePaymentMethod(final UUID kbPaymentMethodId, final DateTime utcNow, final UUID kbTenantId) throws SQLException {
+        super.deletePaymentMethod(kbPaymentMethodId, utcNow, kbTenantId);
+        if (paymentMethodCache != null) {
+            paymentMethodCache.invalidate(kbTenantId, kbPaymentMethodId.toString());
+        }
+    }
+
+    @Override
+    public void setDefaultPaymentMethod(final UUID kbPaymentMethodId, final DateTime utcNow, final UUID kbTenantId) throws SQLException {
+        super.setDefaultPaymentMethod(kbPaymentMethodId, utcNow, kbTenantId);
+        if (paymentMethodCache != null) {
+            paymentMethodCache.invalidateAll(kbTenantId);
+        }
+    }
+
     public void setPaymentMethodToken(final String kbPaymentMethodId, final String token, final String kbTenantId) throws SQLException {
         execute(dataSource.getConnection(),
                 new WithConnectionCallback<IngenicoResponsesRecord>() {
@@ -65,6 +161,9 @@ public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, Ingen
                         return null;
                     }
                 });
+        if (paymentMethodCache != null) {
+            paymentMethodCache.invalidate(UUID.fromString(kbTenantId), kbPaymentMethodId);
+        }
     }
 
     public IngenicoResponsesRecord getResponse(final UUID kbPaymentId, final UUID kbTenantId) throws SQLException {
@@ -83,6 +182,352 @@ public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, Ingen
                        });
     }
 
+    /**
+     * Page through the latest responses of the payments still pending in a given Ingenico status, oldest first.
+     * Responses superseded by a later one of the same payment, and responses whose transaction type isn't pending in
+     * that status (e.g. an authorization in PENDING_APPROVAL), are skipped. Served by the ingenico_responses_ingenico_status
+     * index, in its order: only the responses of the window in that status are read, and no sort is needed.
+     *
+     * @param ingenicoStatus   the pending Ingenico status
+     * @param transactionTypes the transaction types still pending in that status
+     * @param afterCreatedDate created date of the last response of the previous page, start of the window for the first page
+     * @param afterRecordId    record id of the last response of the previous page, 0 for the first page
+     * @param limit            page size
+     * @return the responses, across all tenants
+     * @throws SQLException For any unexpected SQL error
+     */
+    public List<IngenicoResponsesRecord> getPendingResponses(final String ingenicoStatus, final Collection<TransactionType> transactionTypes, final DateTime afterCreatedDate, final long afterRecordId, final int limit) throws SQLException {
+        final List<String> transactionTypeNames = new LinkedList<String>();
+        for (final TransactionType transactionType : transactionTypes) {
+            transactionTypeNames.add(transactionType.toString());
+        }
+        final IngenicoResponses laterResponses = new IngenicoResponses("later_responses");
+
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<List<IngenicoResponsesRecord>>() {
+                           @Override
+                           public List<IngenicoResponsesRecord> withConnection(final Connection conn) throws SQLException {
+                               final Timestamp afterCreatedTimestamp = toTimestamp(afterCreatedDate);
+                               return DSL.using(conn, dialect, settings)
+                                         .selectFrom(INGENICO_RESPONSES)
+                                         .where(INGENICO_RESPONSES.INGENICO_STATUS.equal(ingenicoStatus))
+                                         .and(INGENICO_RESPONSES.CREATED_DATE.greaterThan(afterCreatedTimestamp)
+                                                                             .or(INGENICO_RESPONSES.CREATED_DATE.equal(afterCreatedTimestamp)
+                                                                                                                .and(INGENICO_RESPONSES.RECORD_ID.greaterThan(UInteger.valueOf(afterRecordId)))))
+                                         .and(INGENICO_RESPONSES.TRANSACTION_TYPE.in(transactionTypeNames))
+                                         .and(INGENICO_RESPONSES.INGENICO_PAYMENT_ID.isNotNull())
+                                         .andNotExists(DSL.selectOne()
+                                                          .from(laterResponses)
+                                                          .where(laterResponses.KB_PAYMENT_ID.equal(INGENICO_RESPONSES.KB_PAYMENT_ID))
+                                                          .and(laterResponses.KB_TENANT_ID.equal(INGENICO_RESPONSES.KB_TENANT_ID))
+                                                          .and(laterResponses.RECORD_ID.greaterThan(INGENICO_RESPONSES.RECORD_ID)))
+                                         .orderBy(INGENICO_RESPONSES.CREATED_DATE.asc(), INGENICO_RESPONSES.RECORD_ID.asc())
+                                         .limit(limit)
+                                         .fetch();
+                           }
+                       });
+    }
+
+    /**
+     * Get a page of the responses whose additional data isn't stored with the compact encoding yet, in record id order.
+     * Only the record id, version and additional data are loaded.
+     *
+     * @param afterRecordId last record id of the previous page, 0 for the first page
+     * @param limit         page size
+     * @return the responses, across all tenants
+     * @throws SQLException For any unexpected SQL error
+     */
+    public List<IngenicoResponsesRecord> getResponsesToEncode(final long afterRecordId, final int limit) throws SQLException {
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<List<IngenicoResponsesRecord>>() {
+                           @Override
+                           public List<IngenicoResponsesRecord> withConnection(final Connection conn) throws SQLException {
+                               return DSL.using(conn, dialect, settings)
+                                         .select(INGENICO_RESPONSES.RECORD_ID, INGENICO_RESPONSES.VERSION, INGENICO_RESPONSES.ADDITIONAL_DATA)
+                                         .from(INGENICO_RESPONSES)
+                                         .where(INGENICO_RESPONSES.RECORD_ID.greaterThan(UInteger.valueOf(afterRecordId)))
+                                         .and(INGENICO_RESPONSES.ADDITIONAL_DATA.isNotNull())
+                                         .and(INGENICO_RESPONSES.ADDITIONAL_DATA.notLike(IngenicoAdditionalDataCodec.MARKER + "%"))
+                                         .orderBy(INGENICO_RESPONSES.RECORD_ID.asc())
+                                         .limit(limit)
+                                         .fetch()
+                                         .into(INGENICO_RESPONSES);
+                           }
+                       });
+    }
+
+    /**
+     * Re-write the additional data of responses with the compact encoding, in a single batch. Rows updated since
+     * they were read are skipped (the update wrote them with the compact encoding already).
+     *
+     * @param responses responses, as returned by {@link #getResponsesToEncode(long, int)}
+     * @return the number of responses re-written
+     * @throws SQLException For any unexpected SQL error
+     */
+    public int encodeAdditionalData(final List<IngenicoResponsesRecord> responses) throws SQLException {
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<Integer>() {
+                           @Override
+                           public Integer withConnection(final Connection conn) throws SQLException {
+                               final DSLContext context = DSL.using(conn, dialect, settings);
+                               // The version is left alone: the content is the same, concurrent merges don't need to be retried
+                               final BatchBindStep batch = context.batch(context.update(INGENICO_RESPONSES)
+                                                                                .set(INGENICO_RESPONSES.ADDITIONAL_DATA, (String) null)
+                                                                                .where(INGENICO_RESPONSES.RECORD_ID.equal((UInteger) null))
+                                                                                .and(INGENICO_RESPONSES.VERSION.equal((Integer) null)));
+                               int toEncode = 0;
+                               for (final IngenicoResponsesRecord response : responses) {
+                                   final String encoded = IngenicoAdditionalDataCodec.encode(response.getAdditionalData());
+                                   // Not worth it for the smallest rows
+                                   if (!encoded.equals(response.getAdditionalData())) {
+                                       batch.bind(encoded, response.getRecordId(), response.getVersion());
+                                       toEncode++;
+                                   }
+                               }
+                               if (toEncode == 0) {
+                                   return 0;
+                               }
+
+                               int encoded = 0;
+                               for (final int updated : batch.execute()) {
+                                   encoded += updated;
+                               }
+                               return encoded;
+                           }
+                       });
+    }
+
+    /**
+     * Get the latest response for an Ingenico payment (or refund, payout) id.
+     *
+     * @param ingenicoPaymentId Ingenico id
+     * @param kbTenantId        Kill Bill tenant id
+     * @return the latest response, null if one couldn't be found
+     * @throws SQLException For any unexpected SQL error
+     */
+    public IngenicoResponsesRecord getResponseByIngenicoPaymentId(final String ingenicoPaymentId, final UUID kbTenantId) throws SQLException {
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<IngenicoResponsesRecord>() {
+                           @Override
+                           public IngenicoResponsesRecord withConnection(final Connection conn) throws SQLException {
+                               return DSL.using(conn, dialect, settings)
+                                         .selectFrom(INGENICO_RESPONSES)
+                                         .where(INGENICO_RESPONSES.INGENICO_PAYMENT_ID.equal(ingenicoPaymentId))
+                                         .and(INGENICO_RESPONSES.KB_TENANT_ID.equal(kbTenantId.toString()))
+                                         .orderBy(INGENICO_RESPONSES.RECORD_ID.desc())
+                                         .limit(1)
+                                         .fetchOne();
+                           }
+                       });
+    }
+
+    public IngenicoResponsesRecord getResponseByIngenicoRefundId(final String ingenicoRefundId, final UUID kbTenantId) throws SQLException {
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<IngenicoResponsesRecord>() {
+                           @Override
+                           public IngenicoResponsesRecord withConnection(final Connection conn) throws SQLException {
+                               return DSL.using(conn, dialect, settings)
+                                         .selectFrom(INGENICO_RESPONSES)
+                                         .where(INGENICO_RESPONSES.INGENICO_PAYMENT_REFERENCE.equal(ingenicoRefundId))
+                                         .and(INGENICO_RESPONSES.KB_TENANT_ID.equal(kbTenantId.toString()))
+                                         .and(INGENICO_RESPONSES.TRANSACTION_TYPE.equal(TransactionType.REFUND.toString()))
+                                         .orderBy(INGENICO_RESPONSES.RECORD_ID.desc())
+                                         .limit(1)
+                                         .fetchOne();
+                           }
+                       });
+    }
+
+    /**
+     * Enqueue a webhook event, unless it was already received.
+     *
+     * @param ingenicoPaymentId Ingenico id of the payment (for refund events, of the refunded payment, if known)
+     * @param ingenicoRefundId  Ingenico id of the refund, for refund events
+     * @param eventDate         when Ingenico raised the event
+     * @return false if the event is a duplicate
+     * @throws SQLException For any unexpected SQL error
+     */
+    public boolean addNotification(final String eventId,
+                                   final String eventType,
+                                   @Nullable final String ingenicoPaymentId,
+                                   @Nullable final String ingenicoRefundId,
+                                   @Nullable final String ingenicoStatus,
+                                   @Nullable final DateTime eventDate,
+                                   final String payload,
+                                   final DateTime utcNow,
+                                   final UUID kbTenantId) throws SQLException {
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<Boolean>() {
+                           @Override
+                           public Boolean withConnection(final Connection conn) throws SQLException {
+                               if (hasNotification(conn, eventId, kbTenantId)) {
+                                   return false;
+                               }
+
+                               try {
+                                   DSL.using(conn, dialect, settings)
+                                      .insertInto(INGENICO_NOTIFICATIONS,
+                                                  INGENICO_NOTIFICATIONS.KB_TENANT_ID,
+                                                  INGENICO_NOTIFICATIONS.EVENT_ID,
+                                                  INGENICO_NOTIFICATIONS.EVENT_TYPE,
+                                                  INGENICO_NOTIFICATIONS.INGENICO_PAYMENT_ID,
+                                                  INGENICO_NOTIFICATIONS.INGENICO_REFUND_ID,
+                                                  INGENICO_NOTIFICATIONS.INGENICO_STATUS,
+                                                  INGENICO_NOTIFICATIONS.EVENT_DATE,
+                                                  INGENICO_NOTIFICATIONS.PAYLOAD,
+                                                  INGENICO_NOTIFICATIONS.PROCESSING_STATUS,
+                                                  INGENICO_NOTIFICATIONS.PROCESSING_ATTEMPTS,
+                                                  INGENICO_NOTIFICATIONS.NEXT_ATTEMPT_DATE,
+                                                  INGENICO_NOTIFICATIONS.CREATED_DATE,
+                                                  INGENICO_NOTIFICATIONS.UPDATED_DATE)
+                                      .values(kbTenantId.toString(),
+                                              eventId,
+                                              eventType,
+                                              ingenicoPaymentId,
+                                              ingenicoRefundId,
+                                              ingenicoStatus,
+                                              toTimestamp(eventDate),
+                                              payload,
+                                              NOTIFICATION_NEW,
+                                              0,
+                                              toTimestamp(utcNow),
+                                              toTimestamp(utcNow),
+                                              toTimestamp(utcNow))
+                                      .execute();
+                               } catch (final DataAccessException e) {
+                                   // Same event delivered concurrently (unique index on the event id)
+                                   if (hasNotification(conn, eventId, kbTenantId)) {
+                                       return false;
+                                   }
+                                   throw e;
+                               }
+                               return true;
+                           }
+                       });
+    }
+
+    private boolean hasNotification(final Connection conn, final String eventId, final UUID kbTenantId) {
+        return DSL.using(conn, dialect, settings)
+                  .selectCount()
+                  .from(INGENICO_NOTIFICATIONS)
+                  .where(INGENICO_NOTIFICATIONS.EVENT_ID.equal(eventId))
+                  .and(INGENICO_NOTIFICATIONS.KB_TENANT_ID.equal(kbTenantId.toString()))
+                  .fetchOne(0, Integer.class) > 0;
+    }
+
+    /**
+     * Page through the webhook events not processed yet, oldest first: new ones (including the ones waiting for their next
+     * attempt) and the ones being processed. The caller decides which ones can be claimed, the others hold back the next
+     * events of the same payment.
+     *
+     * @param afterRecordId  last record id of the previous page, 0 for the first page
+     * @param limit          page size
+     * @return the events, across all tenants
+     * @throws SQLException For any unexpected SQL error
+     */
+    public List<IngenicoNotificationsRecord> getNotificationsToProcess(final long afterRecordId, final int limit) throws SQLException {
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<List<IngenicoNotificationsRecord>>() {
+                           @Override
+                           public List<IngenicoNotificationsRecord> withConnection(final Connection conn) throws SQLException {
+                               return DSL.using(conn, dialect, settings)
+                                         .selectFrom(INGENICO_NOTIFICATIONS)
+                                         .where(INGENICO_NOTIFICATIONS.RECORD_ID.greaterThan(UInteger.valueOf(afterRecordId)))
+                                         .and(INGENICO_NOTIFICATIONS.PROCESSING_STATUS.in(NOTIFICATION_NEW, NOTIFICATION_PROCESSING))
+                                         .orderBy(INGENICO_NOTIFICATIONS.RECORD_ID.asc())
+                                         .limit(limit)
+                                         .fetch();
+                           }
+                       });
+    }
+
+    /**
+     * Claim a webhook event for processing. Only one node can claim a given event, as long as its state hasn't changed
+     * since it was read.
+     *
+     * @return true if the event was claimed
+     * @throws SQLException For any unexpected SQL error
+     */
+    public boolean claimNotification(final IngenicoNotificationsRecord notification, final DateTime utcNow) throws SQLException {
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<Boolean>() {
+                           @Override
+                           public Boolean withConnection(final Connection conn) throws SQLException {
+                               return DSL.using(conn, dialect, settings)
+                                         .update(INGENICO_NOTIFICATIONS)
+                                         .set(INGENICO_NOTIFICATIONS.PROCESSING_STATUS, NOTIFICATION_PROCESSING)
+                                         .set(INGENICO_NOTIFICATIONS.PROCESSING_ATTEMPTS, notification.getProcessingAttempts() + 1)
+                                         .set(INGENICO_NOTIFICATIONS.UPDATED_DATE, toTimestamp(utcNow))
+                                         .where(INGENICO_NOTIFICATIONS.RECORD_ID.equal(notification.getRecordId()))
+                                         .and(INGENICO_NOTIFICATIONS.PROCESSING_STATUS.equal(notification.getProcessingStatus()))
+                                         .and(INGENICO_NOTIFICATIONS.PROCESSING_ATTEMPTS.equal(notification.getProcessingAttempts()))
+                                         .execute() == 1;
+                           }
+                       });
+    }
+
+    /**
+     * @param nextAttemptDate when to retry the event, for {@link #NOTIFICATION_NEW}
+     */
+    public void updateNotificationStatus(final UInteger recordId, final String processingStatus, final DateTime nextAttemptDate, final DateTime utcNow) throws SQLException {
+        execute(dataSource.getConnection(),
+                new WithConnectionCallback<Void>() {
+                    @Override
+                    public Void withConnection(final Connection conn) throws SQLException {
+                        DSL.using(conn, dialect, settings)
+                           .update(INGENICO_NOTIFICATIONS)
+                           .set(INGENICO_NOTIFICATIONS.PROCESSING_STATUS, processingStatus)
+                           .set(INGENICO_NOTIFICATIONS.NEXT_ATTEMPT_DATE, toTimestamp(nextAttemptDate))
+                           .set(INGENICO_NOTIFICATIONS.UPDATED_DATE, toTimestamp(utcNow))
+                           .where(INGENICO_NOTIFICATIONS.RECORD_ID.equal(recordId))
+                           .execute();
+                        return null;
+                    }
+                });
+    }
+
+    /**
+     * @return when the latest webhook event applied to the payment (refunds excepted) was raised, null if none was
+     * @throws SQLException For any unexpected SQL error
+     */
+    public DateTime getLastEventDate(final String ingenicoPaymentId, final UUID kbTenantId) throws SQLException {
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<DateTime>() {
+                           @Override
+                           public DateTime withConnection(final Connection conn) throws SQLException {
+                               final Timestamp lastEventDate = DSL.using(conn, dialect, settings)
+                                                                  .select(DSL.max(INGENICO_RESPONSES.LAST_EVENT_DATE))
+                                                                  .from(INGENICO_RESPONSES)
+                                                                  .where(INGENICO_RESPONSES.INGENICO_PAYMENT_ID.equal(ingenicoPaymentId))
+                                                                  .and(INGENICO_RESPONSES.KB_TENANT_ID.equal(kbTenantId.toString()))
+                                                                  .and(INGENICO_RESPONSES.TRANSACTION_TYPE.notEqual(TransactionType.REFUND.toString()))
+                                                                  .fetchOne(0, Timestamp.class);
+                               return lastEventDate == null ? null : new DateTime(lastEventDate.getTime(), DateTimeZone.UTC);
+                           }
+                       });
+    }
+
+    /**
+     * Record that a webhook event raised at eventDate was applied to the response row (never moves the date backward).
+     *
+     * @throws SQLException For any unexpected SQL error
+     */
+    public void updateLastEventDate(final UInteger recordId, final DateTime eventDate) throws SQLException {
+        execute(dataSource.getConnection(),
+                new WithConnectionCallback<Void>() {
+                    @Override
+                    public Void withConnection(final Connection conn) throws SQLException {
+                        DSL.using(conn, dialect, settings)
+                           .update(INGENICO_RESPONSES)
+                           .set(INGENICO_RESPONSES.LAST_EVENT_DATE, toTimestamp(eventDate))
+                           .where(INGENICO_RESPONSES.RECORD_ID.equal(recordId))
+                           .and(INGENICO_RESPONSES.LAST_EVENT_DATE.isNull().or(INGENICO_RESPONSES.LAST_EVENT_DATE.lessThan(toTimestamp(eventDate))))
+                           .execute();
+                        return null;
+                    }
+                });
+    }
+
     public void addResponse(final UUID kbAccountId,
                             final UUID kbPaymentId,
                             final UUID kbPaymentTransactionId,
@@ -92,57 +537,28 @@ public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, Ingen
                             final PurchaseResult result,
                             final DateTime utcNow,
                             final UUID kbTenantId) throws SQLException {
-        final String additionalData = getAdditionalData(result);
-        execute(dataSource.getConnection(),
-                new WithConnectionCallback<Void>() {
-                    @Override
-                    public Void withConnection(final Connection conn) throws SQLException {
-                        DSL.using(conn, dialect, settings)
-                                .insertInto(INGENICO_RESPONSES,
-                                        INGENICO_RESPONSES.KB_ACCOUNT_ID,
-                                        INGENICO_RESPONSES.KB_PAYMENT_ID,
-                                        INGENICO_RESPONSES.KB_PAYMENT_TRANSACTION_ID,
-                                        INGENICO_RESPONSES.TRANSACTION_TYPE,
-                                        INGENICO_RESPONSES.AMOUNT,
-                                        INGENICO_RESPONSES.CURRENCY,
-                                        INGENICO_RESPONSES.INGENICO_PAYMENT_ID,
-                                        INGENICO_RESPONSES.INGENICO_STATUS,
-                                        INGENICO_RESPONSES.INGENICO_RESULT,
-                                        INGENICO_RESPONSES.INGENICO_PAYMENT_REFERENCE,
-                                        INGENICO_RESPONSES.INGENICO_AUTHORIZATION_CODE,
-                                        INGENICO_RESPONSES.INGENICO_ERROR_CODE,
-                                        INGENICO_RESPONSES.INGENICO_ERROR_MESSAGE,
-                                        INGENICO_RESPONSES.FRAUD_AVS_RESULT,
-                                        INGENICO_RESPONSES.FRAUD_CVV_RESULT,
-                                        INGENICO_RESPONSES.FRAUD_SERVICE,
-                                        INGENICO_RESPONSES.PAYMENT_INTERNAL_REF,
-                                        INGENICO_RESPONSES.ADDITIONAL_DATA,
-                                        INGENICO_RESPONSES.CREATED_DATE,
-                                        INGENICO_RESPONSES.KB_TENANT_ID)
-                                .values(kbAccountId.toString(),
-                                        kbPaymentId.toString(),
-                                        kbPaymentTransactionId.toString(),
-                                        transactionType.toString(),
-                                        amount,
-                                        currency.toString(),
-                                        result.getPaymentId(),
-                                        result.getStatus(),
-                                        result.getResult().isPresent() ? result.getResult().get().toString() : null,
-                                        result.getPaymentReference(),
-                                        result.getAuthorizationCode(),
-                                        result.getErrorCode(),
-                                        result.getErrorMessage(),
-                                        result.getFraudAvsResult(),
-                                        result.getFraudCvvResult(),
-                                        result.getFraudResult(),
-                                        result.getPaymentTransactionExternalKey(),
-                                        additionalData,
-                                        toTimestamp(utcNow),
-                                        kbTenantId.toString())
-                                .execute();
-                        return null;
-                    }
-                });
+        final IngenicoResponsesRecord response = new IngenicoResponsesRecord();
+        response.setKbAccountId(kbAccountId.toString());
+        response.setKbPaymentId(kbPaymentId.toString());
+        response.setKbPaymentTransactionId(kbPaymentTransactionId.toString());
+        response.setTransactionType(transactionType.toString());
+        response.setAmount(amount);
+        response.setCurrency(currency.toString());
+        response.setIngenicoPaymentId(result.getPaymentId());
+        response.setIngenicoStatus(result.getStatus());
+        response.setIngenicoResult(result.getResult().isPresent() ? result.getResult().get().toString() : null);
+        response.setIngenicoPaymentReference(result.getPaymentReference());
+        response.setIngenicoAuthorizationCode(result.getAuthorizationCode());
+        response.setIngenicoErrorCode(result.getErrorCode());
+        response.setIngenicoErrorMessage(result.getErrorMessage());
+        response.setFraudAvsResult(result.getFraudAvsResult());
+        response.setFraudCvvResult(result.getFraudCvvResult());
+        response.setFraudService(result.getFraudResult());
+        response.setPaymentInternalRef(result.getPaymentTransactionExternalKey());
+        response.setAdditionalData(getAdditionalData(result));
+        response.setCreatedDate(toTimestamp(utcNow));
+        response.setKbTenantId(kbTenantId.toString());
+        addResponse(response);
     }
 
     public void addResponse(final UUID kbAccountId,
@@ -154,60 +570,102 @@ public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, Ingen
                             final PaymentModificationResponse result,
                             final DateTime utcNow,
                             final UUID kbTenantId) throws SQLException {
-        final String additionalData = getAdditionalData(result);
+        final IngenicoResponsesRecord response = new IngenicoResponsesRecord();
+        response.setKbAccountId(kbAccountId.toString());
+        response.setKbPaymentId(kbPaymentId.toString());
+        response.setKbPaymentTransactionId(kbPaymentTransactionId.toString());
+        response.setTransactionType(transactionType.toString());
+        response.setAmount(amount);
+        response.setCurrency(currency.toString());
+        response.setIngenicoPaymentId(result.getPaymentId());
+        // Id of the refund, for refunds
+        response.setIngenicoPaymentReference(result.getModificationId());
+        response.setIngenicoStatus(result.getStatus());
+        response.setAdditionalData(getAdditionalData(result));
+        response.setCreatedDate(toTimestamp(utcNow));
+        response.setKbTenantId(kbTenantId.toString());
+        addResponse(response);
+    }
 
+    private void addResponse(final IngenicoResponsesRecord response) throws SQLException {
+        if (responseWriter != null) {
+            responseWriter.write(response);
+        } else {
+            insertResponses(ImmutableList.<IngenicoResponsesRecord>of(response));
+        }
+    }
+
+    /**
+     * Insert responses with a single (multi-row) statement.
+     *
+     * @param responses responses to insert
+     * @throws SQLException For any unexpected SQL error
+     */
+    void insertResponses(final List<IngenicoResponsesRecord> responses) throws SQLException {
         execute(dataSource.getConnection(),
                 new WithConnectionCallback<Void>() {
                     @Override
                     public Void withConnection(final Connection conn) throws SQLException {
-                        DSL.using(conn, dialect, settings)
-                           .insertInto(INGENICO_RESPONSES,
-                                       INGENICO_RESPONSES.KB_ACCOUNT_ID,
-                                       INGENICO_RESPONSES.KB_PAYMENT_ID,
-                                       INGENICO_RESPONSES.KB_PAYMENT_TRANSACTION_ID,
-                                       INGENICO_RESPONSES.TRANSACTION_TYPE,
-                                       INGENICO_RESPONSES.AMOUNT,
-                                       INGENICO_RESPONSES.CURRENCY,
-                                       INGENICO_RESPONSES.INGENICO_PAYMENT_ID,
-                                       INGENICO_RESPONSES.INGENICO_STATUS,
-                                       INGENICO_RESPONSES.INGENICO_RESULT,
-                                       INGENICO_RESPONSES.INGENICO_PAYMENT_REFERENCE,
-                                       INGENICO_RESPONSES.INGENICO_AUTHORIZATION_CODE,
-                                       INGENICO_RESPONSES.INGENICO_ERROR_CODE,
-                                       INGENICO_RESPONSES.INGENICO_ERROR_MESSAGE,
-                                       INGENICO_RESPONSES.FRAUD_AVS_RESULT,
-                                       INGENICO_RESPONSES.FRAUD_CVV_RESULT,
-                                       INGENICO_RESPONSES.FRAUD_SERVICE,
-                                       INGENICO_RESPONSES.PAYMENT_INTERNAL_REF,
-                                       INGENICO_RESPONSES.ADDITIONAL_DATA,
-                                       INGENICO_RESPONSES.CREATED_DATE,
-                                       INGENICO_RESPONSES.KB_TENANT_ID)
-                           .values(kbAccountId.toString(),
-                                   kbPaymentId.toString(),
-                                   kbPaymentTransactionId.toString(),
-                                   transactionType.toString(),
-                                   amount,
-                                   currency.toString(),
-                                   result.getPaymentId(),
-                                   result.getStatus(),
-                                   null,
-                                   null,
-                                   null,
-                                   null,
-                                   null,
-                                   null,
-                                   null,
-                                   null,
-                                   null,
-                                   additionalData,
-                                   toTimestamp(utcNow),
-                                   kbTenantId.toString())
-                           .execute();
+                        InsertValuesStep20<IngenicoResponsesRecord, String, String, String, String, BigDecimal, String, String, String, String, String, String, String, String, String, String, String, String, String, Timestamp, String> step =
+                                DSL.using(conn, dialect, settings)
+                                   .insertInto(INGENICO_RESPONSES,
+                                               INGENICO_RESPONSES.KB_ACCOUNT_ID,
+                                               INGENICO_RESPONSES.KB_PAYMENT_ID,
+                                               INGENICO_RESPONSES.KB_PAYMENT_TRANSACTION_ID,
+                                               INGENICO_RESPONSES.TRANSACTION_TYPE,
+                                               INGENICO_RESPONSES.AMOUNT,
+                                               INGENICO_RESPONSES.CURRENCY,
+                                               INGENICO_RESPONSES.INGENICO_PAYMENT_ID,
+                                               INGENICO_RESPONSES.INGENICO_STATUS,
+                                               INGENICO_RESPONSES.INGENICO_RESULT,
+                                               INGENICO_RESPONSES.INGENICO_PAYMENT_REFERENCE,
+                                               INGENICO_RESPONSES.INGENICO_AUTHORIZATION_CODE,
+                                               INGENICO_RESPONSES.INGENICO_ERROR_CODE,
+                                               INGENICO_RESPONSES.INGENICO_ERROR_MESSAGE,
+                                               INGENICO_RESPONSES.FRAUD_AVS_RESULT,
+                                               INGENICO_RESPONSES.FRAUD_CVV_RESULT,
+                                               INGENICO_RESPONSES.FRAUD_SERVICE,
+                                               INGENICO_RESPONSES.PAYMENT_INTERNAL_REF,
+                                               INGENICO_RESPONSES.ADDITIONAL_DATA,
+                                               INGENICO_RESPONSES.CREATED_DATE,
+                                               INGENICO_RESPONSES.KB_TENANT_ID);
+                        for (final IngenicoResponsesRecord response : responses) {
+                            step = step.values(response.getKbAccountId(),
+                                               response.getKbPaymentId(),
+                                               response.getKbPaymentTransactionId(),
+                                               response.getTransactionType(),
+                                               response.getAmount(),
+                                               response.getCurrency(),
+                                               response.getIngenicoPaymentId(),
+                                               response.getIngenicoStatus(),
+                                               response.getIngenicoResult(),
+                                               response.getIngenicoPaymentReference(),
+                                               response.getIngenicoAuthorizationCode(),
+                                               response.getIngenicoErrorCode(),
+                                               response.getIngenicoErrorMessage(),
+                                               response.getFraudAvsResult(),
+                                               response.getFraudCvvResult(),
+                                               response.getFraudService(),
+                                               response.getPaymentInternalRef(),
+                                               response.getAdditionalData(),
+                                               response.getCreatedDate(),
+                                               response.getKbTenantId());
+                        }
+                        step.execute();
                         return null;
                     }
                 });
     }
 
+    /**
+     * Stop the group commit writer, if any.
+     */
+    public void close() {
+        if (responseWriter != null) {
+            responseWriter.stop();
+        }
+    }
+
     public IngenicoResponsesRecord updateResponse(final UUID kbPaymentTransactionId, final Iterable<PluginProperty> additionalPluginProperties, final UUID kbTenantId) throws SQLException {
         return updateResponse(kbPaymentTransactionId, null, null, additionalPluginProperties, kbTenantId);
     }
@@ -216,10 +674,11 @@ public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, Ingen
      * Update the PSP reference and additional data of the latest response row for a payment transaction
      *
      * @param kbPaymentTransactionId       Kill Bill payment transaction id
-     * @param status
-     *@param paymentServiceProviderResult New PSP result (null if unchanged)
+     * @param status                       New Ingenico status (null if unchanged)
+     * @param paymentServiceProviderResult New PSP result (null if unchanged)
      * @param additionalPluginProperties   Latest properties
-     * @param kbTenantId                   Kill Bill tenant id    @return the latest version of the response row, null if one couldn't be found
+     * @param kbTenantId                   Kill Bill tenant id
+     * @return the latest version of the response row, null if one couldn't be found
      * @throws SQLException For any unexpected SQL error
      */
     public IngenicoResponsesRecord updateResponse(final UUID kbPaymentTransactionId, final String status, @Nullable final PaymentServiceProviderResult paymentServiceProviderResult, final Iterable<PluginProperty> additionalPluginProperties, final UUID kbTenantId) throws SQLException {
@@ -229,51 +688,108 @@ public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, Ingen
                        new WithConnectionCallback<IngenicoResponsesRecord>() {
                            @Override
                            public IngenicoResponsesRecord withConnection(final Connection conn) throws SQLException {
-                               final IngenicoResponsesRecord response = DSL.using(conn, dialect, settings)
-                                                                        .selectFrom(INGENICO_RESPONSES)
-                                                                        .where(INGENICO_RESPONSES.KB_PAYMENT_TRANSACTION_ID.equal(kbPaymentTransactionId.toString()))
-                                                                        .and(INGENICO_RESPONSES.KB_TENANT_ID.equal(kbTenantId.toString()))
-                                                                        .orderBy(INGENICO_RESPONSES.RECORD_ID.desc())
-                                                                        .limit(1)
-                                                                        .fetchOne();
-
-                               if (response == null) {
-                                   return null;
-                               }
+                               while (true) {
+                                   final IngenicoResponsesRecord response = DSL.using(conn, dialect, settings)
+                                                                            .selectFrom(INGENICO_RESPONSES)
+                                                                            .where(INGENICO_RESPONSES.KB_PAYMENT_TRANSACTION_ID.equal(kbPaymentTransactionId.toString()))
+                                                                            .and(INGENICO_RESPONSES.KB_TENANT_ID.equal(kbTenantId.toString()))
+                                                                            .orderBy(INGENICO_RESPONSES.RECORD_ID.desc())
+                                                                            .limit(1)
+                                                                            .fetchOne();
+                                   if (response == null) {
+                                       return null;
+                                   }
 
-                               final Map originalData = new HashMap(fromAdditionalData(response.getAdditionalData()));
-                               originalData.putAll(additionalProperties);
-//                               final String ingenicoPaymentId = response.getIngenicoPaymentId();
-//                               if (ingenicoPaymentId != null) {
-//                                   originalData.remove(INGENICO_CALL_ERROR_STATUS);
-//                                   originalData.remove(EXCEPTION_CLASS);
-//                                   originalData.remove(EXCEPTION_MESSAGE);
-//                               }
-                               final String mergedAdditionalData = asString(originalData);
-
-                               UpdateSetMoreStep<IngenicoResponsesRecord> step = DSL.using(conn, dialect, settings)
-                                                                                 .update(INGENICO_RESPONSES)
-                                                                                 .set(INGENICO_RESPONSES.ADDITIONAL_DATA, mergedAdditionalData);
-                               if (status != null) {
-                                   step = step.set(INGENICO_RESPONSES.INGENICO_STATUS, status);
-                               }
-                               if (paymentServiceProviderResult != null) {
-                                   step = step.set(INGENICO_RESPONSES.INGENICO_RESULT, paymentServiceProviderResult.toString());
+                                   if (compareAndSetResponse(conn, response, status, paymentServiceProviderResult, additionalProperties)) {
+                                       return response;
+                                   }
+                                   // Updated concurrently: merge again into the latest version
                                }
-                               step.where(INGENICO_RESPONSES.RECORD_ID.equal(response.getRecordId()))
-                                   .execute();
+                           }
+                       });
+    }
 
-                               return DSL.using(conn, dialect, settings)
-                                         .selectFrom(INGENICO_RESPONSES)
-                                         .where(INGENICO_RESPONSES.KB_PAYMENT_TRANSACTION_ID.equal(kbPaymentTransactionId.toString()))
-                                         .and(INGENICO_RESPONSES.KB_TENANT_ID.equal(kbTenantId.toString()))
-                                         .orderBy(INGENICO_RESPONSES.RECORD_ID.desc())
-                                         .limit(1)
-                                         .fetchOne();
+    /**
+     * Same as {@link #updateResponse(UUID, String, PaymentServiceProviderResult, Iterable, UUID)}, for a response row
+     * already loaded: a single statement, unless the row was updated since it was read.
+     *
+     * @param response                     Response row, updated in place if it is still the latest version
+     * @param status                       New Ingenico status (null if unchanged)
+     * @param paymentServiceProviderResult New PSP result (null if unchanged)
+     * @param additionalPluginProperties   Latest properties
+     * @return the latest version of the response row, null if it was deleted
+     * @throws SQLException For any unexpected SQL error
+     */
+    public IngenicoResponsesRecord updateResponse(final IngenicoResponsesRecord response, @Nullable final String status, @Nullable final PaymentServiceProviderResult paymentServiceProviderResult, final Iterable<PluginProperty> additionalPluginProperties) throws SQLException {
+        final Map<String, Object> additionalProperties = PluginProperties.toMap(additionalPluginProperties);
+
+        return execute(dataSource.getConnection(),
+                       new WithConnectionCallback<IngenicoResponsesRecord>() {
+                           @Override
+                           public IngenicoResponsesRecord withConnection(final Connection conn) throws SQLException {
+                               IngenicoResponsesRecord latestResponse = response;
+                               while (latestResponse != null && !compareAndSetResponse(conn, latestResponse, status, paymentServiceProviderResult, additionalProperties)) {
+                                   latestResponse = DSL.using(conn, dialect, settings)
+                                                       .selectFrom(INGENICO_RESPONSES)
+                                                       .where(INGENICO_RESPONSES.RECORD_ID.equal(response.getRecordId()))
+                                                       .fetchOne();
+                               }
+                               return latestResponse;
                            }
                        });
     }
 
+    /**
+     * Optimistic update of a response row: only applied if the row is still at the version that was read, in which
+     * case the record is updated to match the row.
+     *
+     * @return false if the row was updated concurrently
+     */
+    private boolean compareAndSetResponse(final Connection conn,
+                                          final IngenicoResponsesRecord response,
+                                          @Nullable final String status,
+                                          @Nullable final PaymentServiceProviderResult paymentServiceProviderResult,
+                                          final Map<String, Object> additionalProperties) throws SQLException {
+        final Map originalData = new HashMap(fromAdditionalData(response.getAdditionalData()));
+        originalData.putAll(additionalProperties);
+//        final String ingenicoPaymentId = response.getIngenicoPaymentId();
+//        if (ingenicoPaymentId != null) {
+//            originalData.remove(INGENICO_CALL_ERROR_STATUS);
+//            originalData.remove(EXCEPTION_CLASS);
+//            originalData.remove(EXCEPTION_MESSAGE);
+//        }
+        final String mergedAdditionalData = toStoredAdditionalData(asString(originalData));
+        final int version = response.getVersion();
+
+        UpdateSetMoreStep<IngenicoResponsesRecord> step = DSL.using(conn, dialect, settings)
+                                                          .update(INGENICO_RESPONSES)
+                                                          .set(INGENICO_RESPONSES.ADDITIONAL_DATA, mergedAdditionalData)
+                                                          .set(INGENICO_RESPONSES.VERSION, version + 1);
+        if (status != null) {
+            step = step.set(INGENICO_RESPONSES.INGENICO_STATUS, status);
+        }
+        if (paymentServiceProviderResult != null) {
+            step = step.set(INGENICO_RESPONSES.INGENICO_RESULT, paymentServiceProviderResult.toString());
+        }
+        final int updated = step.where(INGENICO_RESPONSES.RECORD_ID.equal(response.getRecordId()))
+                                .and(INGENICO_RESPONSES.VERSION.equal(version))
+                                .execute();
+        if (updated != 1) {
+            return false;
+        }
+
+        response.setAdditionalData(mergedAdditionalData);
+        response.setVersion(version + 1);
+        if (status != null) {
+            response.setIngenicoStatus(status);
+        }
+        if (paymentServiceProviderResult != null) {
+            response.setIngenicoResult(paymentServiceProviderResult.toString());
+        }
+        response.changed(false);
+        return true;
+    }
+
     private String getAdditionalData(final PurchaseResult result) throws SQLException {
         final Map<String, String> additionalDataMap = new HashMap<String, String>();
         if (result.getAdditionalData() != null && !result.getAdditionalData().isEmpty()) {
@@ -282,12 +798,16 @@ public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, Ingen
         if (additionalDataMap.isEmpty()) {
             return null;
         } else {
-            return asString(additionalDataMap);
+            return toStoredAdditionalData(asString(additionalDataMap));
         }
     }
 
     private String getAdditionalData(final PaymentModificationResponse response) throws SQLException {
-        return asString(response.getAdditionalData());
+        return toStoredAdditionalData(asString(response.getAdditionalData()));
+    }
+
+    private String toStoredAdditionalData(@Nullable final String json) {
+        return encodeAdditionalData && json != null ? IngenicoAdditionalDataCodec.encode(json) : json;
     }
 
     public static Map fromAdditionalData(@Nullable final String additionalData) {
@@ -296,6 +816,9 @@ public class IngenicoDao extends PluginPaymentDao<IngenicoResponsesRecord, Ingen
         }
 
         try {
+            if (IngenicoAdditionalDataCodec.isEncoded(additionalData)) {
+                return objectMapper.readValue(IngenicoAdditionalDataCodec.decode(additionalData), Map.class);
+            }
             return objectMapper.readValue(additionalData, Map.class);
         } catch (final IOException e) {
             throw new RuntimeException(e);
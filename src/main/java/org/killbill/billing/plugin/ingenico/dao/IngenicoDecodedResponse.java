@@ -0,0 +1,76 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.dao;
+
+import java.util.Map;
+
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Read-only view of a response row, which decodes the additional_data JSON at most once, on first access.
+ * <p>
+ * Not thread-safe: a view is meant to be used by the thread which built it.
+ */
+public class IngenicoDecodedResponse {
+
+    private final IngenicoResponsesRecord record;
+
+    private Map additionalData;
+    private RuntimeException decodingError;
+
+    public IngenicoDecodedResponse(final IngenicoResponsesRecord record) {
+        this.record = record;
+    }
+
+    public IngenicoResponsesRecord getRecord() {
+        return record;
+    }
+
+    /**
+     * @return the decoded additional_data, empty if there is none
+     * @throws RuntimeException if additional_data isn't valid JSON (see {@link IngenicoDao#fromAdditionalData(String)})
+     */
+    public Map getAdditionalData() {
+        decode();
+        if (decodingError != null) {
+            throw decodingError;
+        }
+        return additionalData;
+    }
+
+    /**
+     * @return the decoded additional_data, empty if there is none or if it isn't valid JSON
+     */
+    public Map getAdditionalDataOrEmpty() {
+        decode();
+        return decodingError != null ? ImmutableMap.of() : additionalData;
+    }
+
+    private void decode() {
+        if (additionalData != null || decodingError != null) {
+            return;
+        }
+        try {
+            additionalData = IngenicoDao.fromAdditionalData(record.getAdditionalData());
+        } catch (final RuntimeException e) {
+            decodingError = e;
+        }
+    }
+}
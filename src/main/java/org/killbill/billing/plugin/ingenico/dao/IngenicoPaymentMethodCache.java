@@ -0,0 +1,98 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.dao;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Payment method rows, one bounded cache per tenant. Entries expire {@code ttlMillis} after being loaded, which also
+ * bounds how long a change made by another Kill Bill node can go unnoticed.
+ * <p>
+ * Cached records are shared between threads, and must not be modified.
+ */
+public class IngenicoPaymentMethodCache {
+
+    private static final String DEFAULT_TENANT = "default";
+
+    private final LoadingCache<String, Cache<String, IngenicoPaymentMethodsRecord>> cachesPerTenant;
+
+    public IngenicoPaymentMethodCache(final long ttlMillis, final long maxSizePerTenant) {
+        this.cachesPerTenant = CacheBuilder.newBuilder()
+                                           .build(new CacheLoader<String, Cache<String, IngenicoPaymentMethodsRecord>>() {
+                                               @Override
+                                               public Cache<String, IngenicoPaymentMethodsRecord> load(final String tenant) {
+                                                   return CacheBuilder.newBuilder()
+                                                                      .maximumSize(maxSizePerTenant)
+                                                                      .expireAfterWrite(ttlMillis, TimeUnit.MILLISECONDS)
+                                                                      .recordStats()
+                                                                      .build();
+                                               }
+                                           });
+    }
+
+    /**
+     * @return the cached payment method, null if unknown or expired
+     */
+    @Nullable
+    public IngenicoPaymentMethodsRecord getPaymentMethod(@Nullable final UUID kbTenantId, final UUID kbPaymentMethodId) {
+        return getCache(kbTenantId).getIfPresent(kbPaymentMethodId.toString());
+    }
+
+    public void putPaymentMethod(@Nullable final UUID kbTenantId, final IngenicoPaymentMethodsRecord paymentMethod) {
+        getCache(kbTenantId).put(paymentMethod.getKbPaymentMethodId(), paymentMethod);
+    }
+
+    public void invalidate(@Nullable final UUID kbTenantId, final String kbPaymentMethodId) {
+        getCache(kbTenantId).invalidate(kbPaymentMethodId);
+    }
+
+    /**
+     * To be called when a change affects several payment methods of the tenant (e.g. the default one changes).
+     */
+    public void invalidateAll(@Nullable final UUID kbTenantId) {
+        getCache(kbTenantId).invalidateAll();
+    }
+
+    /**
+     * @return the hit and miss counts, per tenant
+     */
+    public Map<String, CacheStats> getStats() {
+        final ImmutableMap.Builder<String, CacheStats> stats = ImmutableMap.builder();
+        for (final Map.Entry<String, Cache<String, IngenicoPaymentMethodsRecord>> entry : cachesPerTenant.asMap().entrySet()) {
+            stats.put(entry.getKey(), entry.getValue().stats());
+        }
+        return stats.build();
+    }
+
+    private Cache<String, IngenicoPaymentMethodsRecord> getCache(@Nullable final UUID kbTenantId) {
+        return cachesPerTenant.getUnchecked(kbTenantId == null ? DEFAULT_TENANT : kbTenantId.toString());
+    }
+}
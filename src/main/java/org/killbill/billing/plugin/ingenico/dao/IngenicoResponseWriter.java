@@ -0,0 +1,242 @@
+/*
+ * Copyright 2014-2016 Groupon, Inc
+ * Copyright 2014-2016 The Billing Project, LLC
+ *
+ * The Billing Project licenses this file to you under the Apache License, version 2.0
+ * (the "License"); you may not use this file except in compliance with the
+ * License.  You may obtain a copy of the License at:
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.killbill.billing.plugin.ingenico.dao;
+
+import java.sql.SQLException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Group commit of the response inserts: the responses added by concurrent threads within {@code windowMillis} of
+ * each other are written by a single multi-row INSERT (and a single commit).
+ * <p>
+ * Callers still block until their own row is written, so a payment call never returns before its response is durable.
+ * A caller whose row wasn't picked up by the writer within {@code timeoutMillis} (e.g. the writer is stuck on a slow
+ * write) inserts it itself.
+ */
+class IngenicoResponseWriter {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngenicoResponseWriter.class);
+
+    private final IngenicoDao dao;
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final long timeoutMillis;
+    private final BlockingQueue<PendingResponse> queue = new LinkedBlockingQueue<PendingResponse>();
+    private final Thread writerThread;
+
+    private volatile boolean running;
+
+    IngenicoResponseWriter(final IngenicoDao dao, final long windowMillis, final int maxBatchSize, final long timeoutMillis) {
+        this.dao = dao;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.maxBatchSize = maxBatchSize;
+        this.timeoutMillis = timeoutMillis;
+        this.writerThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeLoop();
+            }
+        }, "ingenico-response-writer");
+        this.writerThread.setDaemon(true);
+    }
+
+    void start() {
+        running = true;
+        writerThread.start();
+    }
+
+    void stop() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Not picked up by the writer (e.g. it didn't stop in time): fail them, so that their callers write them
+        for (final PendingResponse pendingResponse : drain()) {
+            if (pendingResponse.claim()) {
+                pendingResponse.written.setException(new RejectedExecutionException("The response writer is stopped"));
+            }
+        }
+    }
+
+    void write(final IngenicoResponsesRecord response) throws SQLException {
+        final PendingResponse pendingResponse = new PendingResponse(response);
+        queue.add(pendingResponse);
+        // Stopped in the meantime: nobody will drain the queue anymore
+        if (!running && pendingResponse.claim()) {
+            queue.remove(pendingResponse);
+            dao.insertResponses(ImmutableList.<IngenicoResponsesRecord>of(response));
+            return;
+        }
+
+        if (awaitWrite(pendingResponse)) {
+            return;
+        }
+        if (pendingResponse.claim()) {
+            // Still not picked up by the writer
+            logger.warn("Group commit of the response for kbPaymentTransactionId='{}' timed out, writing it directly", response.getKbPaymentTransactionId());
+            queue.remove(pendingResponse);
+            dao.insertResponses(ImmutableList.<IngenicoResponsesRecord>of(response));
+            return;
+        }
+        // Picked up by the writer in the meantime: it is being written
+        if (!awaitWrite(pendingResponse)) {
+            throw new SQLException("Timed out waiting for the response for kbPaymentTransactionId='" + response.getKbPaymentTransactionId() + "' to be written");
+        }
+    }
+
+    /**
+     * @return false if the response wasn't written within the timeout
+     */
+    private boolean awaitWrite(final PendingResponse pendingResponse) throws SQLException {
+        try {
+            pendingResponse.written.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (final TimeoutException e) {
+            return false;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the response to be written", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RejectedExecutionException) {
+                // Writer stopped before writing it
+                dao.insertResponses(ImmutableList.<IngenicoResponsesRecord>of(pendingResponse.response));
+                return true;
+            }
+            if (e.getCause() instanceof SQLException) {
+                throw (SQLException) e.getCause();
+            }
+            throw new SQLException("Failed to write the response", e.getCause());
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (running) {
+                final List<PendingResponse> batch = new LinkedList<PendingResponse>();
+                addIfClaimed(batch, queue.take());
+
+                final long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    final PendingResponse next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    addIfClaimed(batch, next);
+                }
+
+                if (!batch.isEmpty()) {
+                    writeBatch(batch);
+                }
+            }
+        } catch (final InterruptedException e) {
+            // Stopping
+        } finally {
+            final List<PendingResponse> remaining = new LinkedList<PendingResponse>();
+            for (final PendingResponse pendingResponse : drain()) {
+                addIfClaimed(remaining, pendingResponse);
+            }
+            if (!remaining.isEmpty()) {
+                writeBatch(remaining);
+            }
+        }
+    }
+
+    private List<PendingResponse> drain() {
+        final List<PendingResponse> pendingResponses = new LinkedList<PendingResponse>();
+        queue.drainTo(pendingResponses);
+        return pendingResponses;
+    }
+
+    // Skips the responses their caller gave up waiting for (and wrote itself)
+    private void addIfClaimed(final List<PendingResponse> batch, final PendingResponse pendingResponse) {
+        if (pendingResponse.claim()) {
+            batch.add(pendingResponse);
+        }
+    }
+
+    private void writeBatch(final List<PendingResponse> batch) {
+        final List<IngenicoResponsesRecord> responses = new LinkedList<IngenicoResponsesRecord>();
+        for (final PendingResponse pendingResponse : batch) {
+            responses.add(pendingResponse.response);
+        }
+
+        try {
+            dao.insertResponses(responses);
+            for (final PendingResponse pendingResponse : batch) {
+                pendingResponse.written.set(null);
+            }
+        } catch (final Exception e) {
+            if (batch.size() == 1) {
+                logger.warn("Failed to write the response", e);
+                batch.get(0).written.setException(e);
+                return;
+            }
+
+            // A single bad row fails the whole statement: write them one by one, so that only the bad ones fail
+            logger.warn("Failed to write {} responses at once, writing them one by one", batch.size(), e);
+            for (final PendingResponse pendingResponse : batch) {
+                writeOne(pendingResponse);
+            }
+        }
+    }
+
+    private void writeOne(final PendingResponse pendingResponse) {
+        try {
+            dao.insertResponses(ImmutableList.<IngenicoResponsesRecord>of(pendingResponse.response));
+            pendingResponse.written.set(null);
+        } catch (final Exception e) {
+            logger.warn("Failed to write the response for kbPaymentTransactionId='{}'", pendingResponse.response.getKbPaymentTransactionId(), e);
+            pendingResponse.written.setException(e);
+        }
+    }
+
+    private static final class PendingResponse {
+
+        private final IngenicoResponsesRecord response;
+        private final SettableFuture<Void> written = SettableFuture.create();
+        // Set by whoever writes the response: the writer, or its caller
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        private PendingResponse(final IngenicoResponsesRecord response) {
+            this.response = response;
+        }
+
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
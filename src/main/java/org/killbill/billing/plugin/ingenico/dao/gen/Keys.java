@@ -21,6 +21,7 @@ public class Keys {
 	// IDENTITY definitions
 	// -------------------------------------------------------------------------
 
+	public static final org.jooq.Identity<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoNotificationsRecord, org.jooq.types.UInteger> IDENTITY_INGENICO_NOTIFICATIONS = Identities0.IDENTITY_INGENICO_NOTIFICATIONS;
 	public static final org.jooq.Identity<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord, org.jooq.types.UInteger> IDENTITY_INGENICO_PAYMENT_METHODS = Identities0.IDENTITY_INGENICO_PAYMENT_METHODS;
 	public static final org.jooq.Identity<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord, org.jooq.types.UInteger> IDENTITY_INGENICO_RESPONSES = Identities0.IDENTITY_INGENICO_RESPONSES;
 
@@ -28,6 +29,8 @@ public class Keys {
 	// UNIQUE and PRIMARY KEY definitions
 	// -------------------------------------------------------------------------
 
+	public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoNotificationsRecord> KEY_INGENICO_NOTIFICATIONS_PRIMARY = UniqueKeys0.KEY_INGENICO_NOTIFICATIONS_PRIMARY;
+	public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoNotificationsRecord> KEY_INGENICO_NOTIFICATIONS_INGENICO_NOTIFICATIONS_EVENT_ID = UniqueKeys0.KEY_INGENICO_NOTIFICATIONS_INGENICO_NOTIFICATIONS_EVENT_ID;
 	public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord> KEY_INGENICO_PAYMENT_METHODS_PRIMARY = UniqueKeys0.KEY_INGENICO_PAYMENT_METHODS_PRIMARY;
 	public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord> KEY_INGENICO_PAYMENT_METHODS_INGENICO_PAYMENT_METHODS_KB_PAYMENT_ID = UniqueKeys0.KEY_INGENICO_PAYMENT_METHODS_INGENICO_PAYMENT_METHODS_KB_PAYMENT_ID;
 	public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord> KEY_INGENICO_RESPONSES_PRIMARY = UniqueKeys0.KEY_INGENICO_RESPONSES_PRIMARY;
@@ -42,11 +45,14 @@ public class Keys {
 	// -------------------------------------------------------------------------
 
 	private static class Identities0 extends org.jooq.impl.AbstractKeys {
+		public static org.jooq.Identity<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoNotificationsRecord, org.jooq.types.UInteger> IDENTITY_INGENICO_NOTIFICATIONS = createIdentity(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS.RECORD_ID);
 		public static org.jooq.Identity<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord, org.jooq.types.UInteger> IDENTITY_INGENICO_PAYMENT_METHODS = createIdentity(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods.INGENICO_PAYMENT_METHODS, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods.INGENICO_PAYMENT_METHODS.RECORD_ID);
 		public static org.jooq.Identity<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord, org.jooq.types.UInteger> IDENTITY_INGENICO_RESPONSES = createIdentity(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.RECORD_ID);
 	}
 
 	private static class UniqueKeys0 extends org.jooq.impl.AbstractKeys {
+		public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoNotificationsRecord> KEY_INGENICO_NOTIFICATIONS_PRIMARY = createUniqueKey(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS.RECORD_ID);
+		public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoNotificationsRecord> KEY_INGENICO_NOTIFICATIONS_INGENICO_NOTIFICATIONS_EVENT_ID = createUniqueKey(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS.KB_TENANT_ID, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS.EVENT_ID);
 		public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord> KEY_INGENICO_PAYMENT_METHODS_PRIMARY = createUniqueKey(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods.INGENICO_PAYMENT_METHODS, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods.INGENICO_PAYMENT_METHODS.RECORD_ID);
 		public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoPaymentMethodsRecord> KEY_INGENICO_PAYMENT_METHODS_INGENICO_PAYMENT_METHODS_KB_PAYMENT_ID = createUniqueKey(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods.INGENICO_PAYMENT_METHODS, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods.INGENICO_PAYMENT_METHODS.KB_PAYMENT_METHOD_ID);
 		public static final org.jooq.UniqueKey<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord> KEY_INGENICO_RESPONSES_PRIMARY = createUniqueKey(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES, org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.RECORD_ID);
@@ -39,6 +39,7 @@ public class Killbill extends org.jooq.impl.SchemaImpl {
 
 	private final java.util.List<org.jooq.Table<?>> getTables0() {
 		return java.util.Arrays.<org.jooq.Table<?>>asList(
+			org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS,
 			org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoPaymentMethods.INGENICO_PAYMENT_METHODS,
 			org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES);
 	}
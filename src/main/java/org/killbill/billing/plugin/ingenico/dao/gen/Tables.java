@@ -16,6 +16,11 @@ package org.killbill.billing.plugin.ingenico.dao.gen;
 @java.lang.SuppressWarnings({ "all", "unchecked", "rawtypes" })
 public class Tables {
 
+	/**
+	 * The table killbill.ingenico_notifications
+	 */
+	public static final org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications INGENICO_NOTIFICATIONS = org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoNotifications.INGENICO_NOTIFICATIONS;
+
 	/**
 	 * The table killbill.ingenico_payment_methods
 	 */
@@ -16,7 +16,7 @@ package org.killbill.billing.plugin.ingenico.dao.gen.tables;
 @java.lang.SuppressWarnings({ "all", "unchecked", "rawtypes" })
 public class IngenicoResponses extends org.jooq.impl.TableImpl<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord> {
 
-	private static final long serialVersionUID = -2065963180;
+	private static final long serialVersionUID = -1203355982;
 
 	/**
 	 * The reference instance of <code>killbill.ingenico_responses</code>
@@ -141,6 +141,16 @@ public class IngenicoResponses extends org.jooq.impl.TableImpl<org.killbill.bill
 	 */
 	public final org.jooq.TableField<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord, java.lang.String> KB_TENANT_ID = createField("kb_tenant_id", org.jooq.impl.SQLDataType.CHAR.length(36).nullable(false), this, "");
 
+	/**
+	 * The column <code>killbill.ingenico_responses.version</code>.
+	 */
+	public final org.jooq.TableField<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord, java.lang.Integer> VERSION = createField("version", org.jooq.impl.SQLDataType.INTEGER.nullable(false), this, "");
+
+	/**
+	 * The column <code>killbill.ingenico_responses.last_event_date</code>.
+	 */
+	public final org.jooq.TableField<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord, java.sql.Timestamp> LAST_EVENT_DATE = createField("last_event_date", org.jooq.impl.SQLDataType.TIMESTAMP, this, "");
+
 	/**
 	 * Create a <code>killbill.ingenico_responses</code> table reference
 	 */
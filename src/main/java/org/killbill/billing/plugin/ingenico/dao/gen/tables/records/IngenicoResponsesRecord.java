@@ -14,9 +14,9 @@ package org.killbill.billing.plugin.ingenico.dao.gen.tables.records;
 	comments = "This class is generated by jOOQ"
 )
 @java.lang.SuppressWarnings({ "all", "unchecked", "rawtypes" })
-public class IngenicoResponsesRecord extends org.jooq.impl.UpdatableRecordImpl<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord> implements org.jooq.Record22<org.jooq.types.UInteger, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.math.BigDecimal, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.sql.Timestamp, java.lang.String> {
+public class IngenicoResponsesRecord extends org.jooq.impl.UpdatableRecordImpl<org.killbill.billing.plugin.ingenico.dao.gen.tables.records.IngenicoResponsesRecord> {
 
-	private static final long serialVersionUID = -724512064;
+	private static final long serialVersionUID = 870342419;
 
 	/**
 	 * Setter for <code>killbill.ingenico_responses.record_id</code>.
@@ -326,594 +326,44 @@ public class IngenicoResponsesRecord extends org.jooq.impl.UpdatableRecordImpl<o
 		return (java.lang.String) getValue(21);
 	}
 
-	// -------------------------------------------------------------------------
-	// Primary key information
-	// -------------------------------------------------------------------------
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Record1<org.jooq.types.UInteger> key() {
-		return (org.jooq.Record1) super.key();
-	}
-
-	// -------------------------------------------------------------------------
-	// Record22 type implementation
-	// -------------------------------------------------------------------------
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Row22<org.jooq.types.UInteger, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.math.BigDecimal, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.sql.Timestamp, java.lang.String> fieldsRow() {
-		return (org.jooq.Row22) super.fieldsRow();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Row22<org.jooq.types.UInteger, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.math.BigDecimal, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.lang.String, java.sql.Timestamp, java.lang.String> valuesRow() {
-		return (org.jooq.Row22) super.valuesRow();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<org.jooq.types.UInteger> field1() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.RECORD_ID;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field2() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.KB_ACCOUNT_ID;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field3() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.KB_PAYMENT_ID;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field4() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.KB_PAYMENT_TRANSACTION_ID;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field5() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.TRANSACTION_TYPE;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.math.BigDecimal> field6() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.AMOUNT;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field7() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.CURRENCY;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field8() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.INGENICO_PAYMENT_ID;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field9() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.INGENICO_STATUS;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field10() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.INGENICO_RESULT;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field11() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.INGENICO_PAYMENT_REFERENCE;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field12() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.INGENICO_MERCHANT_REFERENCE;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field13() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.INGENICO_AUTHORIZATION_CODE;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field14() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.INGENICO_ERROR_CODE;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field15() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.INGENICO_ERROR_MESSAGE;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field16() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.PAYMENT_INTERNAL_REF;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field17() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.FRAUD_AVS_RESULT;
-	}
-
 	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field18() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.FRAUD_CVV_RESULT;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field19() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.FRAUD_SERVICE;
-	}
-
-	/**
-	 * {@inheritDoc}
+	 * Setter for <code>killbill.ingenico_responses.version</code>.
 	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field20() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.ADDITIONAL_DATA;
+	public void setVersion(java.lang.Integer value) {
+		setValue(22, value);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Getter for <code>killbill.ingenico_responses.version</code>.
 	 */
-	@Override
-	public org.jooq.Field<java.sql.Timestamp> field21() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.CREATED_DATE;
+	public java.lang.Integer getVersion() {
+		return (java.lang.Integer) getValue(22);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Setter for <code>killbill.ingenico_responses.last_event_date</code>.
 	 */
-	@Override
-	public org.jooq.Field<java.lang.String> field22() {
-		return org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES.KB_TENANT_ID;
+	public void setLastEventDate(java.sql.Timestamp value) {
+		setValue(23, value);
 	}
 
 	/**
-	 * {@inheritDoc}
+	 * Getter for <code>killbill.ingenico_responses.last_event_date</code>.
 	 */
-	@Override
-	public org.jooq.types.UInteger value1() {
-		return getRecordId();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value2() {
-		return getKbAccountId();
+	public java.sql.Timestamp getLastEventDate() {
+		return (java.sql.Timestamp) getValue(23);
 	}
 
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value3() {
-		return getKbPaymentId();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value4() {
-		return getKbPaymentTransactionId();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value5() {
-		return getTransactionType();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.math.BigDecimal value6() {
-		return getAmount();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value7() {
-		return getCurrency();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value8() {
-		return getIngenicoPaymentId();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value9() {
-		return getIngenicoStatus();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value10() {
-		return getIngenicoResult();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value11() {
-		return getIngenicoPaymentReference();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value12() {
-		return getIngenicoMerchantReference();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value13() {
-		return getIngenicoAuthorizationCode();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value14() {
-		return getIngenicoErrorCode();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value15() {
-		return getIngenicoErrorMessage();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value16() {
-		return getPaymentInternalRef();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value17() {
-		return getFraudAvsResult();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value18() {
-		return getFraudCvvResult();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value19() {
-		return getFraudService();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value20() {
-		return getAdditionalData();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.sql.Timestamp value21() {
-		return getCreatedDate();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public java.lang.String value22() {
-		return getKbTenantId();
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value1(org.jooq.types.UInteger value) {
-		setRecordId(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value2(java.lang.String value) {
-		setKbAccountId(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value3(java.lang.String value) {
-		setKbPaymentId(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value4(java.lang.String value) {
-		setKbPaymentTransactionId(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value5(java.lang.String value) {
-		setTransactionType(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value6(java.math.BigDecimal value) {
-		setAmount(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value7(java.lang.String value) {
-		setCurrency(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value8(java.lang.String value) {
-		setIngenicoPaymentId(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value9(java.lang.String value) {
-		setIngenicoStatus(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value10(java.lang.String value) {
-		setIngenicoResult(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value11(java.lang.String value) {
-		setIngenicoPaymentReference(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value12(java.lang.String value) {
-		setIngenicoMerchantReference(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value13(java.lang.String value) {
-		setIngenicoAuthorizationCode(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value14(java.lang.String value) {
-		setIngenicoErrorCode(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value15(java.lang.String value) {
-		setIngenicoErrorMessage(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value16(java.lang.String value) {
-		setPaymentInternalRef(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value17(java.lang.String value) {
-		setFraudAvsResult(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value18(java.lang.String value) {
-		setFraudCvvResult(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value19(java.lang.String value) {
-		setFraudService(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value20(java.lang.String value) {
-		setAdditionalData(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value21(java.sql.Timestamp value) {
-		setCreatedDate(value);
-		return this;
-	}
-
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	public IngenicoResponsesRecord value22(java.lang.String value) {
-		setKbTenantId(value);
-		return this;
-	}
+	// -------------------------------------------------------------------------
+	// Primary key information
+	// -------------------------------------------------------------------------
 
 	/**
 	 * {@inheritDoc}
 	 */
 	@Override
-	public IngenicoResponsesRecord values(org.jooq.types.UInteger value1, java.lang.String value2, java.lang.String value3, java.lang.String value4, java.lang.String value5, java.math.BigDecimal value6, java.lang.String value7, java.lang.String value8, java.lang.String value9, java.lang.String value10, java.lang.String value11, java.lang.String value12, java.lang.String value13, java.lang.String value14, java.lang.String value15, java.lang.String value16, java.lang.String value17, java.lang.String value18, java.lang.String value19, java.lang.String value20, java.sql.Timestamp value21, java.lang.String value22) {
-		return this;
+	public org.jooq.Record1<org.jooq.types.UInteger> key() {
+		return (org.jooq.Record1) super.key();
 	}
 
 	// -------------------------------------------------------------------------
@@ -930,7 +380,7 @@ public class IngenicoResponsesRecord extends org.jooq.impl.UpdatableRecordImpl<o
 	/**
 	 * Create a detached, initialised IngenicoResponsesRecord
 	 */
-	public IngenicoResponsesRecord(org.jooq.types.UInteger recordId, java.lang.String kbAccountId, java.lang.String kbPaymentId, java.lang.String kbPaymentTransactionId, java.lang.String transactionType, java.math.BigDecimal amount, java.lang.String currency, java.lang.String ingenicoPaymentId, java.lang.String ingenicoStatus, java.lang.String ingenicoResult, java.lang.String ingenicoPaymentReference, java.lang.String ingenicoMerchantReference, java.lang.String ingenicoAuthorizationCode, java.lang.String ingenicoErrorCode, java.lang.String ingenicoErrorMessage, java.lang.String paymentInternalRef, java.lang.String fraudAvsResult, java.lang.String fraudCvvResult, java.lang.String fraudService, java.lang.String additionalData, java.sql.Timestamp createdDate, java.lang.String kbTenantId) {
+	public IngenicoResponsesRecord(org.jooq.types.UInteger recordId, java.lang.String kbAccountId, java.lang.String kbPaymentId, java.lang.String kbPaymentTransactionId, java.lang.String transactionType, java.math.BigDecimal amount, java.lang.String currency, java.lang.String ingenicoPaymentId, java.lang.String ingenicoStatus, java.lang.String ingenicoResult, java.lang.String ingenicoPaymentReference, java.lang.String ingenicoMerchantReference, java.lang.String ingenicoAuthorizationCode, java.lang.String ingenicoErrorCode, java.lang.String ingenicoErrorMessage, java.lang.String paymentInternalRef, java.lang.String fraudAvsResult, java.lang.String fraudCvvResult, java.lang.String fraudService, java.lang.String additionalData, java.sql.Timestamp createdDate, java.lang.String kbTenantId, java.lang.Integer version, java.sql.Timestamp lastEventDate) {
 		super(org.killbill.billing.plugin.ingenico.dao.gen.tables.IngenicoResponses.INGENICO_RESPONSES);
 
 		setValue(0, recordId);
@@ -955,5 +405,7 @@ public class IngenicoResponsesRecord extends org.jooq.impl.UpdatableRecordImpl<o
 		setValue(19, additionalData);
 		setValue(20, createdDate);
 		setValue(21, kbTenantId);
+		setValue(22, version);
+		setValue(23, lastEventDate);
 	}
 }
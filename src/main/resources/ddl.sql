@@ -23,10 +23,15 @@ create table ingenico_responses (
 , additional_data longtext default null
 , created_date datetime not null
 , kb_tenant_id char(36) not null
+, version int(11) not null default 0
+, last_event_date datetime default null
 , primary key(record_id)
 ) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
-create index ingenico_responses_kb_payment_id on ingenico_responses(kb_payment_id);
-create index ingenico_responses_kb_payment_transaction_id on ingenico_responses(kb_payment_transaction_id);
+create index ingenico_responses_kb_payment_id on ingenico_responses(kb_payment_id, kb_tenant_id);
+create index ingenico_responses_kb_payment_transaction_id on ingenico_responses(kb_payment_transaction_id, kb_tenant_id);
+create index ingenico_responses_ingenico_payment_id on ingenico_responses(ingenico_payment_id, kb_tenant_id);
+create index ingenico_responses_ingenico_payment_reference on ingenico_responses(ingenico_payment_reference, kb_tenant_id);
+create index ingenico_responses_ingenico_status on ingenico_responses(ingenico_status, created_date, record_id);
 
 drop table if exists ingenico_payment_methods;
 create table ingenico_payment_methods (
@@ -61,3 +66,25 @@ create table ingenico_payment_methods (
 , primary key(record_id)
 ) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
 create unique index ingenico_payment_methods_kb_payment_id on ingenico_payment_methods(kb_payment_method_id);
+create index ingenico_payment_methods_kb_account_id on ingenico_payment_methods(kb_account_id, kb_tenant_id);
+
+drop table if exists ingenico_notifications;
+create table ingenico_notifications (
+  record_id int(11) unsigned not null auto_increment
+, kb_tenant_id char(36) not null
+, event_id varchar(64) not null
+, event_type varchar(64) not null
+, ingenico_payment_id varchar(50)
+, ingenico_refund_id varchar(50)
+, ingenico_status varchar(50)
+, event_date datetime
+, payload longtext not null
+, processing_status varchar(32) not null
+, processing_attempts int(11) not null default 0
+, next_attempt_date datetime not null
+, created_date datetime not null
+, updated_date datetime not null
+, primary key(record_id)
+) /*! CHARACTER SET utf8 COLLATE utf8_bin */;
+create unique index ingenico_notifications_event_id on ingenico_notifications(kb_tenant_id, event_id);
+create index ingenico_notifications_processing_status on ingenico_notifications(processing_status, record_id);